@@ -31,7 +31,9 @@ public class BrokerOrderReader implements Function<BrokerOrderEntity, Order> {
             orderEntity.getBidOrAsk().equals(BidOrAskFlags.BID) ? LongShort.Long : LongShort.Short)
         .lastModifiedTime(orderEntity.getTime())
         .createdAtTime(
-            Rfc3339.YMDHMSM_FORMATTER.parse(orderEntity.getCreatedAtTime(), Instant::from))
+            Optional.ofNullable(orderEntity.getCreatedAtTime())
+                .map(createdAt -> Rfc3339.YMDHMSM_FORMATTER.parse(createdAt, Instant::from))
+                .orElse(null))
         .quantityUnfilled(BigDecimal.valueOf(quantityUnfilled))
         .quantityFilled(BigDecimal.valueOf(quantityFilled))
         .id(orderEntity.getBrokerId())
@@ -42,7 +44,7 @@ public class BrokerOrderReader implements Function<BrokerOrderEntity, Order> {
                 .orElse(null))
         .type(Optional.ofNullable(orderEntity.getType()).map(OrderType::valueOf).orElse(null))
         .reason(orderEntity.getReason())
-        .state(OrderState.valueOf(orderEntity.getState()))
+        .state(Optional.ofNullable(orderEntity.getState()).map(OrderState::valueOf).orElse(null))
         .build();
   }
 }
@@ -3,6 +3,7 @@ package com.trickl.influxdb.binding;
 import com.trickl.influxdb.persistence.OhlcvBarEntity;
 import com.trickl.model.pricing.primitives.Candle;
 import java.math.BigDecimal;
+import java.util.Optional;
 import java.util.function.Function;
 
 public class CandleReader implements Function<OhlcvBarEntity, Candle> {
@@ -11,10 +12,10 @@ public class CandleReader implements Function<OhlcvBarEntity, Candle> {
   public Candle apply(OhlcvBarEntity barEntity) {
     return Candle.builder()
         .time(barEntity.getTime())
-        .open(BigDecimal.valueOf(barEntity.getOpen()))
-        .high(BigDecimal.valueOf(barEntity.getHigh()))
-        .low(BigDecimal.valueOf(barEntity.getLow()))
-        .close(BigDecimal.valueOf(barEntity.getClose()))
+        .open(Optional.ofNullable(barEntity.getOpen()).map(BigDecimal::valueOf).orElse(null))
+        .high(Optional.ofNullable(barEntity.getHigh()).map(BigDecimal::valueOf).orElse(null))
+        .low(Optional.ofNullable(barEntity.getLow()).map(BigDecimal::valueOf).orElse(null))
+        .close(Optional.ofNullable(barEntity.getClose()).map(BigDecimal::valueOf).orElse(null))
         .complete(true)
         .build();
   }
@@ -0,0 +1,51 @@
+package com.trickl.influxdb.binding;
+
+import com.influxdb.query.FluxRecord;
+import com.trickl.influxdb.persistence.OrderBookFields;
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class OrderBookRecordReader implements Function<FluxRecord, OrderBook> {
+
+  @Override
+  public OrderBook apply(FluxRecord record) {
+    Map<String, Object> values = record.getValues();
+    PriceSource source =
+        PriceSource.builder()
+            .exchangeId(String.valueOf(values.get("exchangeId")).toUpperCase())
+            .instrumentId(String.valueOf(values.get("instrumentId")).toUpperCase())
+            .build();
+    return OrderBook.builder()
+        .bids(getQuotes(values, true, source))
+        .asks(getQuotes(values, false, source))
+        .time(record.getTime())
+        .build();
+  }
+
+  private static List<Quote> getQuotes(
+      Map<String, Object> values, boolean isBid, PriceSource source) {
+    List<Quote> quotes = new ArrayList<>();
+    for (int depth = 0; ; depth++) {
+      Object price = values.get(OrderBookFields.price(isBid, depth));
+      Object volume = values.get(OrderBookFields.volume(isBid, depth));
+      if (price == null && volume == null) {
+        return quotes;
+      }
+      quotes.add(
+          Quote.builder()
+              .price(
+                  price instanceof Number
+                      ? BigDecimal.valueOf(((Number) price).doubleValue())
+                      : BigDecimal.ZERO)
+              .volume(volume instanceof Number ? ((Number) volume).longValue() : 0L)
+              .source(source)
+              .build());
+    }
+  }
+}
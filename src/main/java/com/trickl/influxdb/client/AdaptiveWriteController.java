@@ -0,0 +1,105 @@
+package com.trickl.influxdb.client;
+
+public class AdaptiveWriteController {
+
+  private static final double DECREASE_FACTOR = 0.5;
+
+  private final StorageOptions options;
+
+  private final WriteLimiter writeLimiter;
+
+  private final WriteMetrics metrics;
+
+  private int batchSize;
+
+  private int concurrency;
+
+  private int fastWrites = 0;
+
+  private long lastDecreaseNanos;
+
+  /**
+   * Create a controller that adjusts batch size and write concurrency.
+   *
+   * <p>Both settings start at their configured maximum. Each write faster than the target latency
+   * grows the batch size by a fixed step, and each run of fast writes as long as the current
+   * concurrency adds one write slot. A slow write, or a 429 or 503 response, halves both settings,
+   * at most once per target latency so that a burst of failures from writes already in flight
+   * counts as a single signal.
+   *
+   * @param options the bounds and targets
+   * @param writeLimiter the limiter whose concurrency is adjusted
+   * @param metrics where to publish the current settings
+   */
+  public AdaptiveWriteController(
+      StorageOptions options, WriteLimiter writeLimiter, WriteMetrics metrics) {
+    this.options = options;
+    this.writeLimiter = writeLimiter;
+    this.metrics = metrics;
+    this.batchSize = options.getMaxBatchSize();
+    this.concurrency = options.getMaxConcurrentWrites();
+    this.lastDecreaseNanos = System.nanoTime() - options.getTargetWriteLatency().toNanos();
+    metrics.settingsChanged(batchSize, concurrency);
+  }
+
+  /**
+   * Get the number of points that should be sent in a single write.
+   *
+   * @return the current batch size
+   */
+  public synchronized int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Get the number of writes that may be in flight at once.
+   *
+   * @return the current concurrency limit
+   */
+  public synchronized int getConcurrency() {
+    return concurrency;
+  }
+
+  void writeSucceeded(long latencyNanos) {
+    if (latencyNanos > options.getTargetWriteLatency().toNanos()) {
+      decrease();
+      return;
+    }
+
+    int newConcurrency;
+    synchronized (this) {
+      batchSize = Math.min(options.getMaxBatchSize(), batchSize + options.getBatchSizeStep());
+      if (++fastWrites >= concurrency) {
+        fastWrites = 0;
+        concurrency = Math.min(options.getMaxConcurrentWrites(), concurrency + 1);
+      }
+      newConcurrency = concurrency;
+      metrics.settingsChanged(batchSize, concurrency);
+    }
+    writeLimiter.setLimit(newConcurrency);
+  }
+
+  void writeFailed(Throwable error) {
+    if (WriteErrors.isOverloaded(error)) {
+      metrics.writeThrottled();
+      decrease();
+    }
+  }
+
+  private void decrease() {
+    int newConcurrency;
+    synchronized (this) {
+      long now = System.nanoTime();
+      if (now - lastDecreaseNanos < options.getTargetWriteLatency().toNanos()) {
+        return;
+      }
+      lastDecreaseNanos = now;
+      fastWrites = 0;
+      batchSize = Math.max(options.getMinBatchSize(), (int) (batchSize * DECREASE_FACTOR));
+      concurrency = Math.max(1, (int) (concurrency * DECREASE_FACTOR));
+      newConcurrency = concurrency;
+      metrics.settingsChanged(batchSize, concurrency);
+    }
+    writeLimiter.setLimit(newConcurrency);
+  }
+}
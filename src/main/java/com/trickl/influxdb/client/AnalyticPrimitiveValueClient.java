@@ -41,6 +41,30 @@ public class AnalyticPrimitiveValueClient {
 
   private final String bucket;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final InfluxDbFindBetween finder;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
+  /**
+   * Create a client that writes values into its queries.
+   *
+   * @param influxDbClient the database client
+   * @param bucket the bucket to read and write
+   * @param influxDbStorage where to store analytics
+   */
+  public AnalyticPrimitiveValueClient(
+      InfluxDBClientReactive influxDbClient, String bucket, InfluxDbStorage influxDbStorage) {
+    this(
+        influxDbClient,
+        bucket,
+        influxDbStorage,
+        new InfluxDbFindBetween(influxDbClient, bucket),
+        false);
+  }
+
   /**
    * Stores analytics in the database.
    *
@@ -51,7 +75,6 @@ public class AnalyticPrimitiveValueClient {
    */
   public Flux<Integer> storeDoubles(
       AnalyticId analyticId, TemporalPriceSource temporalPriceSource, List<InstantDouble> values) {
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     AnalyticDoubleValueWriter transformer =
         new AnalyticDoubleValueWriter(analyticId, temporalPriceSource);
     List<AnalyticDoubleValueEntity> measurements =
@@ -70,7 +93,6 @@ public class AnalyticPrimitiveValueClient {
    */
   public Flux<Integer> storeIntegers(
       AnalyticId analyticId, TemporalPriceSource temporalPriceSource, List<InstantInteger> values) {
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     AnalyticIntegerValueWriter transformer =
         new AnalyticIntegerValueWriter(analyticId, temporalPriceSource);
     List<AnalyticIntegerValueEntity> measurements =
@@ -89,7 +111,6 @@ public class AnalyticPrimitiveValueClient {
    */
   public Flux<Integer> storeStrings(
       AnalyticId analyticId, TemporalPriceSource temporalPriceSource, List<InstantString> values) {
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     AnalyticStringValueWriter transformer =
         new AnalyticStringValueWriter(analyticId, temporalPriceSource);
     List<AnalyticStringValueEntity> measurements =
@@ -108,7 +129,6 @@ public class AnalyticPrimitiveValueClient {
    */
   public Flux<Integer> storeBooleans(
       AnalyticId analyticId, TemporalPriceSource temporalPriceSource, List<InstantBoolean> values) {
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     AnalyticBooleanValueWriter transformer =
         new AnalyticBooleanValueWriter(analyticId, temporalPriceSource);
     List<AnalyticBooleanValueEntity> measurements =
@@ -142,8 +162,7 @@ public class AnalyticPrimitiveValueClient {
     if (analyticId.getParameters() != null && analyticId.getParameters().length() > 0) {
       analyticSpec.put("parameters", Collections.singleton(analyticId.getParameters()));
     }
-    InfluxDbFindBetween findBetween = new InfluxDbFindBetween(this.influxDbClient, bucket);
-    return findBetween.findBetween(
+    return finder.findBetween(
         temporalPriceSource.getPriceSource(),
         queryBetween,
         measurementName,
@@ -242,7 +261,7 @@ public class AnalyticPrimitiveValueClient {
   public Flux<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
     InfluxDbFirstLastDuration influxDbAdapter =
-        new InfluxDbFirstLastDuration(influxDbClient, bucket);
+        new InfluxDbFirstLastDuration(influxDbClient, bucket, parameterizedQueries);
     return Flux.concat(
         Stream.of(
                 "analytic_double_value",
@@ -264,7 +283,8 @@ public class AnalyticPrimitiveValueClient {
    * @return Counts by instruments
    */
   public Mono<Integer> count(QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbCount influxDbClient = new InfluxDbCount(this.influxDbClient, bucket);
+    InfluxDbCount influxDbClient =
+        new InfluxDbCount(this.influxDbClient, bucket, parameterizedQueries);
     return influxDbClient
         .count(queryBetween, "measurementName", "time", priceSource)
         .map(PriceSourceInteger::getValue);
@@ -32,6 +32,13 @@ public class BrokerOrderClient {
 
   private final String bucket;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final QueryCoalescer queryCoalescer;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
   /**
    * Stores broker orders in the database.
    *
@@ -43,7 +50,6 @@ public class BrokerOrderClient {
     BrokerOrderWriter transformer = new BrokerOrderWriter(temporalPriceSource);
     List<BrokerOrderEntity> measurements =
         orders.stream().map(transformer).collect(Collectors.toList());
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     return influxDbStorage.store(measurements, BrokerOrderEntity.class, BrokerOrderEntity::getTime);
   }
 
@@ -85,7 +91,8 @@ public class BrokerOrderClient {
     filter.put("state", allowedStates);
 
     BrokerOrderReader reader = new BrokerOrderReader();
-    InfluxDbFindBetween finder = new InfluxDbFindBetween(this.influxDbClient, bucket);
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(this.influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return finder
         .findBetween(
             temporalPriceSource.getPriceSource(),
@@ -106,7 +113,8 @@ public class BrokerOrderClient {
    */
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbFirstLastDuration finder = new InfluxDbFirstLastDuration(this.influxDbClient, bucket);
+    InfluxDbFirstLastDuration finder =
+        new InfluxDbFirstLastDuration(this.influxDbClient, bucket, parameterizedQueries);
     return finder.firstLastDuration(queryBetween, "broker_order", "price", priceSource);
   }
 
@@ -118,7 +126,8 @@ public class BrokerOrderClient {
    * @return Counts by instruments
    */
   public Mono<Integer> count(QueryBetween queryBetween, PriceSource priceSource, OrderState state) {
-    InfluxDbCount influxDbClient = new InfluxDbCount(this.influxDbClient, bucket);
+    InfluxDbCount influxDbClient =
+        new InfluxDbCount(this.influxDbClient, bucket, parameterizedQueries);
     Optional<String> stateFilter =
         Optional.ofNullable(state).map(s -> MessageFormat.format("state == \"{0}\"", s.toString()));
     return influxDbClient
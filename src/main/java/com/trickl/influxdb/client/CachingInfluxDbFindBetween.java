@@ -0,0 +1,245 @@
+package com.trickl.influxdb.client;
+
+import com.influxdb.client.reactive.InfluxDBClientReactive;
+import com.trickl.model.pricing.primitives.PriceSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import reactor.core.publisher.Flux;
+
+public class CachingInfluxDbFindBetween extends InfluxDbFindBetween {
+
+  private final QueryResultCache cache;
+
+  private final Duration segmentWidth;
+
+  private final Duration settleDelay;
+
+  private final Supplier<Instant> clock;
+
+  // Counts invalidations, so results read across a write are not cached
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * Create a finder that caches historical results in fixed time segments.
+   *
+   * @param influxDbClient the database client
+   * @param bucket the bucket to read
+   * @param coalescer shares identical queries that run at the same time, or null for none
+   * @param parameterized true to send values as query parameters, rather than literals
+   * @param cache where to keep segment results
+   * @param segmentWidth the width of each cached segment, in whole seconds
+   * @param settleDelay how long after a segment ends before its data can no longer change
+   * @param clock the current time
+   */
+  public CachingInfluxDbFindBetween(
+      InfluxDBClientReactive influxDbClient,
+      String bucket,
+      QueryCoalescer coalescer,
+      boolean parameterized,
+      QueryResultCache cache,
+      Duration segmentWidth,
+      Duration settleDelay,
+      Supplier<Instant> clock) {
+    super(influxDbClient, bucket, coalescer, parameterized);
+    this.cache = cache;
+    this.segmentWidth = segmentWidth;
+    this.settleDelay = settleDelay;
+    this.clock = clock;
+  }
+
+  /**
+   * Find measurements in the database, reading whole segments that are in the past from the cache.
+   *
+   * <p>Each segment of the range is read from the cache, or queried on its own and then cached,
+   * while any partial segments at either end are always queried. The pieces are stitched back
+   * together in order before the limit is applied.
+   *
+   * @param <T> the type of measurement
+   * @param priceSource The price source for the measurements
+   * @param queryBetween Query parameters
+   * @param measurementName The measurement name
+   * @param measurementClazz the time of measurement
+   * @param filter An optional filter for fields
+   * @param temporalSource An optional temporal source
+   * @return A list of measurements
+   */
+  @Override
+  public <T> Flux<T> findBetween(
+      PriceSource priceSource,
+      QueryBetween queryBetween,
+      String measurementName,
+      Class<T> measurementClazz,
+      Map<String, Set<String>> filter,
+      Optional<String> temporalSource) {
+    Instant start = queryBetween.getStart();
+    Instant end = queryBetween.getEnd();
+    Instant settled = clock.get().minus(settleDelay);
+    if (start == null || end == null || !start.isBefore(settled)) {
+      return findUncached(
+          priceSource, queryBetween, measurementName, measurementClazz, filter, temporalSource);
+    }
+
+    // Only whole segments that have settled are cached, partial segments are queried directly
+    long width = Math.max(1, segmentWidth.getSeconds());
+    long startSecond = start.getEpochSecond() + (start.getNano() > 0 ? 1 : 0);
+    Instant segmentStart =
+        Instant.ofEpochSecond(Math.floorDiv(startSecond + width - 1, width) * width);
+    List<Piece> pieces = new ArrayList<>();
+    Instant pieceStart = start;
+    while (!segmentStart.plusSeconds(width).isAfter(end)
+        && !segmentStart.plusSeconds(width).isAfter(settled)) {
+      if (pieceStart.isBefore(segmentStart)) {
+        pieces.add(new Piece(pieceStart, segmentStart, false));
+      }
+      pieceStart = segmentStart.plusSeconds(width);
+      pieces.add(new Piece(segmentStart, pieceStart, true));
+      segmentStart = pieceStart;
+    }
+    if (pieces.isEmpty()) {
+      return findUncached(
+          priceSource, queryBetween, measurementName, measurementClazz, filter, temporalSource);
+    }
+    if (pieceStart.isBefore(end)) {
+      pieces.add(new Piece(pieceStart, end, false));
+    }
+
+    if (queryBetween.isMostRecentFirst()) {
+      Collections.reverse(pieces);
+    }
+    Flux<T> results =
+        Flux.fromIterable(pieces)
+            .concatMap(
+                piece ->
+                    findPiece(
+                        priceSource,
+                        queryBetween,
+                        piece,
+                        measurementName,
+                        measurementClazz,
+                        filter,
+                        temporalSource));
+    return queryBetween.getLimit() != null ? results.take(queryBetween.getLimit()) : results;
+  }
+
+  private <T> Flux<T> findPiece(
+      PriceSource priceSource,
+      QueryBetween queryBetween,
+      Piece piece,
+      String measurementName,
+      Class<T> measurementClazz,
+      Map<String, Set<String>> filter,
+      Optional<String> temporalSource) {
+    boolean mostRecentFirst = queryBetween.isMostRecentFirst();
+    QueryBetween pieceQuery =
+        QueryBetween.builder()
+            .startIncl(true)
+            .start(piece.start)
+            .end(piece.end)
+            .mostRecentFirst(mostRecentFirst && !piece.isSegment)
+            .limit(piece.isSegment ? null : queryBetween.getLimit())
+            .fields(queryBetween.getFields())
+            .build();
+    if (!piece.isSegment) {
+      return findUncached(
+          priceSource, pieceQuery, measurementName, measurementClazz, filter, temporalSource);
+    }
+
+    QueryCacheKey key =
+        QueryCacheKey.builder()
+            .bucket(bucket)
+            .measurementName(measurementName)
+            .measurementClazz(measurementClazz)
+            .exchangeId(priceSource.getExchangeId().toUpperCase())
+            .instrumentId(priceSource.getInstrumentId().toUpperCase())
+            .filter(filter)
+            .temporalSource(temporalSource.orElse(null))
+            .fields(queryBetween.getFields())
+            .segmentStart(piece.start)
+            .segmentEnd(piece.end)
+            .build();
+    Flux<T> segment =
+        Flux.defer(
+            () -> {
+              long invalidated = invalidations.get();
+              return cache
+                  .get(key)
+                  .map(cached -> Flux.fromIterable(cached).map(measurementClazz::cast))
+                  .orElseGet(
+                      () ->
+                          findUncached(
+                                  priceSource,
+                                  pieceQuery,
+                                  measurementName,
+                                  measurementClazz,
+                                  filter,
+                                  temporalSource)
+                              .collectList()
+                              .doOnNext(
+                                  found -> {
+                                    if (invalidations.get() == invalidated) {
+                                      cache.put(key, found);
+                                    }
+                                  })
+                              .flatMapIterable(found -> found));
+            });
+    return mostRecentFirst
+        ? segment.collectList().flatMapIterable(CachingInfluxDbFindBetween::reversed)
+        : segment;
+  }
+
+  /**
+   * Forget the cached segments of a measurement of an instrument, once it has been written to.
+   *
+   * <p>Segments being read while this is called are not cached, as they may be missing the write.
+   *
+   * @param measurementName the measurement name
+   * @param priceSource the instrument written to
+   */
+  @Override
+  public void invalidate(String measurementName, PriceSource priceSource) {
+    invalidations.incrementAndGet();
+    cache.invalidate(
+        measurementName,
+        priceSource.getExchangeId().toUpperCase(),
+        priceSource.getInstrumentId().toUpperCase());
+  }
+
+  <T> Flux<T> findUncached(
+      PriceSource priceSource,
+      QueryBetween queryBetween,
+      String measurementName,
+      Class<T> measurementClazz,
+      Map<String, Set<String>> filter,
+      Optional<String> temporalSource) {
+    return super.findBetween(
+        priceSource, queryBetween, measurementName, measurementClazz, filter, temporalSource);
+  }
+
+  private static <T> List<T> reversed(List<T> list) {
+    List<T> copy = new ArrayList<>(list);
+    Collections.reverse(copy);
+    return copy;
+  }
+
+  private static class Piece {
+    private final Instant start;
+
+    private final Instant end;
+
+    private final boolean isSegment;
+
+    Piece(Instant start, Instant end, boolean isSegment) {
+      this.start = start;
+      this.end = end;
+      this.isSegment = isSegment;
+    }
+  }
+}
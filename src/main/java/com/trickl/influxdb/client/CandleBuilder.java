@@ -0,0 +1,344 @@
+package com.trickl.influxdb.client;
+
+import com.trickl.model.pricing.primitives.Candle;
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import lombok.extern.java.Log;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+@Log
+public class CandleBuilder {
+
+  private final CandleClient candleClient;
+
+  private final List<Duration> candleWidths;
+
+  private final Duration watermark;
+
+  private final Supplier<Instant> clock;
+
+  private final Map<List<String>, SourceCandles> sources = new ConcurrentHashMap<>();
+
+  private final Disposable idleCloser;
+
+  /**
+   * Create a builder of best bid and ask candles.
+   *
+   * <p>Candles are named as by {@link CandleClient#aggregateBestBidsBetween} and {@link
+   * CandleClient#aggregateBestAsksBetween}, e.g. best_bid_1m, and are timed at the end of their
+   * window. Candles of instruments that stop updating are closed on a timer, once every
+   * watermark.
+   *
+   * @param candleClient where to store closed candles
+   * @param candleWidths the width of each candle series
+   * @param watermark how long to wait for late books before a candle is closed
+   */
+  public CandleBuilder(CandleClient candleClient, List<Duration> candleWidths, Duration watermark) {
+    this(candleClient, candleWidths, watermark, watermark, Instant::now);
+  }
+
+  /**
+   * Create a builder of best bid and ask candles.
+   *
+   * @param candleClient where to store closed candles
+   * @param candleWidths the width of each candle series
+   * @param watermark how long to wait for late books before a candle is closed
+   * @param idleCheckInterval how often to close the candles of instruments that stop updating
+   * @param clock the current time
+   */
+  public CandleBuilder(
+      CandleClient candleClient,
+      List<Duration> candleWidths,
+      Duration watermark,
+      Duration idleCheckInterval,
+      Supplier<Instant> clock) {
+    this.candleClient = candleClient;
+    this.candleWidths = candleWidths;
+    this.watermark = watermark;
+    this.clock = clock;
+    this.idleCloser =
+        Flux.interval(idleCheckInterval)
+            .onBackpressureDrop()
+            .concatMap(
+                tick ->
+                    closeIdle()
+                        .onErrorResume(
+                            e -> {
+                              log.log(Level.WARNING, "Failed to store idle candles", e);
+                              return Flux.empty();
+                            }),
+                1)
+            .subscribe();
+  }
+
+  /**
+   * Add the best bid and ask of order books to the open candles of an instrument, and store any
+   * candles that close.
+   *
+   * <p>A candle closes once a book has been seen at least the watermark after the end of its
+   * window. Books that arrive for a closed window are dropped.
+   *
+   * @param priceSource the instrument identifier
+   * @param orderBooks books in roughly time order
+   * @return counts of candles stored
+   */
+  public Flux<Integer> add(PriceSource priceSource, List<OrderBook> orderBooks) {
+    return Flux.defer(
+        () -> {
+          SourceCandles candles = getSourceCandles(priceSource);
+          List<ClosedCandle> closed = new ArrayList<>();
+          synchronized (candles) {
+            orderBooks.forEach(orderBook -> candles.add(orderBook, closed));
+          }
+          return store(priceSource, closed);
+        });
+  }
+
+  /**
+   * Add a stream of order books to the open candles of an instrument, storing candles as they
+   * close.
+   *
+   * @param priceSource the instrument identifier
+   * @param orderBooks books in roughly time order
+   * @return counts of candles stored
+   */
+  public Flux<Integer> add(PriceSource priceSource, Flux<OrderBook> orderBooks) {
+    return orderBooks.concatMap(orderBook -> add(priceSource, List.of(orderBook)));
+  }
+
+  /**
+   * Close and store the candles of instruments that have stopped updating.
+   *
+   * <p>Book time is taken to move on with the clock since the latest book of an instrument was
+   * seen, so its candles close as if books had kept arriving.
+   *
+   * @return counts of candles stored
+   */
+  public Flux<Integer> closeIdle() {
+    return Flux.defer(
+        () -> {
+          Instant now = clock.get();
+          return Flux.fromIterable(sources.values())
+              .concatMap(
+                  candles -> {
+                    List<ClosedCandle> closed = new ArrayList<>();
+                    synchronized (candles) {
+                      candles.closeIdle(now, closed);
+                    }
+                    return store(candles.priceSource, closed);
+                  });
+        });
+  }
+
+  /**
+   * Close and store every open candle, e.g. before shutting down.
+   *
+   * @return counts of candles stored
+   */
+  public Flux<Integer> flush() {
+    return Flux.fromIterable(sources.values())
+        .concatMap(
+            candles -> {
+              List<ClosedCandle> closed = new ArrayList<>();
+              synchronized (candles) {
+                candles.closeAll(closed);
+              }
+              return store(candles.priceSource, closed);
+            });
+  }
+
+  /** Stop closing idle candles, then close and store every open candle. */
+  public void close() {
+    idleCloser.dispose();
+    flush().blockLast();
+  }
+
+  private SourceCandles getSourceCandles(PriceSource priceSource) {
+    List<String> key =
+        List.of(
+            priceSource.getExchangeId().toUpperCase(), priceSource.getInstrumentId().toUpperCase());
+    return sources.computeIfAbsent(key, sourceKey -> new SourceCandles(priceSource));
+  }
+
+  private Flux<Integer> store(PriceSource priceSource, List<ClosedCandle> closed) {
+    Map<CandleSeries, List<Candle>> candlesBySeries =
+        closed.stream()
+            .collect(
+                Collectors.groupingBy(
+                    closedCandle -> closedCandle.series,
+                    LinkedHashMap::new,
+                    Collectors.mapping(closedCandle -> closedCandle.candle, Collectors.toList())));
+    return Flux.fromIterable(candlesBySeries.entrySet())
+        .flatMap(
+            entry ->
+                candleClient.storeBestBidsOrAsks(
+                    priceSource, entry.getKey().name, entry.getKey().isBid, entry.getValue()));
+  }
+
+  private static BigDecimal getBestPrice(List<Quote> quotes) {
+    return quotes == null || quotes.isEmpty() ? null : quotes.get(0).getPrice();
+  }
+
+  private class SourceCandles {
+    private final PriceSource priceSource;
+
+    private final List<CandleSeries> series = new ArrayList<>();
+
+    private Instant latestTime = null;
+
+    private Instant latestTimeSeenAt = null;
+
+    SourceCandles(PriceSource priceSource) {
+      this.priceSource = priceSource;
+      for (Duration candleWidth : candleWidths) {
+        String period = InfluxDbDurationFormatter.format(candleWidth);
+        series.add(new CandleSeries("best_bid_" + period, candleWidth, true));
+        series.add(new CandleSeries("best_ask_" + period, candleWidth, false));
+      }
+    }
+
+    void add(OrderBook orderBook, List<ClosedCandle> closed) {
+      Instant time = orderBook.getTime();
+      if (time == null) {
+        return;
+      }
+      BigDecimal bid = getBestPrice(orderBook.getBids());
+      BigDecimal ask = getBestPrice(orderBook.getAsks());
+      for (CandleSeries candleSeries : series) {
+        candleSeries.add(time, candleSeries.isBid ? bid : ask);
+      }
+
+      if (latestTime == null || time.isAfter(latestTime)) {
+        latestTime = time;
+        latestTimeSeenAt = clock.get();
+      }
+      closeUntil(latestTime.minus(watermark), closed);
+    }
+
+    void closeIdle(Instant now, List<ClosedCandle> closed) {
+      if (latestTime != null && now.isAfter(latestTimeSeenAt)) {
+        Duration idle = Duration.between(latestTimeSeenAt, now);
+        closeUntil(latestTime.plus(idle).minus(watermark), closed);
+      }
+    }
+
+    void closeAll(List<ClosedCandle> closed) {
+      closeUntil(Instant.MAX, closed);
+    }
+
+    private void closeUntil(Instant watermarkTime, List<ClosedCandle> closed) {
+      for (CandleSeries candleSeries : series) {
+        candleSeries.closeUntil(watermarkTime, closed);
+      }
+    }
+  }
+
+  private static class CandleSeries {
+    private final String name;
+
+    private final long widthMillis;
+
+    private final boolean isBid;
+
+    private final TreeMap<Instant, OpenCandle> openCandles = new TreeMap<>();
+
+    private Instant closedUntil = null;
+
+    CandleSeries(String name, Duration width, boolean isBid) {
+      this.name = name;
+      this.widthMillis = width.toMillis();
+      this.isBid = isBid;
+    }
+
+    void add(Instant time, BigDecimal price) {
+      if (price == null) {
+        return;
+      }
+      long millis = time.toEpochMilli();
+      Instant start = Instant.ofEpochMilli(millis - Math.floorMod(millis, widthMillis));
+      if (closedUntil != null && start.isBefore(closedUntil)) {
+        log.fine(
+            MessageFormat.format(
+                "Dropping late price at {0} for closed {1} candle", time, name));
+        return;
+      }
+      openCandles.computeIfAbsent(start, candleStart -> new OpenCandle()).add(time, price);
+    }
+
+    void closeUntil(Instant watermarkTime, List<ClosedCandle> closed) {
+      while (!openCandles.isEmpty()) {
+        Instant end = openCandles.firstKey().plusMillis(widthMillis);
+        if (end.isAfter(watermarkTime)) {
+          return;
+        }
+        OpenCandle candle = openCandles.pollFirstEntry().getValue();
+        closedUntil = end;
+        closed.add(new ClosedCandle(this, candle.toCandle(end)));
+      }
+    }
+  }
+
+  private static class OpenCandle {
+    private Instant openTime;
+
+    private Instant closeTime;
+
+    private BigDecimal open;
+
+    private BigDecimal high;
+
+    private BigDecimal low;
+
+    private BigDecimal close;
+
+    void add(Instant time, BigDecimal price) {
+      if (openTime == null || time.isBefore(openTime)) {
+        openTime = time;
+        open = price;
+      }
+      if (closeTime == null || !time.isBefore(closeTime)) {
+        closeTime = time;
+        close = price;
+      }
+      high = high == null || price.compareTo(high) > 0 ? price : high;
+      low = low == null || price.compareTo(low) < 0 ? price : low;
+    }
+
+    Candle toCandle(Instant end) {
+      return Candle.builder()
+          .time(end)
+          .open(open)
+          .high(high)
+          .low(low)
+          .close(close)
+          .complete(true)
+          .build();
+    }
+  }
+
+  private static class ClosedCandle {
+    private final CandleSeries series;
+
+    private final Candle candle;
+
+    ClosedCandle(CandleSeries series, Candle candle) {
+      this.series = series;
+      this.candle = candle;
+    }
+  }
+}
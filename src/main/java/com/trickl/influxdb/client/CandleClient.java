@@ -4,12 +4,16 @@ import com.influxdb.client.reactive.InfluxDBClientReactive;
 import com.trickl.influxdb.binding.CandleReader;
 import com.trickl.influxdb.binding.CandleWriter;
 import com.trickl.influxdb.persistence.OhlcvBarEntity;
+import com.trickl.influxdb.protocol.OhlcvBarEntityEncoder;
 import com.trickl.model.pricing.primitives.Candle;
 import com.trickl.model.pricing.primitives.CandleSource;
 import com.trickl.model.pricing.primitives.PriceSource;
 import com.trickl.model.pricing.statistics.PriceSourceFieldFirstLastDuration;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
@@ -18,12 +22,24 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class CandleClient {
 
+  // Where candles stored without a name are written, as named by OhlcvBarEntity
+  private static final String BAR_MEASUREMENT = "ohlvc_bar";
+
   private final InfluxDBClientReactive influxDbClient;
 
   private final String bucket;
 
   private final String organisation;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final boolean bestPricesFromTopOfBook;
+
+  private final InfluxDbFindBetween finder;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
   /**
    * Stores prices in the database.
    *
@@ -35,8 +51,71 @@ public class CandleClient {
     CandleWriter transformer = new CandleWriter(candleSource.getPriceSource());
     List<OhlcvBarEntity> measurements =
         candles.stream().map(transformer).collect(Collectors.toList());
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
-    return influxDbStorage.store(measurements, OhlcvBarEntity.class, OhlcvBarEntity::getTime);
+    return invalidating(
+        BAR_MEASUREMENT,
+        candleSource.getPriceSource(),
+        influxDbStorage.store(measurements, OhlcvBarEntity.class, OhlcvBarEntity::getTime));
+  }
+
+  /**
+   * Stores candles in the database, under a candle name.
+   *
+   * <p>The candles can then be found with a candle source of the same name.
+   *
+   * @param priceSource the instrument identifier
+   * @param candleName the name of the candle measurement
+   * @param candles data to store
+   * @return counts of records stored
+   */
+  public Flux<Integer> store(PriceSource priceSource, String candleName, List<Candle> candles) {
+    CandleWriter transformer = new CandleWriter(priceSource);
+    List<OhlcvBarEntity> measurements =
+        candles.stream().map(transformer).collect(Collectors.toList());
+    return invalidating(
+        candleName,
+        priceSource,
+        influxDbStorage.store(
+            measurements, new OhlcvBarEntityEncoder(candleName), OhlcvBarEntity::getTime));
+  }
+
+  /**
+   * Stores best bid or ask candles in the database, in the same series as {@link
+   * #aggregateBestBidsBetween} and {@link #aggregateBestAsksBetween} write.
+   *
+   * @param priceSource the instrument identifier
+   * @param candleName the name of the candle measurement, e.g. best_bid_1m
+   * @param isBid true for best bid candles, false for best ask candles
+   * @param candles data to store
+   * @return counts of records stored
+   */
+  public Flux<Integer> storeBestBidsOrAsks(
+      PriceSource priceSource, String candleName, boolean isBid, List<Candle> candles) {
+    CandleWriter transformer = new CandleWriter(priceSource);
+    List<OhlcvBarEntity> measurements =
+        candles.stream().map(transformer).collect(Collectors.toList());
+    return invalidating(
+        candleName,
+        priceSource,
+        influxDbStorage.store(
+            measurements,
+            new OhlcvBarEntityEncoder(candleName, isBid ? "B" : "A"),
+            OhlcvBarEntity::getTime));
+  }
+
+  /**
+   * Stores a stream of prices in the database.
+   *
+   * @param candleSource the instrument identifier
+   * @param candles data to store
+   * @return counts of records stored, one per batch written
+   */
+  public Flux<Integer> store(CandleSource candleSource, Flux<Candle> candles) {
+    CandleWriter transformer = new CandleWriter(candleSource.getPriceSource());
+    return invalidating(
+        BAR_MEASUREMENT,
+        candleSource.getPriceSource(),
+        influxDbStorage.store(
+            candles.map(transformer), OhlcvBarEntity.class, OhlcvBarEntity::getTime));
   }
 
   /**
@@ -48,8 +127,7 @@ public class CandleClient {
    */
   public Flux<Candle> findBetween(CandleSource candleSource, QueryBetween queryBetween) {
     CandleReader reader = new CandleReader();
-    InfluxDbFindBetween findBetween = new InfluxDbFindBetween(influxDbClient, bucket);
-    return findBetween
+    return finder
         .findBetween(
             candleSource.getPriceSource(),
             queryBetween,
@@ -58,6 +136,49 @@ public class CandleClient {
         .map(reader);
   }
 
+  /**
+   * Find candles for many instruments, with one query for each candle name.
+   *
+   * @param candleSources the candle sources
+   * @param queryBetween Query parameters
+   * @return Lists of bars, for every candle source
+   */
+  public Mono<Map<CandleSource, List<Candle>>> findBetween(
+      Collection<CandleSource> candleSources, QueryBetween queryBetween) {
+    CandleReader reader = new CandleReader();
+    Map<String, List<CandleSource>> sourcesByName =
+        candleSources.stream()
+            .collect(
+                Collectors.groupingBy(
+                    CandleSource::getCandleName, LinkedHashMap::new, Collectors.toList()));
+    return Flux.fromIterable(sourcesByName.entrySet())
+        .flatMapSequential(
+            namedSources ->
+                finder
+                    .findBetween(
+                        namedSources.getValue().stream()
+                            .map(CandleSource::getPriceSource)
+                            .collect(Collectors.toList()),
+                        queryBetween,
+                        namedSources.getKey(),
+                        OhlcvBarEntity.class)
+                    .map(
+                        barsBySource -> {
+                          Map<CandleSource, List<Candle>> candles = new LinkedHashMap<>();
+                          for (CandleSource candleSource : namedSources.getValue()) {
+                            candles.put(
+                                candleSource,
+                                barsBySource
+                                    .getOrDefault(candleSource.getPriceSource(), List.of())
+                                    .stream()
+                                    .map(reader)
+                                    .collect(Collectors.toList()));
+                          }
+                          return candles;
+                        }))
+        .<Map<CandleSource, List<Candle>>>collect(LinkedHashMap::new, Map::putAll);
+  }
+
   /**
    * Aggregate bid orders into candles.
    *
@@ -71,11 +192,20 @@ public class CandleClient {
     String candleWidthPeriod = InfluxDbDurationFormatter.format(candleWidth);
     CandleReader reader = new CandleReader();
     InfluxDbAggregator influxDbAggregator =
-        new InfluxDbAggregator(influxDbClient, bucket, organisation);
-    return influxDbAggregator
-        .aggregateBestBidOrAskBetween(
-            priceSource, queryBetween, "best_bid_" + candleWidthPeriod, true, Duration.ofMinutes(1))
-        .map(reader);
+        new InfluxDbAggregator(influxDbClient, bucket, organisation, parameterizedQueries);
+    String candleName = "best_bid_" + candleWidthPeriod;
+    return invalidating(
+        candleName,
+        priceSource,
+        influxDbAggregator
+            .aggregateBestBidOrAskBetween(
+                priceSource,
+                queryBetween,
+                candleName,
+                true,
+                Duration.ofMinutes(1),
+                bestPricesFromTopOfBook)
+            .map(reader));
   }
 
   /**
@@ -91,15 +221,20 @@ public class CandleClient {
     String candleWidthPeriod = InfluxDbDurationFormatter.format(candleWidth);
     CandleReader reader = new CandleReader();
     InfluxDbAggregator influxDbAggregator =
-        new InfluxDbAggregator(influxDbClient, bucket, organisation);
-    return influxDbAggregator
-        .aggregateBestBidOrAskBetween(
-            priceSource,
-            queryBetween,
-            "best_ask_" + candleWidthPeriod,
-            false,
-            Duration.ofMinutes(1))
-        .map(reader);
+        new InfluxDbAggregator(influxDbClient, bucket, organisation, parameterizedQueries);
+    String candleName = "best_ask_" + candleWidthPeriod;
+    return invalidating(
+        candleName,
+        priceSource,
+        influxDbAggregator
+            .aggregateBestBidOrAskBetween(
+                priceSource,
+                queryBetween,
+                candleName,
+                false,
+                Duration.ofMinutes(1),
+                bestPricesFromTopOfBook)
+            .map(reader));
   }
 
   /**
@@ -112,7 +247,14 @@ public class CandleClient {
    */
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, String candleName, PriceSource priceSource) {
-    InfluxDbFirstLastDuration finder = new InfluxDbFirstLastDuration(influxDbClient, bucket);
+    InfluxDbFirstLastDuration finder =
+        new InfluxDbFirstLastDuration(influxDbClient, bucket, parameterizedQueries);
     return finder.firstLastDuration(queryBetween, candleName, "close", priceSource);
   }
+
+  // Cached reads of a measurement are dropped once a write to it has finished
+  private <T> Flux<T> invalidating(
+      String measurementName, PriceSource priceSource, Flux<T> writes) {
+    return writes.doFinally(signal -> finder.invalidate(measurementName, priceSource));
+  }
 }
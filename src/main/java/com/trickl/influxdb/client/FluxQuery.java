@@ -0,0 +1,416 @@
+package com.trickl.influxdb.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class FluxQuery {
+
+  private static final String TIME_COLUMNS = columns(List.of("_time"));
+
+  // Stages that pass rows through in order, so a limit after them can move ahead of them
+  private static final Set<String> ORDERED_STAGES = Set.of("range", "filter");
+
+  // Stages that keep every row, so a later limit still sees what a pivot produced
+  private static final Set<String> ROW_PRESERVING_STAGES = Set.of("group", "keep", "drop");
+
+  private final Map<String, FluxQuery> tables = new LinkedHashMap<>();
+
+  private final List<Stage> stages = new ArrayList<>();
+
+  private FluxQuery(Stage source) {
+    stages.add(source);
+  }
+
+  /**
+   * Start a query that reads from a bucket.
+   *
+   * @param bucket the bucket, as a Flux expression
+   * @return the query
+   */
+  public static FluxQuery from(String bucket) {
+    return new FluxQuery(new Stage("from").arg("bucket", bucket));
+  }
+
+  /**
+   * Start a query that joins the results of two other queries.
+   *
+   * @param leftName the name of the left table, used as a suffix for its columns
+   * @param left the left query
+   * @param rightName the name of the right table, used as a suffix for its columns
+   * @param right the right query
+   * @param on the columns to join on
+   * @return the query
+   */
+  public static FluxQuery join(
+      String leftName, FluxQuery left, String rightName, FluxQuery right, String... on) {
+    String joinTables =
+        "{" + leftName + ": " + leftName + ", " + rightName + ": " + rightName + "}";
+    FluxQuery query =
+        new FluxQuery(
+            new Stage("join").arg("tables", joinTables).arg("on", columns(List.of(on))));
+    query.tables.put(leftName, left);
+    query.tables.put(rightName, right);
+    return query;
+  }
+
+  /**
+   * Restrict the query to a time range.
+   *
+   * @param start the start time, as a Flux expression
+   * @param stop the stop time, as a Flux expression
+   * @return this query
+   */
+  public FluxQuery range(String start, String stop) {
+    return pipe(new Stage("range").arg("start", start).arg("stop", stop));
+  }
+
+  /**
+   * Keep only the rows that match a predicate.
+   *
+   * @param predicate the Flux predicate, in terms of a row r
+   * @return this query
+   */
+  public FluxQuery filter(String predicate) {
+    return pipe(new Stage("filter").arg("fn", "(r) => " + predicate));
+  }
+
+  /**
+   * Turn rows into columns.
+   *
+   * @param rowKey the columns that identify an output row
+   * @param columnKey the columns that name an output column
+   * @param valueColumn the column holding the value
+   * @return this query
+   */
+  public FluxQuery pivot(List<String> rowKey, List<String> columnKey, String valueColumn) {
+    return pipe(
+        new Stage("pivot")
+            .arg("rowKey", columns(rowKey))
+            .arg("columnKey", columns(columnKey))
+            .arg("valueColumn", quote(valueColumn)));
+  }
+
+  /**
+   * Split each table into time windows.
+   *
+   * @param every the window width, as a Flux expression
+   * @return this query
+   */
+  public FluxQuery window(String every) {
+    return pipe(new Stage("window").arg("every", every));
+  }
+
+  /**
+   * Aggregate each table over time windows.
+   *
+   * @param every the window width, as a Flux expression
+   * @param fn the aggregate function, such as mean
+   * @return this query
+   */
+  public FluxQuery aggregateWindow(String every, String fn) {
+    return pipe(new Stage("aggregateWindow").arg("every", every).arg("fn", fn));
+  }
+
+  /**
+   * Keep only some columns.
+   *
+   * @param columns the columns to keep
+   * @return this query
+   */
+  public FluxQuery keep(String... columns) {
+    return pipe(new Stage("keep").arg("columns", columns(List.of(columns))));
+  }
+
+  /**
+   * Remove some columns.
+   *
+   * @param columns the columns to remove
+   * @return this query
+   */
+  public FluxQuery drop(String... columns) {
+    return pipe(new Stage("drop").arg("columns", columns(List.of(columns))));
+  }
+
+  /**
+   * Regroup rows into tables.
+   *
+   * @param columns the group key, or none to merge everything into one table
+   * @return this query
+   */
+  public FluxQuery group(String... columns) {
+    Stage stage = new Stage("group");
+    return pipe(columns.length > 0 ? stage.arg("columns", columns(List.of(columns))) : stage);
+  }
+
+  /**
+   * Sort the rows of each table.
+   *
+   * @param desc true to sort in descending order
+   * @param columns the columns to sort by
+   * @return this query
+   */
+  public FluxQuery sort(boolean desc, String... columns) {
+    return pipe(
+        new Stage("sort")
+            .arg("columns", columns(List.of(columns)))
+            .arg("desc", Boolean.toString(desc)));
+  }
+
+  /**
+   * Keep the first rows of each table.
+   *
+   * @param n the number of rows, as a Flux expression
+   * @return this query
+   */
+  public FluxQuery limit(String n) {
+    return pipe(new Stage("limit").arg("n", n));
+  }
+
+  /**
+   * Keep the last rows of each table.
+   *
+   * @param n the number of rows, as a Flux expression
+   * @return this query
+   */
+  public FluxQuery tail(String n) {
+    return pipe(new Stage("tail").arg("n", n));
+  }
+
+  /**
+   * Set a column to the same value in every row.
+   *
+   * @param key the column
+   * @param value the value, as a Flux expression
+   * @return this query
+   */
+  public FluxQuery set(String key, String value) {
+    return pipe(new Stage("set").arg("key", quote(key)).arg("value", value));
+  }
+
+  /**
+   * Copy a column.
+   *
+   * @param column the column to copy
+   * @param as the name of the copy
+   * @return this query
+   */
+  public FluxQuery duplicate(String column, String as) {
+    return pipe(new Stage("duplicate").arg("column", quote(column)).arg("as", quote(as)));
+  }
+
+  /**
+   * Transform each row.
+   *
+   * @param fn the Flux function, in terms of a row r
+   * @return this query
+   */
+  public FluxQuery map(String fn) {
+    return pipe(new Stage("map").arg("fn", "(r) => " + fn));
+  }
+
+  /**
+   * Reduce each table to a single row.
+   *
+   * @param fn the Flux function, in terms of a row r and an accumulator
+   * @param identity the initial accumulator
+   * @return this query
+   */
+  public FluxQuery reduce(String fn, String identity) {
+    return pipe(
+        new Stage("reduce").arg("fn", "(r, accumulator) => " + fn).arg("identity", identity));
+  }
+
+  /**
+   * Write the results to a bucket.
+   *
+   * @param bucket the bucket, as a Flux expression
+   * @param org the organisation, as a Flux expression
+   * @param tagColumns the columns to write as tags
+   * @param fieldFn the Flux function that maps a row r to its fields
+   * @return this query
+   */
+  public FluxQuery to(String bucket, String org, List<String> tagColumns, String fieldFn) {
+    return pipe(
+        new Stage("to")
+            .arg("bucket", bucket)
+            .arg("org", org)
+            .arg("tagColumns", columns(tagColumns))
+            .arg("fieldFn", "(r) => " + fieldFn));
+  }
+
+  /**
+   * Call a Flux function without arguments, such as count or median.
+   *
+   * @param function the function name
+   * @return this query
+   */
+  public FluxQuery call(String function) {
+    return pipe(new Stage(function));
+  }
+
+  /**
+   * Leave a place for Flux code that is filled in when a template is bound.
+   *
+   * <p>Nothing is known about a fragment, so no optimisation moves anything past it.
+   *
+   * @param name the fragment name
+   * @return this query
+   */
+  public FluxQuery fragment(String name) {
+    Stage stage = new Stage(null);
+    stage.fragment = name;
+    return pipe(stage);
+  }
+
+  /**
+   * Rewrite the query into an equivalent one that does less work.
+   *
+   * <p>A sort or group that is undone by the next one is dropped. A limit after a pivot is also
+   * applied to each series before the pivot, where that cannot change the result, so the pivot
+   * only sees the rows it needs.
+   *
+   * @return an optimised copy of the query
+   */
+  public FluxQuery optimize() {
+    FluxQuery query = new FluxQuery(stages.get(0));
+    tables.forEach((name, table) -> query.tables.put(name, table.optimize()));
+    query.stages.addAll(stages.subList(1, stages.size()));
+    query.dropRedundantSorts();
+    query.dropRedundantGroups();
+    query.pushLimitAheadOfPivot();
+    return query;
+  }
+
+  /**
+   * Optimise the query and parse it as a template, ready to bind.
+   *
+   * @return the template
+   */
+  public FluxQueryTemplate toTemplate() {
+    return new FluxQueryTemplate(optimize().toString());
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    tables.forEach((name, table) -> text.append(name).append(" = ").append(table).append('\n'));
+    for (int i = 0; i < stages.size(); i++) {
+      Stage stage = stages.get(i);
+      if (stage.fragment != null) {
+        text.append("{{").append(stage.fragment).append("}}");
+      } else {
+        text.append(i > 0 ? "|> " : "").append(stage).append('\n');
+      }
+    }
+    return text.toString();
+  }
+
+  private FluxQuery pipe(Stage stage) {
+    stages.add(stage);
+    return this;
+  }
+
+  private void dropRedundantSorts() {
+    for (int i = stages.size() - 1; i >= 0; i--) {
+      if (stages.get(i).is("sort")) {
+        for (int j = i + 1; j < stages.size(); j++) {
+          Stage next = stages.get(j);
+          if (next.is("sort")) {
+            stages.remove(i);
+            break;
+          } else if (!next.isAny(ROW_PRESERVING_STAGES)) {
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  private void dropRedundantGroups() {
+    for (int i = stages.size() - 2; i >= 0; i--) {
+      if (stages.get(i).is("group") && stages.get(i + 1).is("group")) {
+        stages.remove(i);
+      }
+    }
+  }
+
+  private void pushLimitAheadOfPivot() {
+    int pivot = -1;
+    for (int i = 1; i < stages.size() && pivot < 0; i++) {
+      if (stages.get(i).is("pivot")) {
+        pivot = i;
+      } else if (!stages.get(i).isAny(ORDERED_STAGES)) {
+        return;
+      }
+    }
+    if (pivot < 0) {
+      return;
+    }
+
+    // Each series arrives in time order, so the first or last n rows of each pivoted table
+    // come only from the first or last n rows of each of its series.
+    boolean desc = false;
+    for (int i = pivot + 1; i < stages.size(); i++) {
+      Stage stage = stages.get(i);
+      if (stage.is("sort") && TIME_COLUMNS.equals(stage.args.get("columns"))) {
+        desc = Boolean.parseBoolean(stage.args.get("desc"));
+      } else if (stage.is("limit") || stage.is("tail")) {
+        boolean first = stage.is("limit") != desc;
+        stages.add(pivot, new Stage(first ? "limit" : "tail").arg("n", stage.args.get("n")));
+        return;
+      } else if (!stage.isAny(ROW_PRESERVING_STAGES)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Write a name, such as a column, as a Flux string literal.
+   *
+   * @param value the name
+   * @return the quoted and escaped name
+   */
+  static String quote(String value) {
+    return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  private static String columns(List<String> columns) {
+    return columns.stream().map(FluxQuery::quote).collect(Collectors.joining(", ", "[", "]"));
+  }
+
+  private static class Stage {
+    private final String function;
+
+    private final Map<String, String> args = new LinkedHashMap<>();
+
+    private String fragment;
+
+    Stage(String function) {
+      this.function = function;
+    }
+
+    Stage arg(String name, String value) {
+      args.put(name, value);
+      return this;
+    }
+
+    boolean is(String function) {
+      return function.equals(this.function);
+    }
+
+    boolean isAny(Set<String> functions) {
+      return this.function != null && functions.contains(this.function);
+    }
+
+    @Override
+    public String toString() {
+      return args.entrySet().stream()
+          .map(arg -> arg.getKey() + ": " + arg.getValue())
+          .collect(Collectors.joining(", ", function + "(", ")"));
+    }
+  }
+}
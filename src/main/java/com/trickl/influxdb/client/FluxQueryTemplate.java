@@ -0,0 +1,200 @@
+package com.trickl.influxdb.client;
+
+import com.influxdb.client.domain.Dialect;
+import com.influxdb.client.domain.Query;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+public class FluxQueryTemplate {
+
+  private static final Pattern FRAGMENT = Pattern.compile("\\{\\{(\\w+)\\}\\}");
+
+  private static final Pattern PARAM = Pattern.compile("params\\.(\\w+)");
+
+  private static final Dialect DIALECT =
+      new Dialect()
+          .header(true)
+          .delimiter(",")
+          .commentPrefix("#")
+          .dateTimeFormat(Dialect.DateTimeFormatEnum.RFC3339)
+          .annotations(
+              List.of(
+                  Dialect.AnnotationsEnum.DATATYPE,
+                  Dialect.AnnotationsEnum.GROUP,
+                  Dialect.AnnotationsEnum.DEFAULT));
+
+  private final List<String> literals = new ArrayList<>();
+
+  private final List<String> fragmentNames = new ArrayList<>();
+
+  /**
+   * Parse a Flux query template once, so it can be bound many times.
+   *
+   * <p>Values are referred to as params.name. They are written into the query as escaped
+   * literals when it is sent, or sent alongside it as parameters if those are chosen. Parts of
+   * the query that vary in structure, such as optional filters, are marked as {{name}}
+   * fragments and filled in with Flux code when the template is bound.
+   *
+   * @param template the Flux query
+   */
+  public FluxQueryTemplate(String template) {
+    Matcher matcher = FRAGMENT.matcher(template);
+    int position = 0;
+    while (matcher.find()) {
+      literals.add(template.substring(position, matcher.start()));
+      fragmentNames.add(matcher.group(1));
+      position = matcher.end();
+    }
+    literals.add(template.substring(position));
+  }
+
+  /**
+   * Start binding fragments and parameter values to the template.
+   *
+   * @return an empty binding
+   */
+  public Binding bind() {
+    return new Binding();
+  }
+
+  public class Binding {
+    private final Map<String, String> fragments = new HashMap<>();
+
+    private final Map<String, Object> params = new LinkedHashMap<>();
+
+    /**
+     * Fill in a fragment of the query. Unbound fragments are left empty.
+     *
+     * @param name the fragment name
+     * @param flux the Flux code
+     * @return this binding
+     */
+    public Binding fragment(String name, String flux) {
+      fragments.put(name, flux);
+      return this;
+    }
+
+    /**
+     * Bind a parameter value. Times are sent as RFC3339 strings, so use time(v: ...) to read them.
+     *
+     * @param name the parameter name
+     * @param value the value
+     * @return this binding
+     */
+    public Binding param(String name, Object value) {
+      params.put(name, value instanceof Instant ? value.toString() : value);
+      return this;
+    }
+
+    /**
+     * Bind a value to a generated parameter name, for use in a fragment.
+     *
+     * @param value the value
+     * @return a reference to the parameter, to use in Flux code
+     */
+    public String param(Object value) {
+      String name = "p" + params.size();
+      param(name, value instanceof Collection ? new ArrayList<>((Collection<?>) value) : value);
+      return "params." + name;
+    }
+
+    /**
+     * Get the Flux query text.
+     *
+     * @return the query with its fragments filled in
+     */
+    public String getText() {
+      StringBuilder text = new StringBuilder(literals.get(0));
+      for (int i = 0; i < fragmentNames.size(); i++) {
+        text.append(fragments.getOrDefault(fragmentNames.get(i), ""));
+        text.append(literals.get(i + 1));
+      }
+      return text.toString();
+    }
+
+    /**
+     * Get the parameter values.
+     *
+     * @return the values by parameter name
+     */
+    public Map<String, Object> getParams() {
+      return params;
+    }
+
+    /**
+     * Build the query to send, with an annotated CSV dialect.
+     *
+     * <p>InfluxDB OSS 2.x ignores query parameters, and only InfluxDB Cloud supports them, so
+     * values should be written into the query unless the database is known to accept them.
+     *
+     * @param parameterized true to send values as query parameters, false to write them into the
+     *     query as escaped literals
+     * @return the query
+     */
+    public Query toQuery(boolean parameterized) {
+      if (parameterized) {
+        return new Query().query(getText()).params(params).dialect(DIALECT);
+      }
+      return new Query().query(getInlineText()).dialect(DIALECT);
+    }
+
+    /**
+     * Get the Flux query text with each parameter replaced by its value, as a Flux literal.
+     *
+     * @return the query with its fragments and values filled in
+     */
+    public String getInlineText() {
+      Matcher matcher = PARAM.matcher(getText());
+      StringBuilder text = new StringBuilder();
+      while (matcher.find()) {
+        String name = matcher.group(1);
+        String value = params.containsKey(name) ? literal(params.get(name)) : matcher.group();
+        matcher.appendReplacement(text, Matcher.quoteReplacement(value));
+      }
+      matcher.appendTail(text);
+      return text.toString();
+    }
+
+    @Override
+    public String toString() {
+      return getText() + "\nparams: " + params;
+    }
+  }
+
+  private static String literal(Object value) {
+    if (value instanceof Collection) {
+      return ((Collection<?>) value)
+          .stream().map(FluxQueryTemplate::literal).collect(Collectors.joining(", ", "[", "]"));
+    } else if (value instanceof Boolean || value instanceof Integer || value instanceof Long) {
+      return value.toString();
+    } else if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      if (!Double.isFinite(number)) {
+        throw new IllegalArgumentException("Cannot write " + value + " as a Flux literal");
+      }
+      String text = BigDecimal.valueOf(number).toPlainString();
+      return text.contains(".") ? text : text + ".0";
+    } else if (value == null) {
+      throw new IllegalArgumentException("Cannot write null as a Flux literal");
+    }
+    return "\""
+        + value
+            .toString()
+            .replace("\\", "\\\\")
+            .replace("\"", "\\\"")
+            .replace("${", "\\${")
+            .replace("\n", "\\n")
+            .replace("\r", "\\r")
+            .replace("\t", "\\t")
+        + "\"";
+  }
+}
@@ -1,9 +1,9 @@
 package com.trickl.influxdb.client;
 
-import java.text.MessageFormat;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.tuple.Pair;
@@ -13,10 +13,12 @@ public class FluxStatementFilterBuilder {
    * Build a flux statement representing a filter.
    *
    * @param filter The filter
+   * @param param binds a value as a query parameter, returning a reference to it
    * @return A filter filter condition
    */
-  public static String buildFrom(Pair<String, Set<String>> filter) {
-    String filterCondition = buildClauseFrom(filter);
+  public static String buildFrom(
+      Pair<String, Set<String>> filter, Function<Object, String> param) {
+    String filterCondition = buildClauseFrom(filter, param);
     return buildFilterFromClauses(Stream.of(filterCondition));
   }
 
@@ -24,27 +26,32 @@ public class FluxStatementFilterBuilder {
    * Build a flux statement representing a filter.
    *
    * @param filter The filter
+   * @param param binds a value as a query parameter, returning a reference to it
    * @return A filter filter condition
    */
-  public static String buildFrom(Map<String, Set<String>> filter) {
+  public static String buildFrom(
+      Map<String, Set<String>> filter, Function<Object, String> param) {
     if (filter.isEmpty()) {
       return "";
     }
     Stream<String> filterConditions =
-        filter.entrySet().stream().map(FluxStatementFilterBuilder::buildClauseFrom);
+        filter.entrySet().stream().map(entry -> buildClauseFrom(entry, param));
     return buildFilterFromClauses(filterConditions);
   }
 
   /**
-   * Build a OR clause statement.
+   * Build a OR clause statement. The column is read as r["name"], so any name can be filtered.
    *
    * @param filter The filter
+   * @param param binds a value as a query parameter, returning a reference to it
    * @return A filter filter condition
    */
-  private static String buildClauseFrom(Entry<String, Set<String>> filter) {
-    String filterField = filter.getKey();
+  private static String buildClauseFrom(
+      Entry<String, Set<String>> filter, Function<Object, String> param) {
+    String column = "r[" + FluxQuery.quote(filter.getKey()) + "]";
     return filter.getValue().stream()
-        .map(filterValue -> MessageFormat.format("r.{0} == \"{1}\"", filterField, filterValue))
+        .sorted()
+        .map(filterValue -> column + " == " + param.apply(filterValue))
         .collect(Collectors.joining(" or "));
   }
 
@@ -55,10 +62,8 @@ public class FluxStatementFilterBuilder {
    * @return A filter filter condition
    */
   private static String buildFilterFromClauses(Stream<String> clauses) {
-    return MessageFormat.format(
-        "|> filter(fn: (r) => {0})\n",
-        clauses
-            .map(clause -> MessageFormat.format("({0})", clause))
-            .collect(Collectors.joining(" and ")));
+    return clauses
+        .map(clause -> "(" + clause + ")")
+        .collect(Collectors.joining(" and ", "|> filter(fn: (r) => ", ")\n"));
   }
 }
@@ -6,10 +6,10 @@ import com.influxdb.exceptions.BadRequestException;
 import com.trickl.influxdb.text.Rfc3339;
 import com.trickl.model.pricing.primitives.PriceSource;
 import com.trickl.model.pricing.statistics.PriceSourceInteger;
-import java.text.MessageFormat;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.util.Optional;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.java.Log;
@@ -19,10 +19,37 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class InfluxDbCount {
 
+  private static final FluxQueryTemplate QUERY =
+      FluxQuery.from("params.bucket")
+          .range("time(v: params.start)", "time(v: params.stop)")
+          .filter(
+              "r._measurement == params.measurement and r._field == params.field"
+                  + " and r.exchangeId == params.exchangeId"
+                  + " and r.instrumentId == params.instrumentId")
+          .fragment("filter")
+          .group("instrumentId", "exchangeId")
+          .call("count")
+          .toTemplate();
+
+  private static final FluxQueryTemplate FIELDS_QUERY =
+      FluxQuery.from("params.bucket")
+          .range("time(v: params.start)", "time(v: params.stop)")
+          .filter(
+              "r._measurement == params.measurement"
+                  + " and contains(value: r._field, set: params.fields)"
+                  + " and r.exchangeId == params.exchangeId"
+                  + " and r.instrumentId == params.instrumentId")
+          .group("instrumentId", "exchangeId")
+          .call("count")
+          .toTemplate();
+
   protected final InfluxDBClientReactive influxDbClient;
 
   protected final String bucket;
 
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  protected final boolean parameterized;
+
   /**
    * Find all available series that overlap a time window.
    *
@@ -37,7 +64,7 @@ public class InfluxDbCount {
       String measurementName,
       String fieldName,
       PriceSource priceSource) {
-    return count(queryBetween, measurementName, fieldName, priceSource, Optional.empty());
+    return count(queryBetween, measurementName, fieldName, priceSource, Collections.emptyMap());
   }
 
   /**
@@ -47,6 +74,7 @@ public class InfluxDbCount {
    * @param measurementName the name of the measurement
    * @param fieldName the name of the field to query
    * @param priceSource filter on this price source
+   * @param filter only count points with one of these values for each tag
    * @return A list of series
    */
   public Mono<PriceSourceInteger> count(
@@ -54,44 +82,59 @@ public class InfluxDbCount {
       String measurementName,
       String fieldName,
       PriceSource priceSource,
-      Optional<String> additionalFilter) {
+      Map<String, Set<String>> filter) {
 
-    String filterExtension = additionalFilter.map(s -> " and " + s).orElse("");
+    FluxQueryTemplate.Binding query =
+        QUERY
+            .bind()
+            .param("bucket", bucket)
+            .param("measurement", measurementName)
+            .param("field", fieldName)
+            .param("exchangeId", priceSource.getExchangeId())
+            .param("instrumentId", priceSource.getInstrumentId())
+            .param("start", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getStart()))
+            .param("stop", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getEnd()));
+    query.fragment("filter", FluxStatementFilterBuilder.buildFrom(filter, query::param));
+    return count(query, priceSource);
+  }
 
-    String filter =
-        MessageFormat.format(
-            "|> filter(fn: (r) => r._measurement == measurement and r._field == field"
-                + " and r.exchangeId == \"{0}\" and r.instrumentId == \"{1}\"{2})\n",
-            priceSource.getExchangeId(), priceSource.getInstrumentId(), filterExtension);
+  /**
+   * Count the values of several fields of a measurement together, in a single query.
+   *
+   * @param queryBetween A time window there series must have a data point within
+   * @param measurementName the name of the measurement
+   * @param fieldNames the names of the fields to count
+   * @param priceSource filter on this price source
+   * @return the total count over all the fields
+   */
+  public Mono<PriceSourceInteger> count(
+      QueryBetween queryBetween,
+      String measurementName,
+      Collection<String> fieldNames,
+      PriceSource priceSource) {
 
-    String flux =
-        MessageFormat.format(
-            "filteredCount = (measurement, field, start, stop) => '{'\n"
-                + "  return from(bucket:\"{0}\")\n"
-                + "  |> range(start: start, stop: stop)\n"
-                + "  {1}"
-                + "  |> group(columns: [\"instrumentId\", \"exchangeId\"])\n"
-                + "  |> count()\n"
-                + "'}'\n"
-                + "\n"
-                + "filteredCount(measurement: \"{2}\", field: \"{3}\", start: {4},"
-                + " stop: {5})",
-            bucket,
-            filter,
-            measurementName,
-            fieldName,
-            Rfc3339.YMDHMS_FORMATTER.format(
-                ZonedDateTime.ofInstant(queryBetween.getStart(), ZoneOffset.UTC)),
-            Rfc3339.YMDHMS_FORMATTER.format(
-                ZonedDateTime.ofInstant(queryBetween.getEnd(), ZoneOffset.UTC)));
+    FluxQueryTemplate.Binding query =
+        FIELDS_QUERY
+            .bind()
+            .param("bucket", bucket)
+            .param("measurement", measurementName)
+            .param("fields", fieldNames)
+            .param("exchangeId", priceSource.getExchangeId())
+            .param("instrumentId", priceSource.getInstrumentId())
+            .param("start", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getStart()))
+            .param("stop", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getEnd()));
+    return count(query, priceSource);
+  }
 
+  private Mono<PriceSourceInteger> count(
+      FluxQueryTemplate.Binding query, PriceSource priceSource) {
     QueryReactiveApi queryApi = influxDbClient.getQueryReactiveApi();
 
-    return Mono.from(queryApi.query(flux, PriceSourceInteger.class))
+    return Mono.from(queryApi.query(query.toQuery(parameterized), PriceSourceInteger.class))
         .doOnError(
             BadRequestException.class,
             e -> {
-              log.log(Level.WARNING, "Error executing query: " + flux);
+              log.log(Level.WARNING, "Error executing query: " + query);
             })
         .defaultIfEmpty(
             PriceSourceInteger.builder()
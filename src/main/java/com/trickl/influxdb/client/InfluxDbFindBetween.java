@@ -1,26 +1,79 @@
 package com.trickl.influxdb.client;
 
+import com.influxdb.annotations.Column;
+import com.influxdb.client.domain.Query;
 import com.influxdb.client.reactive.InfluxDBClientReactive;
 import com.influxdb.client.reactive.QueryReactiveApi;
+import com.influxdb.query.FluxRecord;
+import com.trickl.influxdb.persistence.PriceSourceEntity;
+import com.trickl.influxdb.protocol.AnnotatedCsvDecoder;
+import com.trickl.influxdb.protocol.AnnotatedCsvRowMapper;
+import com.trickl.influxdb.protocol.AnnotatedCsvRowMappers;
 import com.trickl.influxdb.text.Rfc3339;
 import com.trickl.model.pricing.primitives.PriceSource;
-import java.text.MessageFormat;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @RequiredArgsConstructor
 public class InfluxDbFindBetween {
 
+  // Each shape of query is built and optimised once, as its values are sent as parameters
+  private static final Map<QueryShape, FluxQueryTemplate> QUERIES = new ConcurrentHashMap<>();
+
+  // The tags each type of measurement is written with, read once from its column annotations
+  private static final Map<Class<?>, Set<String>> TAGS = new ConcurrentHashMap<>();
+
+  // Tags that are fixed by every query
+  private static final Set<String> SOURCE_TAGS = Set.of("exchangeId", "instrumentId");
+
+  private static final List<String> PIVOT_ROW_KEY = List.of("_time", "exchangeId", "instrumentId");
+
+  private static final String SOURCE_CLAUSE =
+      "r.exchangeId == params.exchangeId and r.instrumentId == params.instrumentId";
+
+  private static final String TEMPORAL_SOURCE_CLAUSE =
+      "r.exchangeId == params.exchangeId and r.temporalSource == params.temporalSource and "
+          + "r.instrumentId == params.instrumentId";
+
   protected final InfluxDBClientReactive influxDbClient;
 
   protected final String bucket;
 
+  // Shares identical queries that run at the same time, or null to run every query
+  protected final QueryCoalescer coalescer;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  protected final boolean parameterized;
+
+  /**
+   * Create a finder that runs every query it is given.
+   *
+   * @param influxDbClient the database client
+   * @param bucket the bucket to read
+   */
+  public InfluxDbFindBetween(InfluxDBClientReactive influxDbClient, String bucket) {
+    this(influxDbClient, bucket, null, false);
+  }
+
   /**
    * Find measurements in the database.
    *
@@ -64,6 +117,13 @@ public class InfluxDbFindBetween {
   /**
    * Find measurements in the database.
    *
+   * <p>Types with a registered row mapper are decoded straight from the raw response, others are
+   * mapped by the client library.
+   *
+   * <p>The tags of a measurement are declared by the column annotations of its class. If the
+   * filter fixes every one of them, the query reads a single series, which already arrives in
+   * time order and is not sorted. Otherwise the server merges and sorts the series.
+   *
    * @param <T> the type of measurement
    * @param priceSource The price source for the measurements
    * @param queryBetween Query parameters
@@ -80,49 +140,369 @@ public class InfluxDbFindBetween {
       Class<T> measurementClazz,
       Map<String, Set<String>> filter,
       Optional<String> temporalSource) {
+    QueryOrdering ordering = getOrdering(getTags(measurementClazz), filter, temporalSource);
+    return queryInChunks(
+        queryBetween,
+        chunk ->
+            query(
+                buildQuery(priceSource, chunk, measurementName, filter, temporalSource, ordering),
+                measurementClazz));
+  }
+
+  /**
+   * Forget any results held for a measurement of an instrument, once it has been written to.
+   *
+   * <p>Nothing is held here, so this does nothing.
+   *
+   * @param measurementName the measurement name
+   * @param priceSource the instrument written to
+   */
+  public void invalidate(String measurementName, PriceSource priceSource) {}
 
-    String sortClause =
-        MessageFormat.format(
-            "|> sort(columns: [\"_time\"], desc: {0})\n", queryBetween.isMostRecentFirst());
+  /**
+   * Find measurements for many instruments in the database, with a single query.
+   *
+   * <p>The limit applies to each instrument. Each series is read in time order and the rows of
+   * each instrument are sorted on the client, so nothing is sorted on the server.
+   *
+   * @param <T> the type of measurement
+   * @param priceSources The price sources for the measurements
+   * @param queryBetween Query parameters
+   * @param measurementName The measurement name
+   * @param measurementClazz the time of measurement
+   * @return Lists of measurements in time order, for every price source
+   */
+  public <T extends PriceSourceEntity> Mono<Map<PriceSource, List<T>>> findBetween(
+      Collection<PriceSource> priceSources,
+      QueryBetween queryBetween,
+      String measurementName,
+      Class<T> measurementClazz) {
+    Map<List<String>, PriceSource> sourcesByKey = new LinkedHashMap<>();
+    for (PriceSource priceSource : priceSources) {
+      sourcesByKey.put(
+          sourceKey(priceSource.getExchangeId(), priceSource.getInstrumentId()), priceSource);
+    }
+    if (sourcesByKey.isEmpty()) {
+      return Mono.just(Collections.emptyMap());
+    }
+
+    // Each chunk is limited by series, so the limit cannot be applied across chunks
+    long limit = queryBetween.getLimit() != null ? queryBetween.getLimit() : Long.MAX_VALUE;
+    Comparator<T> byTime = Comparator.comparing(PriceSourceEntity::getTime);
+    Comparator<T> order = queryBetween.isMostRecentFirst() ? byTime.reversed() : byTime;
+    return Flux.fromIterable(queryBetween.splitIntoChunks())
+        .flatMapSequential(
+            chunk ->
+                query(
+                    buildQuery(sourcesByKey.values(), chunk, measurementName),
+                    measurementClazz),
+            queryBetween.getChunkConcurrency())
+        .collect(
+            () -> {
+              Map<PriceSource, List<T>> measurementsBySource = new LinkedHashMap<>();
+              for (PriceSource source : sourcesByKey.values()) {
+                measurementsBySource.put(source, new ArrayList<>());
+              }
+              return measurementsBySource;
+            },
+            (measurementsBySource, measurement) -> {
+              PriceSource source =
+                  sourcesByKey.get(
+                      sourceKey(measurement.getExchangeId(), measurement.getInstrumentId()));
+              if (source != null) {
+                measurementsBySource.get(source).add(measurement);
+              }
+            })
+        .map(
+            measurementsBySource -> {
+              // The rows of an instrument are runs in time order, which the sort merges
+              measurementsBySource.replaceAll(
+                  (source, measurements) -> {
+                    measurements.sort(order);
+                    return measurements.size() > limit
+                        ? new ArrayList<>(measurements.subList(0, (int) limit))
+                        : measurements;
+                  });
+              return measurementsBySource;
+            });
+  }
+
+  /**
+   * Find measurements in the database, as pivoted records with a column for each field.
+   *
+   * <p>This suits measurements whose fields are not known in advance, so cannot be mapped to a
+   * class.
+   *
+   * @param priceSource The price source for the measurements
+   * @param queryBetween Query parameters
+   * @param measurementName The measurement name
+   * @return A list of records
+   */
+  public Flux<FluxRecord> findRecordsBetween(
+      PriceSource priceSource, QueryBetween queryBetween, String measurementName) {
+    QueryReactiveApi queryApi = influxDbClient.getQueryReactiveApi();
+    return queryInChunks(
+        queryBetween,
+        chunk -> {
+          FluxQueryTemplate.Binding query =
+              buildQuery(
+                  priceSource,
+                  chunk,
+                  measurementName,
+                  Collections.emptyMap(),
+                  Optional.empty(),
+                  QueryOrdering.SERVER);
+          return coalesce(
+              List.of(influxDbClient, query.getText(), query.getParams(), FluxRecord.class),
+              () -> Flux.from(queryApi.query(query.toQuery(parameterized))));
+        });
+  }
+
+  /**
+   * Run a query over consecutive sub-ranges, if the query has a chunk size.
+   *
+   * <p>Chunks are queried with up to the chunk concurrency in flight at once, and their results
+   * are concatenated in order. As chunks do not overlap, this keeps strict time order. Results
+   * stream as soon as the first chunk returns, later chunks are buffered only up to the inner
+   * prefetch so demand still applies, and the limit applies across all chunks.
+   *
+   * @param <T> the type of result
+   * @param queryBetween Query parameters
+   * @param query runs the query for one chunk
+   * @return the results of all chunks
+   */
+  protected <T> Flux<T> queryInChunks(
+      QueryBetween queryBetween, Function<QueryBetween, Flux<T>> query) {
+    List<QueryBetween> chunks = queryBetween.splitIntoChunks();
+    if (chunks.size() == 1) {
+      return query.apply(chunks.get(0));
+    }
+
+    Flux<T> results =
+        Flux.fromIterable(chunks)
+            .flatMapSequential(query, queryBetween.getChunkConcurrency());
+    return queryBetween.getLimit() != null ? results.take(queryBetween.getLimit()) : results;
+  }
 
-    String limitClause = "";
+  /**
+   * Build a query for measurements, with a pivoted row for each time.
+   *
+   * @param priceSource The price source for the measurements
+   * @param queryBetween Query parameters
+   * @param measurementName The measurement name
+   * @param filter An optional filter for fields
+   * @param temporalSource An optional temporal source
+   * @param ordering where the results are put in time order
+   * @return A flux query, bound to its parameters
+   */
+  protected FluxQueryTemplate.Binding buildQuery(
+      PriceSource priceSource,
+      QueryBetween queryBetween,
+      String measurementName,
+      Map<String, Set<String>> filter,
+      Optional<String> temporalSource,
+      QueryOrdering ordering) {
+    return bindSource(
+        bindQuery(queryBetween, measurementName, filter, ordering), priceSource, temporalSource);
+  }
+
+  /**
+   * Build a query for the measurements of many instruments, with a pivoted row for each time.
+   *
+   * <p>The limit applies to each series, and the rows of each series are in time order, ready to
+   * be merged on the client.
+   *
+   * @param priceSources The price sources for the measurements
+   * @param queryBetween Query parameters
+   * @param measurementName The measurement name
+   * @return A flux query, bound to its parameters
+   */
+  protected FluxQueryTemplate.Binding buildQuery(
+      Collection<PriceSource> priceSources, QueryBetween queryBetween, String measurementName) {
+    Map<String, Set<String>> instrumentsByExchange = new TreeMap<>();
+    for (PriceSource priceSource : priceSources) {
+      instrumentsByExchange
+          .computeIfAbsent(priceSource.getExchangeId().toUpperCase(), exchange -> new TreeSet<>())
+          .add(priceSource.getInstrumentId().toUpperCase());
+    }
+
+    FluxQueryTemplate.Binding query =
+        bindQuery(
+            queryBetween, measurementName, Collections.emptyMap(), QueryOrdering.CLIENT_MERGE);
+    String sourceClause =
+        instrumentsByExchange.entrySet().stream()
+            .map(
+                instruments ->
+                    "(r.exchangeId == "
+                        + query.param(instruments.getKey())
+                        + " and contains(value: r.instrumentId, set: "
+                        + query.param(instruments.getValue())
+                        + "))")
+            .collect(Collectors.joining(" or ", "(", ")"));
+    return query.fragment("source", sourceClause);
+  }
+
+  private FluxQueryTemplate.Binding bindQuery(
+      QueryBetween queryBetween,
+      String measurementName,
+      Map<String, Set<String>> filter,
+      QueryOrdering ordering) {
+    // Drop unwanted fields before the pivot, keeping any that are filtered on
+    Set<String> fields = new TreeSet<>();
+    if (queryBetween.getFields() != null && !queryBetween.getFields().isEmpty()) {
+      fields.addAll(queryBetween.getFields());
+      fields.addAll(filter.keySet());
+    }
+
+    QueryShape shape =
+        new QueryShape(
+            ordering,
+            !fields.isEmpty(),
+            !filter.isEmpty(),
+            queryBetween.getLimit() != null,
+            queryBetween.isMostRecentFirst());
+    FluxQueryTemplate.Binding query =
+        QUERIES
+            .computeIfAbsent(shape, QueryShape::build)
+            .bind()
+            .param("bucket", bucket)
+            .param("measurement", measurementName)
+            .param("start", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getStart()))
+            .param("stop", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getEnd()));
     if (queryBetween.getLimit() != null) {
-      limitClause = MessageFormat.format("|> limit(n: {0})\n", queryBetween.getLimit().toString());
+      query.param("limit", queryBetween.getLimit());
     }
+    if (!fields.isEmpty()) {
+      query.param("fields", new ArrayList<>(fields));
+    }
+    return query.fragment("filter", FluxStatementFilterBuilder.buildFrom(filter, query::param));
+  }
 
-    String additionalFilterClause = FluxStatementFilterBuilder.buildFrom(filter);
-
-    String additionalTemporalClause =
-        temporalSource.isPresent()
-            ? String.format("r.temporalSource == \"%s\" and ", temporalSource.get())
-            : "";
-
-    String flux =
-        MessageFormat.format(
-            "from(bucket:\"{0}\")\n"
-                + "|> range(start: {4}, stop: {5})\n"
-                + "|> filter(fn: (r) => r._measurement == \"{1}\" and "
-                + "r.exchangeId == \"{2}\" and "
-                + "{9}"
-                + "r.instrumentId == \"{3}\")\n"
-                + "|> pivot (rowKey:[\"_time\", \"exchangeId\", \"instrumentId\"], "
-                + "columnKey: [\"_field\"], valueColumn: \"_value\")\n"
-                + "{8}"
-                + "|> group()\n{6}{7}",
-            bucket,
-            measurementName,
-            priceSource.getExchangeId().toUpperCase(),
-            priceSource.getInstrumentId().toUpperCase(),
-            Rfc3339.YMDHMS_FORMATTER.format(
-                ZonedDateTime.ofInstant(queryBetween.getStart(), ZoneOffset.UTC)),
-            Rfc3339.YMDHMS_FORMATTER.format(
-                ZonedDateTime.ofInstant(queryBetween.getEnd(), ZoneOffset.UTC)),
-            sortClause,
-            limitClause,
-            additionalFilterClause,
-            additionalTemporalClause);
+  private static FluxQueryTemplate.Binding bindSource(
+      FluxQueryTemplate.Binding query, PriceSource priceSource, Optional<String> temporalSource) {
+    query
+        .param("exchangeId", priceSource.getExchangeId().toUpperCase())
+        .param("instrumentId", priceSource.getInstrumentId().toUpperCase());
+    if (temporalSource.isPresent()) {
+      query
+          .param("temporalSource", temporalSource.get())
+          .fragment("source", TEMPORAL_SOURCE_CLAUSE);
+    } else {
+      query.fragment("source", SOURCE_CLAUSE);
+    }
+    return query;
+  }
 
+  private <T> Flux<T> query(FluxQueryTemplate.Binding query, Class<T> measurementClazz) {
     QueryReactiveApi queryApi = influxDbClient.getQueryReactiveApi();
-    return Flux.from(queryApi.query(flux, measurementClazz));
+    Optional<AnnotatedCsvRowMapper<T>> rowMapper = AnnotatedCsvRowMappers.find(measurementClazz);
+    Query request = query.toQuery(parameterized);
+    return coalesce(
+        List.of(influxDbClient, query.getText(), query.getParams(), measurementClazz),
+        () ->
+            rowMapper
+                .map(mapper -> AnnotatedCsvDecoder.decode(queryApi.queryRaw(request), mapper))
+                .orElseGet(() -> Flux.from(queryApi.query(request, measurementClazz))));
+  }
+
+  private <T> Flux<T> coalesce(Object key, Supplier<Flux<T>> query) {
+    return coalescer != null ? coalescer.coalesce(key, query) : Flux.defer(query);
+  }
+
+  private static List<String> sourceKey(String exchangeId, String instrumentId) {
+    return List.of(
+        String.valueOf(exchangeId).toUpperCase(), String.valueOf(instrumentId).toUpperCase());
+  }
+
+  /**
+   * Work out how to put the results of a query in time order.
+   *
+   * <p>Only the exchange, instrument and temporal source of a query are fixed, so a query reads
+   * one series if every other tag of the measurement is filtered to a single value. If the tags
+   * are not known, the server sorts the results.
+   *
+   * @param tags the tags the measurement is written with, empty if not known
+   * @param filter An optional filter for fields
+   * @param temporalSource An optional temporal source
+   * @return the ordering
+   */
+  protected static QueryOrdering getOrdering(
+      Collection<String> tags, Map<String, Set<String>> filter, Optional<String> temporalSource) {
+    if (tags.isEmpty()) {
+      return QueryOrdering.SERVER;
+    }
+    for (String tag : tags) {
+      boolean fixed =
+          SOURCE_TAGS.contains(tag)
+              || (tag.equals("temporalSource") && temporalSource.isPresent())
+              || (filter.containsKey(tag) && filter.get(tag).size() == 1);
+      if (!fixed) {
+        return QueryOrdering.SERVER;
+      }
+    }
+    return QueryOrdering.SINGLE_SERIES;
+  }
+
+  private static Set<String> getTags(Class<?> measurementClazz) {
+    return TAGS.computeIfAbsent(
+        measurementClazz,
+        clazz -> {
+          Set<String> tags = new HashSet<>();
+          for (Class<?> type = clazz; type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+              Column column = field.getAnnotation(Column.class);
+              if (column != null && column.tag()) {
+                tags.add(column.name().isEmpty() ? field.getName() : column.name());
+              }
+            }
+          }
+          return tags;
+        });
+  }
+
+  @Value
+  private static class QueryShape {
+    QueryOrdering ordering;
+    boolean projected;
+    boolean filtered;
+    boolean limited;
+    boolean mostRecentFirst;
+
+    FluxQueryTemplate build() {
+      FluxQuery query =
+          FluxQuery.from("params.bucket")
+              .range("time(v: params.start)", "time(v: params.stop)")
+              .filter("r._measurement == params.measurement and {{source}}");
+      if (projected) {
+        query.filter("contains(value: r._field, set: params.fields)");
+      }
+      query.pivot(PIVOT_ROW_KEY, List.of("_field"), "_value");
+      if (filtered) {
+        query.fragment("filter");
+      }
+
+      if (ordering == QueryOrdering.SERVER) {
+        query.group().sort(mostRecentFirst, "_time");
+        if (limited) {
+          query.limit("params.limit");
+        }
+      } else if (ordering == QueryOrdering.SINGLE_SERIES) {
+        // A single series is in time order, and a limit after reversing it reads only its tail
+        if (mostRecentFirst) {
+          query.sort(true, "_time");
+        }
+        if (limited) {
+          query.limit("params.limit");
+        }
+      } else if (limited) {
+        // Each series is in time order, so only its first or last rows are needed
+        if (mostRecentFirst) {
+          query.tail("params.limit");
+        } else {
+          query.limit("params.limit");
+        }
+      }
+      return query.toTemplate();
+    }
   }
 }
@@ -6,10 +6,7 @@ import com.influxdb.exceptions.BadRequestException;
 import com.trickl.influxdb.text.Rfc3339;
 import com.trickl.model.pricing.primitives.PriceSource;
 import com.trickl.model.pricing.statistics.PriceSourceFieldFirstLastDuration;
-import java.text.MessageFormat;
 import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
 import java.util.logging.Level;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.java.Log;
@@ -19,10 +16,32 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class InfluxDbFirstLastDuration {
 
+  private static final FluxQueryTemplate QUERY =
+      FluxQuery.join(
+              "f",
+              values().call("first").call("toString"),
+              "l",
+              values().call("last").call("toString"),
+              "exchangeId",
+              "instrumentId")
+          .map(
+              "({\n"
+                  + "  _time: r._time_l,\n"
+                  + "  duration: string(v: duration(v: uint(v: r._time_l) - uint(v: r._time_f))),\n"
+                  + "  first: r._value_f,\n"
+                  + "  last: r._value_l,\n"
+                  + "  exchangeId: r.exchangeId,\n"
+                  + "  instrumentId: r.instrumentId\n"
+                  + "})")
+          .toTemplate();
+
   protected final InfluxDBClientReactive influxDbClient;
 
   protected final String bucket;
 
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  protected final boolean parameterized;
+
   /**
    * Find all available series that overlap a time window.
    *
@@ -38,60 +57,24 @@ public class InfluxDbFirstLastDuration {
       String fieldName,
       PriceSource priceSource) {
 
-    String filter =
-        MessageFormat.format(
-            "|> filter(fn: (r) => r._measurement == measurement and r._field == field"
-                + " and r.exchangeId == \"{0}\" and r.instrumentId == \"{1}\")\n",
-            priceSource.getExchangeId(), priceSource.getInstrumentId());
-
-    String flux =
-        MessageFormat.format(
-            "fieldFirstLastDuration = (measurement, field, start, stop) => '{'\n"
-                + "  firstValue = from(bucket:\"{0}\")\n"
-                + "  |> range(start: start, stop: stop)\n"
-                + "  {1}"
-                + "  |> group(columns: [\"instrumentId\", \"exchangeId\"])\n"
-                + "  |> first()\n"
-                + "  |> toString()\n"
-                + "\n"
-                + "  lastValue = from(bucket:\"{0}\")\n"
-                + "    |> range(start: start, stop: stop)\n"
-                + "    {1}"
-                + "    |> group(columns: [\"instrumentId\", \"exchangeId\"])\n"
-                + "    |> last()\n"
-                + "    |> toString()\n"
-                + "\n"
-                + "  return join( tables: '{'f:firstValue, l:lastValue'}', on: [\"exchangeId\","
-                + " \"instrumentId\"])\n"
-                + "    |> map(fn: (r) => ('{'\n"
-                + "\n"
-                + "      _time: r._time_l,\n"
-                + "      duration: string(v: duration(v: uint(v: r._time_l) - uint(v:"
-                + " r._time_f))),\n"
-                + "      first: r._value_f,\n"
-                + "      last: r._value_l,\n"
-                + "      exchangeId: r.exchangeId,\n"
-                + "      instrumentId: r.instrumentId\n"
-                + "   '}'))\n"
-                + "'}'\n"
-                + "\n"
-                + "fieldFirstLastDuration(measurement: \"{2}\", field: \"{3}\", start: {4},"
-                + " stop: {5})",
-            bucket,
-            filter,
-            measurementName,
-            fieldName,
-            Rfc3339.YMDHMS_FORMATTER.format(
-                ZonedDateTime.ofInstant(queryBetween.getStart(), ZoneOffset.UTC)),
-            Rfc3339.YMDHMS_FORMATTER.format(
-                ZonedDateTime.ofInstant(queryBetween.getEnd(), ZoneOffset.UTC)));
+    FluxQueryTemplate.Binding query =
+        QUERY
+            .bind()
+            .param("bucket", bucket)
+            .param("measurement", measurementName)
+            .param("field", fieldName)
+            .param("exchangeId", priceSource.getExchangeId())
+            .param("instrumentId", priceSource.getInstrumentId())
+            .param("start", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getStart()))
+            .param("stop", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getEnd()));
 
     QueryReactiveApi queryApi = influxDbClient.getQueryReactiveApi();
-    return Mono.from(queryApi.query(flux, PriceSourceFieldFirstLastDuration.class))
+    return Mono.from(
+            queryApi.query(query.toQuery(parameterized), PriceSourceFieldFirstLastDuration.class))
         .doOnError(
             BadRequestException.class,
             e -> {
-              log.log(Level.WARNING, "Error executing query: " + flux);
+              log.log(Level.WARNING, "Error executing query: " + query);
             })
         .defaultIfEmpty(
             PriceSourceFieldFirstLastDuration.builder()
@@ -103,4 +86,14 @@ public class InfluxDbFirstLastDuration {
                 .time(Instant.now())
                 .build());
   }
+
+  private static FluxQuery values() {
+    return FluxQuery.from("params.bucket")
+        .range("time(v: params.start)", "time(v: params.stop)")
+        .filter(
+            "r._measurement == params.measurement and r._field == params.field"
+                + " and r.exchangeId == params.exchangeId"
+                + " and r.instrumentId == params.instrumentId")
+        .group("instrumentId", "exchangeId");
+  }
 }
@@ -0,0 +1,162 @@
+package com.trickl.influxdb.client;
+
+import com.trickl.influxdb.exceptions.InfluxDbWriteException;
+import com.trickl.influxdb.protocol.ByteBufferPool;
+import com.trickl.influxdb.protocol.GzipCompressor;
+import com.trickl.influxdb.protocol.LineProtocolPayload;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class InfluxDbHttpWriter {
+
+  private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+  private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+  // The HTTP/1.1 client has written a body buffer by the time it asks for the one after next
+  private static final int UNWRITTEN_BUFFERS = 2;
+
+  private final HttpClient httpClient;
+
+  private final ByteBufferPool compressedBufferPool = new ByteBufferPool();
+
+  private final URI writeUri;
+
+  private final String token;
+
+  private final boolean gzip;
+
+  private final Duration requestTimeout;
+
+  /**
+   * Create a writer that posts line protocol straight to the write endpoint, with the default
+   * timeouts.
+   *
+   * @param url the database url
+   * @param token the API token
+   * @param org the organisation
+   * @param bucket the bucket to write to
+   * @param gzip if true, the request body is compressed as it is sent
+   */
+  public InfluxDbHttpWriter(String url, String token, String org, String bucket, boolean gzip) {
+    this(url, token, org, bucket, gzip, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+  }
+
+  /**
+   * Create a writer that posts line protocol straight to the write endpoint.
+   *
+   * <p>Both timeouts are bounded, so that a dead server cannot stall writes indefinitely.
+   *
+   * @param url the database url
+   * @param token the API token
+   * @param org the organisation
+   * @param bucket the bucket to write to
+   * @param gzip if true, the request body is compressed as it is sent
+   * @param connectTimeout how long to wait for a connection
+   * @param requestTimeout how long to wait for a response to each write
+   */
+  public InfluxDbHttpWriter(
+      String url,
+      String token,
+      String org,
+      String bucket,
+      boolean gzip,
+      Duration connectTimeout,
+      Duration requestTimeout) {
+    this.httpClient =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(connectTimeout)
+            .build();
+    this.requestTimeout = requestTimeout;
+    this.writeUri =
+        URI.create(
+            MessageFormat.format(
+                "{0}/api/v2/write?org={1}&bucket={2}&precision=ms",
+                url.replaceAll("/+$", ""),
+                URLEncoder.encode(org, StandardCharsets.UTF_8),
+                URLEncoder.encode(bucket, StandardCharsets.UTF_8)));
+    this.token = token;
+    this.gzip = gzip;
+  }
+
+  /**
+   * Write an encoded payload.
+   *
+   * <p>The payload buffers are streamed as the request body without being copied into a single
+   * array. The payload is shared with the request until it has completed, even if the write is
+   * cancelled first. Each compressed buffer is returned to the pool once the client has written
+   * it, so only a couple are held at a time rather than the whole compressed body.
+   *
+   * @param payload line protocol with millisecond timestamps
+   * @return completes when the database has accepted the write, or an {@link
+   *     InfluxDbWriteException} if it was rejected
+   */
+  public Mono<Void> write(LineProtocolPayload payload) {
+    return Mono.defer(
+        () -> {
+          LineProtocolPayload requestPayload = payload.retain();
+          Queue<ByteBuffer> compressedBuffers = new ConcurrentLinkedQueue<>();
+          Flux<ByteBuffer> body =
+              gzip
+                  ? GzipCompressor.compress(requestPayload.getBuffers(), compressedBufferPool)
+                      .doOnNext(
+                          buffer -> {
+                            compressedBuffers.add(buffer);
+                            while (compressedBuffers.size() > UNWRITTEN_BUFFERS) {
+                              compressedBufferPool.release(compressedBuffers.poll());
+                            }
+                          })
+                  : Flux.fromIterable(requestPayload.getBuffers());
+
+          HttpRequest.Builder request =
+              HttpRequest.newBuilder(writeUri)
+                  .timeout(requestTimeout)
+                  .header("Authorization", "Token " + token)
+                  .header("Content-Type", "text/plain; charset=utf-8")
+                  .POST(
+                      HttpRequest.BodyPublishers.fromPublisher(
+                          JdkFlowAdapter.publisherToFlowPublisher(body)));
+          if (gzip) {
+            request.header("Content-Encoding", "gzip");
+          }
+
+          CompletableFuture<HttpResponse<String>> response =
+              httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString());
+          return Mono.fromFuture(response, true)
+              .flatMap(
+                  completed -> {
+                    if (completed.statusCode() / 100 == 2) {
+                      return Mono.<Void>empty();
+                    }
+                    return Mono.<Void>error(
+                        new InfluxDbWriteException(completed.statusCode(), completed.body()));
+                  })
+              .doFinally(
+                  signal ->
+                      // A cancelled request may still be reading its body, until it times out
+                      response.whenComplete(
+                          (completed, error) -> {
+                            for (ByteBuffer buffer = compressedBuffers.poll();
+                                buffer != null;
+                                buffer = compressedBuffers.poll()) {
+                              compressedBufferPool.release(buffer);
+                            }
+                            requestPayload.release();
+                          }));
+        });
+  }
+}
@@ -4,35 +4,195 @@ import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.client.reactive.InfluxDBClientReactive;
 import com.influxdb.client.reactive.WriteReactiveApi;
 import com.trickl.influxdb.persistence.AnalyticPrimitiveValueEntity;
+import com.trickl.influxdb.protocol.ByteBufferPool;
+import com.trickl.influxdb.protocol.LineProtocolEncoder;
+import com.trickl.influxdb.protocol.LineProtocolEncoders;
+import com.trickl.influxdb.protocol.LineProtocolPayload;
+import com.trickl.influxdb.protocol.LineProtocolWriter;
 import jakarta.validation.Valid;
 import java.text.MessageFormat;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoField;
 import java.time.temporal.IsoFields;
 import java.time.temporal.TemporalField;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
-import lombok.RequiredArgsConstructor;
+import lombok.Getter;
 import lombok.extern.java.Log;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.SignalType;
+import reactor.util.retry.Retry;
 
 @Log
-@RequiredArgsConstructor
 public class InfluxDbStorage {
 
+  private static final List<Integer> INVALID_TIME_KEY = Collections.emptyList();
+
   protected final InfluxDBClientReactive influxDbClient;
 
   protected final String bucket;
 
+  protected final StorageOptions options;
+
+  @Getter protected final WriteMetrics metrics;
+
+  protected final WriteLimiter writeLimiter;
+
+  protected final AdaptiveWriteController writeController;
+
+  protected final ByteBufferPool bufferPool = new ByteBufferPool();
+
+  protected final InfluxDbHttpWriter httpWriter;
+
+  protected final WriteSpool spool;
+
+  private final Disposable spoolDrainer;
+
+  private final WriteCoalescer coalescer;
+
+  /**
+   * Create a storage client with the default options.
+   *
+   * @param influxDbClient the database client
+   * @param bucket the bucket to write to
+   */
+  public InfluxDbStorage(InfluxDBClientReactive influxDbClient, String bucket) {
+    this(influxDbClient, bucket, StorageOptions.builder().build());
+  }
+
+  /**
+   * Create a storage client.
+   *
+   * <p>The write concurrency limit applies to every write made through this instance, so a single
+   * instance should be shared by all clients writing to the same database.
+   *
+   * @param influxDbClient the database client
+   * @param bucket the bucket to write to
+   * @param options write options
+   */
+  public InfluxDbStorage(
+      InfluxDBClientReactive influxDbClient, String bucket, StorageOptions options) {
+    this(influxDbClient, bucket, options, null);
+  }
+
+  /**
+   * Create a storage client that sends encoded batches directly to the write endpoint.
+   *
+   * <p>Encoded batches are streamed from pooled buffers by the HTTP writer, instead of being
+   * converted to a string for the client library. Measurements without a line protocol encoder
+   * are still written through the client library.
+   *
+   * @param influxDbClient the database client
+   * @param bucket the bucket to write to
+   * @param options write options
+   * @param httpWriter the writer for encoded batches, or null to use the client library
+   */
+  public InfluxDbStorage(
+      InfluxDBClientReactive influxDbClient,
+      String bucket,
+      StorageOptions options,
+      InfluxDbHttpWriter httpWriter) {
+    this(influxDbClient, bucket, options, httpWriter, null);
+  }
+
+  /**
+   * Create a storage client that spools encoded batches to local disk when writes fail.
+   *
+   * <p>While the spool holds any batches, new encoded batches are appended to it rather than
+   * written, so that their order is kept and callers do not wait on an unhealthy database. A
+   * background drainer replays the spool, oldest first, every spool drain interval.
+   *
+   * <p>Only writes that failed for a reason that may pass, such as a timeout or a server error, are
+   * spooled. A write refused for good, for example as unauthorised, fails as it would without a
+   * spool, since replaying it would only block the batches behind it. A batch is also reported as
+   * failed if it cannot be spooled, for example because the spool is full.
+   *
+   * @param influxDbClient the database client
+   * @param bucket the bucket to write to
+   * @param options write options
+   * @param httpWriter the writer for encoded batches, or null to use the client library
+   * @param spool where to keep batches that could not be written, or null to fail them
+   */
+  public InfluxDbStorage(
+      InfluxDBClientReactive influxDbClient,
+      String bucket,
+      StorageOptions options,
+      InfluxDbHttpWriter httpWriter,
+      WriteSpool spool) {
+    this.influxDbClient = influxDbClient;
+    this.bucket = bucket;
+    this.options = options;
+    this.metrics = new WriteMetrics();
+    this.writeLimiter = new WriteLimiter(options.getMaxConcurrentWrites(), metrics);
+    this.httpWriter = httpWriter;
+    metrics.settingsChanged(options.getMaxBatchSize(), options.getMaxConcurrentWrites());
+    this.writeController =
+        options.isAdaptiveWrites()
+            ? new AdaptiveWriteController(options, writeLimiter, metrics)
+            : null;
+    this.spool = spool;
+    this.spoolDrainer =
+        spool != null
+            ? Flux.interval(options.getSpoolDrainInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> drainSpool(), 1)
+                .subscribe()
+            : null;
+    this.coalescer =
+        options.isCoalesceWrites()
+            ? new WriteCoalescer(
+                options.getMaxBatchSize(), options.getMaxBatchDelay(), this::writeMixed)
+            : null;
+  }
+
+  /**
+   * Flush any coalesced writes, stop replaying spooled batches and close the spool. Spooled
+   * batches are kept on disk.
+   */
+  public void close() {
+    if (coalescer != null) {
+      coalescer.flush();
+    }
+    if (spool != null) {
+      spoolDrainer.dispose();
+      spool.close();
+    }
+  }
+
+  /**
+   * Check if any batches are waiting in the spool to be replayed.
+   *
+   * @return true if batches have been spooled and not yet written
+   */
+  public boolean isSpooling() {
+    return spool != null && !spool.isEmpty();
+  }
+
   /**
    * Stores prices in the database.
    *
+   * <p>Measurements are sorted by time, then series, and split into batches capped by both the
+   * number of points and the payload size, so that no single write grows with the density of the
+   * data.
+   *
+   * <p>If writes are coalesced, fewer measurements than a full batch are instead merged with those
+   * stored by other callers, of any type, and written together once a full batch has accumulated
+   * or the maximum batch delay has passed.
+   *
    * @param <T> the type of measurement
    * @param measurements data to store
    * @param measurementClazz the type of measurement
@@ -42,8 +202,113 @@ public class InfluxDbStorage {
   @Valid
   public <T> Flux<Integer> store(
       List<T> measurements, Class<T> measurementClazz, Function<T, Instant> timeAccessor) {
-    return storeBatchedByTime(
-        measurements, IsoFields.WEEK_OF_WEEK_BASED_YEAR, measurementClazz, timeAccessor);
+    List<T> validMeasurements = withValidTimes(measurements, timeAccessor);
+    sort(validMeasurements, LineProtocolEncoders.find(measurementClazz), timeAccessor);
+    if (coalescer != null && validMeasurements.size() < options.getMaxBatchSize()) {
+      return validMeasurements.isEmpty()
+          ? Flux.empty()
+          : coalescer.submit(validMeasurements).flux();
+    }
+    return storeBatches(toBatches(validMeasurements, measurementClazz));
+  }
+
+  /**
+   * Stores measurements in the database, encoded as line protocol by the given encoder.
+   *
+   * <p>The encoder may write many points for each measurement, straight into the batch buffers,
+   * so that composite measurements are stored without first being flattened. Batches are capped
+   * by the number of points written, but the counts are of measurements.
+   *
+   * @param <T> the type of measurement
+   * @param measurements data to store
+   * @param encoder writes each measurement as line protocol
+   * @param timeAccessor the time of the data
+   * @return counts of records stored
+   */
+  @Valid
+  public <T> Flux<Integer> store(
+      List<T> measurements, LineProtocolEncoder<T> encoder, Function<T, Instant> timeAccessor) {
+    List<T> validMeasurements = withValidTimes(measurements, timeAccessor);
+    sort(validMeasurements, Optional.of(encoder), timeAccessor);
+    return storeBatches(toBatches(validMeasurements, Optional.of(encoder)));
+  }
+
+  /**
+   * Stores measurements of more than one type in the database, in shared batches.
+   *
+   * @param <T> a common supertype of the measurements
+   * @param measurements data to store
+   * @param timeAccessor the time of the data
+   * @return counts of records stored
+   */
+  @Valid
+  public <T> Flux<Integer> storeMixed(List<T> measurements, Function<T, Instant> timeAccessor) {
+    List<T> validMeasurements = withValidTimes(measurements, timeAccessor);
+    Optional<LineProtocolEncoder<T>> encoder = LineProtocolEncoders.findForAll(validMeasurements);
+    sort(validMeasurements, encoder, timeAccessor);
+    if (coalescer != null && validMeasurements.size() < options.getMaxBatchSize()) {
+      return validMeasurements.isEmpty()
+          ? Flux.empty()
+          : coalescer.submit(validMeasurements).flux();
+    }
+    return storeBatches(toBatches(validMeasurements, encoder));
+  }
+
+  /**
+   * Stores a stream of measurements in the database.
+   *
+   * <p>Batches are cut when they reach the maximum batch size, or when the oldest point has waited
+   * for the maximum batch delay. Demand is only signalled upstream as batches are written, so
+   * memory use does not grow with the length of the stream.
+   *
+   * @param <T> the type of measurement
+   * @param measurements data to store
+   * @param measurementClazz the type of measurement
+   * @param timeAccessor the time of the data
+   * @return counts of records stored, one per batch written
+   */
+  public <T> Flux<Integer> store(
+      Flux<T> measurements, Class<T> measurementClazz, Function<T, Instant> timeAccessor) {
+    return storeStream(measurements, LineProtocolEncoders.find(measurementClazz), timeAccessor);
+  }
+
+  /**
+   * Stores a stream of measurements in the database, encoded as line protocol by the given
+   * encoder.
+   *
+   * @param <T> the type of measurement
+   * @param measurements data to store
+   * @param encoder writes each measurement as line protocol
+   * @param timeAccessor the time of the data
+   * @return counts of records stored, one per batch written
+   */
+  public <T> Flux<Integer> store(
+      Flux<T> measurements, LineProtocolEncoder<T> encoder, Function<T, Instant> timeAccessor) {
+    return storeStream(measurements, Optional.of(encoder), timeAccessor);
+  }
+
+  private <T> Flux<Integer> storeStream(
+      Flux<T> measurements,
+      Optional<LineProtocolEncoder<T>> encoder,
+      Function<T, Instant> timeAccessor) {
+    return measurements
+        .filter(
+            measurement -> {
+              if (timeAccessor.apply(measurement) == null) {
+                log.warning(
+                    MessageFormat.format(
+                        "Record {0} contains a invalid timestamp and will be ignored.",
+                        measurement));
+                return false;
+              }
+              return true;
+            })
+        // Windows only request what the writer can take, where bufferTimeout would overflow
+        .windowTimeout(options.getMaxBatchSize(), options.getMaxBatchDelay(), true)
+        .concatMap(Flux::collectList, 1)
+        .filter(batch -> !batch.isEmpty())
+        .concatMap(batch -> toBatches(batch, encoder))
+        .transform(this::storeBatches);
   }
 
   /**
@@ -62,37 +327,132 @@ public class InfluxDbStorage {
       TemporalField batchField,
       Class<T> measurementClazz,
       Function<T, Instant> timeAccessor) {
-    Map<Integer, List<T>> batchedMeasurements =
+    TemporalField yearField =
+        batchField == IsoFields.WEEK_OF_WEEK_BASED_YEAR
+            ? IsoFields.WEEK_BASED_YEAR
+            : ChronoField.YEAR;
+    Map<List<Integer>, List<T>> batchedMeasurements =
         measurements.stream()
             .collect(
                 Collectors.groupingBy(
                     measurement -> {
                       Instant time = timeAccessor.apply(measurement);
                       if (time == null) {
-                        return -1;
+                        return INVALID_TIME_KEY;
                       }
                       ZonedDateTime zonedTime = ZonedDateTime.ofInstant(time, ZoneOffset.UTC);
-                      return zonedTime.get(batchField);
+                      return List.of(zonedTime.get(yearField), zonedTime.get(batchField));
                     }));
 
-    if (batchedMeasurements.containsKey(-1)) {
+    if (batchedMeasurements.containsKey(INVALID_TIME_KEY)) {
       String warningMessage =
           MessageFormat.format(
               "At least one record, e.g. {0} contains a invalid timestamp."
                   + " All such records will be ignored.",
-              batchedMeasurements.get(-1).get(0));
+              batchedMeasurements.get(INVALID_TIME_KEY).get(0));
       log.warning(warningMessage);
-      batchedMeasurements.remove(-1);
+      batchedMeasurements.remove(INVALID_TIME_KEY);
     }
 
-    return Flux.merge(
+    return storeBatches(
         Flux.fromIterable(batchedMeasurements.values())
-            .map(measurement -> storeNoBatch(measurement)));
+            .concatMap(batch -> toBatches(batch, measurementClazz)));
+  }
+
+  /**
+   * Split measurements into consecutive batches capped by point count and payload size.
+   *
+   * <p>Measurements with a line protocol encoder are encoded as the batches are cut, so the payload
+   * size is exact. Other measurements are left for the client library to map, and their size is
+   * estimated. With adaptive writes, the point cap is the controller's current batch size.
+   *
+   * @param <T> the type of measurement
+   * @param measurements the measurements to split
+   * @param measurementClazz the type of measurement
+   * @return consecutive batches of the measurements
+   */
+  protected <T> Flux<WriteBatch<T>> toBatches(List<T> measurements, Class<T> measurementClazz) {
+    return toBatches(measurements, LineProtocolEncoders.find(measurementClazz));
+  }
+
+  private <T> Flux<WriteBatch<T>> toBatches(
+      List<T> measurements, Optional<LineProtocolEncoder<T>> encoder) {
+    if (encoder.isPresent()) {
+      return MeasurementBatcher.encode(
+          measurements,
+          encoder.get(),
+          getBatchSize(),
+          options.getMaxBatchBytes(),
+          bufferPool);
+    }
+
+    return Flux.fromIterable(
+            MeasurementBatcher.split(
+                measurements,
+                getBatchSize(),
+                options.getMaxBatchBytes(),
+                measurement -> options.getEstimatedPointBytes()))
+        .map(batch -> new WriteBatch<>(batch, null));
+  }
+
+  private <T> void sort(
+      List<T> measurements,
+      Optional<LineProtocolEncoder<T>> encoder,
+      Function<T, Instant> timeAccessor) {
+    MeasurementBatcher.sort(
+        measurements,
+        timeAccessor,
+        measurement ->
+            encoder.isPresent()
+                ? LineProtocolEncoders.seriesKey(encoder.get(), measurement)
+                : measurement.getClass().getName());
+  }
+
+  private int getBatchSize() {
+    return writeController != null ? writeController.getBatchSize() : options.getMaxBatchSize();
+  }
+
+  private <T> List<T> withValidTimes(List<T> measurements, Function<T, Instant> timeAccessor) {
+    List<T> validMeasurements = new ArrayList<>(measurements.size());
+    T invalidMeasurement = null;
+    for (T measurement : measurements) {
+      if (timeAccessor.apply(measurement) != null) {
+        validMeasurements.add(measurement);
+      } else if (invalidMeasurement == null) {
+        invalidMeasurement = measurement;
+      }
+    }
+
+    if (invalidMeasurement != null) {
+      log.warning(
+          MessageFormat.format(
+              "At least one record, e.g. {0} contains a invalid timestamp."
+                  + " All such records will be ignored.",
+              invalidMeasurement));
+    }
+    return validMeasurements;
+  }
+
+  /**
+   * Write batches, respecting the concurrency and ordering options.
+   *
+   * @param <T> the type of measurement
+   * @param batches the batches to write
+   * @return counts of records stored, one per batch
+   */
+  protected <T> Flux<Integer> storeBatches(Flux<WriteBatch<T>> batches) {
+    Flux<Integer> counts =
+        options.isOrderedWrites()
+            ? batches.concatMap(this::write, 1)
+            : batches.flatMap(this::write, options.getMaxConcurrentWrites(), 1);
+    return counts.doOnDiscard(WriteBatch.class, WriteBatch::release);
   }
 
   /**
    * Stores prices in the database.
    *
+   * <p>The write waits for a free slot if the maximum number of concurrent writes are in flight.
+   *
    * @param <T> the type of measurement
    * @param measurements data to store
    * @return count of records stored
@@ -102,9 +462,49 @@ public class InfluxDbStorage {
     if (measurements.isEmpty()) {
       return Mono.just(0);
     }
+    return Mono.defer(() -> write(toBatch(measurements, null)));
+  }
 
-    WriteReactiveApi writeApi = influxDbClient.getWriteReactiveApi();
-    return Mono.from(writeApi.writeMeasurements(WritePrecision.MS, Flux.fromIterable(measurements)))
+  /**
+   * Write a single batch to the database.
+   *
+   * <p>The write waits for a free slot if the maximum number of concurrent writes are in flight.
+   * Encoded batches are sent as line protocol, without any mapping by the client library, and
+   * their buffers are released once the write has finished.
+   *
+   * <p>Transient failures are retried with jittered backoff. If the database rejects the content
+   * of the batch, it is split in half and each half is written separately, recursively, until the
+   * offending measurements are isolated and passed to the quarantine handler. The rest of the
+   * batch is still stored.
+   *
+   * <p>If a spool is configured, encoded batches that still cannot be sent are spooled. Only the
+   * halves that were not yet written are spooled, without any quarantined measurements.
+   *
+   * @param <T> the type of measurement
+   * @param batch the batch to write
+   * @return count of records stored
+   */
+  protected <T> Mono<Integer> write(WriteBatch<T> batch) {
+    return write(batch, index -> {});
+  }
+
+  /**
+   * Write a single batch to the database, as {@link #write(WriteBatch)}.
+   *
+   * @param <T> the type of measurement
+   * @param batch the batch to write
+   * @param onQuarantined told the index in the batch of each measurement that is quarantined
+   * @return count of records stored
+   */
+  private <T> Mono<Integer> write(WriteBatch<T> batch, IntConsumer onQuarantined) {
+    List<T> measurements = batch.getMeasurements();
+    LineProtocolPayload payload = batch.getPayload();
+    if (measurements.isEmpty() || (payload != null && payload.length() == 0)) {
+      batch.release();
+      return Mono.just(0);
+    }
+
+    return writeOrBisect(batch, 0, onQuarantined)
         .onErrorResume(
             error -> {
               log.warning(
@@ -119,10 +519,214 @@ public class InfluxDbStorage {
                       "Analytic: {0} First measurement: {1}", analyticName, measurements.get(0)));
               return Mono.error(error);
             })
-        .map(
-            result -> {
-              return measurements.size();
-            })
+        .doFinally(signal -> batch.release())
         .log("StoreNoBatch", Level.WARNING, SignalType.ON_ERROR);
   }
+
+  private <T> WriteBatch<T> toBatch(List<T> measurements, LineProtocolEncoder<T> encoder) {
+    Optional<LineProtocolEncoder<T>> batchEncoder =
+        encoder != null ? Optional.of(encoder) : LineProtocolEncoders.findForAll(measurements);
+    if (batchEncoder.isEmpty()) {
+      return new WriteBatch<>(measurements, null);
+    }
+
+    LineProtocolWriter writer = new LineProtocolWriter(bufferPool);
+    measurements.forEach(measurement -> batchEncoder.get().encode(measurement, writer));
+    return new WriteBatch<>(measurements, writer.takePayload(), encoder);
+  }
+
+  private Flux<WriteCoalescer.BatchResult> writeMixed(List<Object> measurements) {
+    // Batches are consecutive slices of the measurements, and are mapped in order
+    AtomicInteger nextStart = new AtomicInteger();
+    Function<WriteBatch<Object>, Mono<WriteCoalescer.BatchResult>> writeBatch =
+        batch -> {
+          int size = batch.getMeasurements().size();
+          int start = nextStart.getAndAdd(size);
+          List<Integer> quarantined = new ArrayList<>();
+          return write(batch, index -> quarantined.add(start + index))
+              .thenReturn(new WriteCoalescer.BatchResult(start, size, quarantined, null))
+              .onErrorResume(
+                  error ->
+                      Mono.just(new WriteCoalescer.BatchResult(start, size, quarantined, error)));
+        };
+    Flux<WriteBatch<Object>> batches =
+        toBatches(measurements, LineProtocolEncoders.findForAll(measurements));
+    Flux<WriteCoalescer.BatchResult> results =
+        options.isOrderedWrites()
+            ? batches.concatMap(writeBatch, 1)
+            : batches.flatMap(writeBatch, options.getMaxConcurrentWrites(), 1);
+    return results.doOnDiscard(WriteBatch.class, WriteBatch::release);
+  }
+
+  private <T> Mono<Integer> writeOrBisect(
+      WriteBatch<T> batch, int offset, IntConsumer onQuarantined) {
+    boolean spoolable = batch.getPayload() != null && spool != null;
+    if (spoolable) {
+      // Check and append under the spool's lock, so the drainer cannot empty the spool in between
+      // and let a later batch be written ahead of this one
+      synchronized (spool) {
+        if (!spool.isEmpty()) {
+          return spoolBatch(batch, null);
+        }
+      }
+    }
+
+    // Only this batch is spooled if it cannot be sent, so halves that were already written or
+    // quarantined while bisecting a larger batch are not sent again
+    return attempt(batch)
+        .thenReturn(batch.getMeasurements().size())
+        .onErrorResume(
+            error -> spoolable && WriteErrors.isTransient(error), error -> spoolBatch(batch, error))
+        .onErrorResume(
+            WriteErrors::isRejectedContent, error -> bisect(batch, error, offset, onQuarantined));
+  }
+
+  private <T> Mono<Integer> bisect(
+      WriteBatch<T> batch, Throwable error, int offset, IntConsumer onQuarantined) {
+    List<T> measurements = batch.getMeasurements();
+    if (measurements.size() == 1) {
+      quarantine(measurements.get(0), error);
+      onQuarantined.accept(offset);
+      return Mono.just(0);
+    }
+
+    int middle = measurements.size() / 2;
+    return Flux.just(0, middle)
+        .concatMap(
+            start ->
+                Mono.delay(jitteredBackoff())
+                    .then(
+                        Mono.defer(
+                            () -> {
+                              int end = start == 0 ? middle : measurements.size();
+                              List<T> half = measurements.subList(start, end);
+                              WriteBatch<T> halfBatch = toBatch(half, batch.getEncoder());
+                              return writeOrBisect(halfBatch, offset + start, onQuarantined)
+                                  .doFinally(signal -> halfBatch.release());
+                            })))
+        .reduce(0, Integer::sum);
+  }
+
+  private void quarantine(Object measurement, Throwable error) {
+    log.warning(
+        MessageFormat.format(
+            "Quarantined measurement {0} rejected by the database: {1}",
+            measurement, error.getMessage()));
+    metrics.pointQuarantined();
+    options.getQuarantineHandler().quarantine(measurement, error);
+  }
+
+  private Duration jitteredBackoff() {
+    long backoffNanos = options.getRetryBackoff().toNanos();
+    return Duration.ofNanos(
+        backoffNanos / 2 + ThreadLocalRandom.current().nextLong(backoffNanos + 1));
+  }
+
+  private <T> Mono<?> attempt(WriteBatch<T> batch) {
+    int size = batch.getMeasurements().size();
+    Mono<?> write =
+        Mono.defer(
+            () -> {
+              long startNanos = System.nanoTime();
+              return send(batch)
+                  .doOnSuccess(
+                      success -> {
+                        metrics.writeCompleted(size);
+                        if (writeController != null) {
+                          writeController.writeSucceeded(System.nanoTime() - startNanos);
+                        }
+                      })
+                  .doOnError(
+                      error -> {
+                        metrics.writeFailed();
+                        if (writeController != null) {
+                          writeController.writeFailed(error);
+                        }
+                      });
+            });
+    return writeLimiter
+        .limit(write)
+        .retryWhen(
+            Retry.backoff(options.getMaxRetries(), options.getRetryBackoff())
+                .jitter(0.5)
+                .filter(WriteErrors::isTransient)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+  }
+
+  private <T> Mono<?> send(WriteBatch<T> batch) {
+    if (batch.getPayload() == null) {
+      WriteReactiveApi writeApi = influxDbClient.getWriteReactiveApi();
+      return Mono.from(
+          writeApi.writeMeasurements(
+              WritePrecision.MS, Flux.fromIterable(batch.getMeasurements())));
+    }
+    return send(batch.getPayload());
+  }
+
+  private Mono<?> send(LineProtocolPayload payload) {
+    if (httpWriter != null) {
+      return httpWriter.write(payload);
+    }
+    WriteReactiveApi writeApi = influxDbClient.getWriteReactiveApi();
+    return Mono.from(writeApi.writeRecord(WritePrecision.MS, payload.toString()));
+  }
+
+  private <T> Mono<Integer> spoolBatch(WriteBatch<T> batch, Throwable error) {
+    int size = batch.getMeasurements().size();
+    if (!spool.append(batch.getPayload())) {
+      return Mono.error(
+          error != null
+              ? error
+              : new IllegalStateException("Write spool is full, unable to store batch"));
+    }
+    if (error != null) {
+      log.warning(
+          MessageFormat.format(
+              "Spooled {0} measurements after write failure: {1}", size, error.getMessage()));
+    }
+    metrics.writeSpooled(size);
+    return Mono.just(size);
+  }
+
+  private Mono<Void> drainSpool() {
+    return Mono.defer(this::replayOldestSpooled)
+        .repeat(() -> !spool.isEmpty())
+        .then()
+        .onErrorResume(
+            error -> {
+              log.fine(
+                  MessageFormat.format(
+                      "Unable to replay {0} spooled writes: {1}",
+                      spool.getPendingCount(),
+                      error.getMessage()));
+              return Mono.empty();
+            });
+  }
+
+  private Mono<Void> replayOldestSpooled() {
+    Optional<WriteSpool.SpoolRecord> spooled = spool.peek();
+    if (spooled.isEmpty()) {
+      return Mono.empty();
+    }
+
+    Mono<?> replay = Mono.defer(() -> send(spooled.get().getPayload()));
+    return writeLimiter
+        .limit(replay)
+        .then()
+        .onErrorResume(
+            error -> !WriteErrors.isTransient(error),
+            error -> {
+              // Spooled batches are only line protocol, so cannot be split to isolate bad points.
+              // Any failure that would recur on replay passes the lines to the quarantine handler,
+              // or the spool would never get past them.
+              log.severe(
+                  MessageFormat.format(
+                      "Discarding spooled write of {0} bytes refused by the database: {1}",
+                      spooled.get().getLength(), error.getMessage()));
+              String lines = spooled.get().getPayload().toString();
+              options.getQuarantineHandler().quarantine(lines, error);
+              return Mono.empty();
+            })
+        .then(Mono.fromRunnable(() -> spool.acknowledge(spooled.get())));
+  }
 }
@@ -6,10 +6,8 @@ import com.influxdb.exceptions.BadRequestException;
 import com.trickl.influxdb.text.Rfc3339;
 import com.trickl.model.pricing.primitives.PriceSource;
 import com.trickl.model.pricing.statistics.PriceSourceInstantDouble;
-import java.text.MessageFormat;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.java.Log;
@@ -19,10 +17,76 @@ import reactor.core.publisher.Flux;
 @RequiredArgsConstructor
 public class InfluxDbWindowedAverages {
 
+  private static final FluxQueryTemplate QUERY =
+      FluxQuery.join(
+              "f", medians("lhs"), "l", medians("rhs"), "exchangeId", "instrumentId", "_stop")
+          .map(
+              "({\n"
+                  + "  _time: r._stop,\n"
+                  + "  _value: (r._value_l + r._value_f) / 2.0,\n"
+                  + "  exchangeId: r.exchangeId,\n"
+                  + "  instrumentId: r.instrumentId\n"
+                  + "})")
+          .toTemplate();
+
+  private static final FluxQueryTemplate FIELD_QUERY =
+      FluxQuery.from("params.bucket")
+          .range("time(v: params.start)", "time(v: params.stop)")
+          .filter(
+              "r._measurement == params.measurement and r._field == params.field"
+                  + " and r.exchangeId == params.exchangeId"
+                  + " and r.instrumentId == params.instrumentId")
+          .group("instrumentId", "exchangeId")
+          .window("duration(v: params.every)")
+          .call("median")
+          .map(
+              "({\n"
+                  + "  _time: r._stop,\n"
+                  + "  _value: r._value,\n"
+                  + "  exchangeId: r.exchangeId,\n"
+                  + "  instrumentId: r.instrumentId\n"
+                  + "})")
+          .toTemplate();
+
   protected final InfluxDBClientReactive influxDbClient;
 
   protected final String bucket;
 
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  protected final boolean parameterized;
+
+  /**
+   * Find the median of a field that is already stored as an average, such as the mid of
+   * top_of_book, in each window.
+   *
+   * @param queryBetween A time window there series must have a data point within
+   * @param measurementName the name of the measurement
+   * @param fieldName the name of the field to query
+   * @param windowPeriod the width of each window, as a Flux duration
+   * @param priceSource filter on this price source
+   * @return the median value in each window, timed at its end
+   */
+  public Flux<PriceSourceInstantDouble> windowedAverages(
+      QueryBetween queryBetween,
+      String measurementName,
+      String fieldName,
+      String windowPeriod,
+      PriceSource priceSource) {
+
+    FluxQueryTemplate.Binding query =
+        FIELD_QUERY
+            .bind()
+            .param("bucket", bucket)
+            .param("measurement", measurementName)
+            .param("field", fieldName)
+            .param("exchangeId", priceSource.getExchangeId())
+            .param("instrumentId", priceSource.getInstrumentId())
+            .param("start", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getStart()))
+            .param("stop", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getEnd()))
+            .param("every", windowPeriod);
+    return windowedAverages(query);
+  }
+
   /**
    * Find all available series that overlap a time window.
    *
@@ -30,6 +94,8 @@ public class InfluxDbWindowedAverages {
    * @param lhsMeasurementName the name of the measurement
    * @param lhsFieldName the name of the field to query
    * @param priceSource filter on this price source
+   * @param lhsFilter only read lhs points with one of these values for each tag
+   * @param rhsFilter only read rhs points with one of these values for each tag
    * @return A list of series
    */
   public Flux<PriceSourceInstantDouble> windowedAverages(
@@ -40,78 +106,50 @@ public class InfluxDbWindowedAverages {
       String rhsFieldName,
       String windowPeriod,
       PriceSource priceSource,
-      Optional<String> additionalLhsFilter,
-      Optional<String> additionalRhsFilter) {
-
-    String filterLhsExtension = additionalLhsFilter.map(s -> " and " + s).orElse("");
-
-    String lhsFilter =
-        MessageFormat.format(
-            "|> filter(fn: (r) => r._measurement == \"{2}\" and r._field == \"{3}\""
-                + " and r.exchangeId == \"{0}\" and r.instrumentId == \"{1}\"{4})\n",
-            priceSource.getExchangeId(),
-            priceSource.getInstrumentId(),
-            lhsMeasurementName,
-            lhsFieldName,
-            filterLhsExtension);
+      Map<String, Set<String>> lhsFilter,
+      Map<String, Set<String>> rhsFilter) {
 
-    String filterRhsExtension = additionalRhsFilter.map(s -> " and " + s).orElse("");
-
-    String rhsFilter =
-        MessageFormat.format(
-            "|> filter(fn: (r) => r._measurement == \"{2}\" and r._field == \"{3}\""
-                + " and r.exchangeId == \"{0}\" and r.instrumentId == \"{1}\"{4})\n",
-            priceSource.getExchangeId(),
-            priceSource.getInstrumentId(),
-            rhsMeasurementName,
-            rhsFieldName,
-            filterRhsExtension);
-
-    String flux =
-        MessageFormat.format(
-            "calcAverages = (start, stop) => '{'\n"
-                + "  lhs = from(bucket:\"{0}\")\n"
-                + "  |> range(start: start, stop: stop)\n"
-                + "  {1}"
-                + "  |> group(columns: [\"instrumentId\", \"exchangeId\"])\n"
-                + "  |> window(every: {3})\n"
-                + "  |> median()\n"
-                + "\n"
-                + "  rhs = from(bucket:\"{0}\")\n"
-                + "    |> range(start: start, stop: stop)\n"
-                + "    {2}"
-                + "    |> group(columns: [\"instrumentId\", \"exchangeId\"])\n"
-                + "  |> window(every: {3})\n"
-                + "  |> median()\n"
-                + "\n"
-                + "  return join( tables: '{'f:lhs, l:rhs'}', on: [\"exchangeId\","
-                + " \"instrumentId\", \"_stop\"])\n"
-                + "    |> map(fn: (r) => ('{'\n"
-                + "\n"
-                + "      _time: r._stop,\n"
-                + "      _value: (r._value_l + r._value_f) / 2.0,\n"
-                + "      exchangeId: r.exchangeId,\n"
-                + "      instrumentId: r.instrumentId\n"
-                + "   '}'))\n"
-                + "'}'\n"
-                + "\n"
-                + "calcAverages(start: {4}, stop: {5})",
-            bucket,
-            lhsFilter,
-            rhsFilter,
-            windowPeriod,
-            Rfc3339.YMDHMS_FORMATTER.format(
-                ZonedDateTime.ofInstant(queryBetween.getStart(), ZoneOffset.UTC)),
-            Rfc3339.YMDHMS_FORMATTER.format(
-                ZonedDateTime.ofInstant(queryBetween.getEnd(), ZoneOffset.UTC)));
+    FluxQueryTemplate.Binding query =
+        QUERY
+            .bind()
+            .param("bucket", bucket)
+            .param("exchangeId", priceSource.getExchangeId())
+            .param("instrumentId", priceSource.getInstrumentId())
+            .param("start", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getStart()))
+            .param("stop", Rfc3339.YMDHMS_FORMATTER.format(queryBetween.getEnd()))
+            .param("every", windowPeriod)
+            .param("lhsMeasurement", lhsMeasurementName)
+            .param("lhsField", lhsFieldName)
+            .param("rhsMeasurement", rhsMeasurementName)
+            .param("rhsField", rhsFieldName);
+    query
+        .fragment("lhsFilter", FluxStatementFilterBuilder.buildFrom(lhsFilter, query::param))
+        .fragment("rhsFilter", FluxStatementFilterBuilder.buildFrom(rhsFilter, query::param));
+    return windowedAverages(query);
+  }
 
+  private Flux<PriceSourceInstantDouble> windowedAverages(FluxQueryTemplate.Binding query) {
     QueryReactiveApi queryApi = influxDbClient.getQueryReactiveApi();
 
-    return Flux.from(queryApi.query(flux, PriceSourceInstantDouble.class))
+    return Flux.from(queryApi.query(query.toQuery(parameterized), PriceSourceInstantDouble.class))
         .doOnError(
             BadRequestException.class,
             e -> {
-              log.log(Level.WARNING, "Error executing query: " + flux);
+              log.log(Level.WARNING, "Error executing query: " + query);
             });
   }
+
+  private static FluxQuery medians(String side) {
+    return FluxQuery.from("params.bucket")
+        .range("time(v: params.start)", "time(v: params.stop)")
+        .filter(
+            "r._measurement == params." + side + "Measurement"
+                + " and r._field == params." + side + "Field"
+                + " and r.exchangeId == params.exchangeId"
+                + " and r.instrumentId == params.instrumentId")
+        .fragment(side + "Filter")
+        .group("instrumentId", "exchangeId")
+        .window("duration(v: params.every)")
+        .call("median");
+  }
 }
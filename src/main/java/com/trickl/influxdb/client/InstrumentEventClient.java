@@ -1,6 +1,13 @@
 package com.trickl.influxdb.client;
 
+import com.trickl.influxdb.binding.MarketStateChangeWriter;
+import com.trickl.influxdb.binding.SportsEventIncidentWriter;
+import com.trickl.influxdb.binding.SportsEventMatchTimeUpdateWriter;
+import com.trickl.influxdb.binding.SportsEventOutcomeUpdateWriter;
+import com.trickl.influxdb.binding.SportsEventPeriodUpdateWriter;
+import com.trickl.influxdb.binding.SportsEventScoreUpdateWriter;
 import com.trickl.influxdb.exceptions.MeasurementNotSupportedException;
+import com.trickl.influxdb.persistence.InstrumentEventEntity;
 import com.trickl.model.event.InstrumentEvent;
 import com.trickl.model.event.InstrumentEventType;
 import com.trickl.model.event.MarketStateChange;
@@ -12,10 +19,10 @@ import com.trickl.model.event.sports.SportsEventScoreUpdate;
 import com.trickl.model.pricing.primitives.EventSource;
 import com.trickl.model.pricing.primitives.PriceSource;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
 @RequiredArgsConstructor
 public class InstrumentEventClient {
@@ -26,6 +33,7 @@ public class InstrumentEventClient {
   private final SportsEventScoreUpdateClient sportsEventScoreUpdateClient;
   private final SportsEventPeriodUpdateClient sportsEventPeriodUpdateClient;
   private final SportsEventMatchTimeUpdateClient sportsEventMatchTimeUpdateClient;
+  private final InfluxDbStorage influxDbStorage;
 
   /**
    * Stores events in the database.
@@ -35,56 +43,33 @@ public class InstrumentEventClient {
    * @return counts of records stored
    */
   public Flux<Integer> store(PriceSource priceSource, List<InstrumentEvent> events) {
-    Mono<Flux<Integer>> storeMarketsChangeEvents =
-        Flux.fromIterable(events)
-            .filter(event -> event instanceof MarketStateChange)
-            .cast(MarketStateChange.class)
-            .collectList()
-            .map(list -> marketStateChangeClient.store(priceSource, list));
-
-    Mono<Flux<Integer>> storeSportsEventIncidents =
-        Flux.fromIterable(events)
-            .filter(event -> event instanceof SportsEventIncident)
-            .cast(SportsEventIncident.class)
-            .collectList()
-            .map(list -> sportsEventIncidentClient.store(priceSource, list));
-
-    Mono<Flux<Integer>> storeSportsEventOutcomeUpdates =
-        Flux.fromIterable(events)
-            .filter(event -> event instanceof SportsEventOutcomeUpdate)
-            .cast(SportsEventOutcomeUpdate.class)
-            .collectList()
-            .map(list -> sportsEventOutcomeUpdateClient.store(priceSource, list));
-
-    Mono<Flux<Integer>> storeSportsEventScoreUpdates =
-        Flux.fromIterable(events)
-            .filter(event -> event instanceof SportsEventScoreUpdate)
-            .cast(SportsEventScoreUpdate.class)
-            .collectList()
-            .map(list -> sportsEventScoreUpdateClient.store(priceSource, list));
-
-    Mono<Flux<Integer>> storeSportsEventPeriodUpdates =
-        Flux.fromIterable(events)
-            .filter(event -> event instanceof SportsEventPeriodUpdate)
-            .cast(SportsEventPeriodUpdate.class)
-            .collectList()
-            .map(list -> sportsEventPeriodUpdateClient.store(priceSource, list));
-
-    Mono<Flux<Integer>> storeSportsEventMatchTimeUpdates =
-        Flux.fromIterable(events)
-            .filter(event -> event instanceof SportsEventMatchTimeUpdate)
-            .cast(SportsEventMatchTimeUpdate.class)
-            .collectList()
-            .map(list -> sportsEventMatchTimeUpdateClient.store(priceSource, list));
-
-    return Flux.merge(
-            storeMarketsChangeEvents,
-            storeSportsEventIncidents,
-            storeSportsEventOutcomeUpdates,
-            storeSportsEventScoreUpdates,
-            storeSportsEventPeriodUpdates,
-            storeSportsEventMatchTimeUpdates)
-        .flatMap(rows -> rows);
+    MarketStateChangeWriter marketStateChangeWriter = new MarketStateChangeWriter(priceSource);
+    SportsEventIncidentWriter incidentWriter = new SportsEventIncidentWriter(priceSource);
+    SportsEventOutcomeUpdateWriter outcomeUpdateWriter =
+        new SportsEventOutcomeUpdateWriter(priceSource);
+    SportsEventScoreUpdateWriter scoreUpdateWriter = new SportsEventScoreUpdateWriter(priceSource);
+    SportsEventPeriodUpdateWriter periodUpdateWriter =
+        new SportsEventPeriodUpdateWriter(priceSource);
+    SportsEventMatchTimeUpdateWriter matchTimeUpdateWriter =
+        new SportsEventMatchTimeUpdateWriter(priceSource);
+
+    List<InstrumentEventEntity> measurements = new ArrayList<>(events.size());
+    for (InstrumentEvent event : events) {
+      if (event instanceof MarketStateChange) {
+        measurements.add(marketStateChangeWriter.apply((MarketStateChange) event));
+      } else if (event instanceof SportsEventIncident) {
+        measurements.add(incidentWriter.apply((SportsEventIncident) event));
+      } else if (event instanceof SportsEventOutcomeUpdate) {
+        measurements.add(outcomeUpdateWriter.apply((SportsEventOutcomeUpdate) event));
+      } else if (event instanceof SportsEventScoreUpdate) {
+        measurements.add(scoreUpdateWriter.apply((SportsEventScoreUpdate) event));
+      } else if (event instanceof SportsEventPeriodUpdate) {
+        measurements.add(periodUpdateWriter.apply((SportsEventPeriodUpdate) event));
+      } else if (event instanceof SportsEventMatchTimeUpdate) {
+        measurements.add(matchTimeUpdateWriter.apply((SportsEventMatchTimeUpdate) event));
+      }
+    }
+    return influxDbStorage.storeMixed(measurements, InstrumentEventEntity::getTime);
   }
 
   /**
@@ -0,0 +1,70 @@
+package com.trickl.influxdb.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class LruQueryResultCache implements QueryResultCache {
+
+  private final long maxPoints;
+
+  private final LinkedHashMap<QueryCacheKey, List<?>> segments =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private long points = 0;
+
+  /**
+   * Create a cache that evicts the least recently used segments once it is full.
+   *
+   * @param maxPoints the maximum number of results held across all segments
+   */
+  public LruQueryResultCache(long maxPoints) {
+    this.maxPoints = maxPoints;
+  }
+
+  @Override
+  public synchronized Optional<List<?>> get(QueryCacheKey key) {
+    return Optional.ofNullable(segments.get(key));
+  }
+
+  @Override
+  public synchronized void put(QueryCacheKey key, List<?> results) {
+    if (results.size() > maxPoints) {
+      return;
+    }
+    List<?> previous = segments.put(key, List.copyOf(results));
+    points += results.size() - (previous != null ? previous.size() : 0);
+    Iterator<Map.Entry<QueryCacheKey, List<?>>> eldest = segments.entrySet().iterator();
+    while (points > maxPoints && eldest.hasNext()) {
+      points -= eldest.next().getValue().size();
+      eldest.remove();
+    }
+  }
+
+  @Override
+  public synchronized void invalidate(
+      String measurementName, String exchangeId, String instrumentId) {
+    Iterator<Map.Entry<QueryCacheKey, List<?>>> entries = segments.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<QueryCacheKey, List<?>> entry = entries.next();
+      QueryCacheKey key = entry.getKey();
+      if (key.getMeasurementName().equals(measurementName)
+          && key.getExchangeId().equals(exchangeId)
+          && key.getInstrumentId().equals(instrumentId)) {
+        points -= entry.getValue().size();
+        entries.remove();
+      }
+    }
+  }
+
+  /**
+   * Get the number of cached results.
+   *
+   * @return the number of results held across all segments
+   */
+  public synchronized long getPoints() {
+    return points;
+  }
+}
@@ -24,6 +24,13 @@ public class MarketStateChangeClient {
 
   private final String bucket;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final QueryCoalescer queryCoalescer;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
   /**
    * Stores prices in the database.
    *
@@ -35,7 +42,6 @@ public class MarketStateChangeClient {
     MarketStateChangeWriter transformer = new MarketStateChangeWriter(priceSource);
     List<MarketStateChangeEntity> measurements =
         events.stream().map(transformer).collect(Collectors.toList());
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     return influxDbStorage.store(
         measurements, MarketStateChangeEntity.class, MarketStateChangeEntity::getTime);
   }
@@ -49,7 +55,8 @@ public class MarketStateChangeClient {
    */
   public Flux<MarketStateChange> findBetween(EventSource eventSource, QueryBetween queryBetween) {
     MarketStateChangeReader reader = new MarketStateChangeReader();
-    InfluxDbFindBetween findBetween = new InfluxDbFindBetween(influxDbClient, bucket);
+    InfluxDbFindBetween findBetween =
+        new InfluxDbFindBetween(influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return findBetween
         .findBetween(
             eventSource.getPriceSource(),
@@ -71,7 +78,8 @@ public class MarketStateChangeClient {
    */
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbFirstLastDuration finder = new InfluxDbFirstLastDuration(this.influxDbClient, bucket);
+    InfluxDbFirstLastDuration finder =
+        new InfluxDbFirstLastDuration(this.influxDbClient, bucket, parameterizedQueries);
     return finder.firstLastDuration(queryBetween, "market_state_change", "state", priceSource);
   }
 
@@ -83,7 +91,8 @@ public class MarketStateChangeClient {
    * @return Counts by instruments
    */
   public Mono<Integer> count(QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbCount influxDbClient = new InfluxDbCount(this.influxDbClient, bucket);
+    InfluxDbCount influxDbClient =
+        new InfluxDbCount(this.influxDbClient, bucket, parameterizedQueries);
     return influxDbClient
         .count(queryBetween, "market_state_change", "state", priceSource)
         .map(PriceSourceInteger::getValue);
@@ -0,0 +1,160 @@
+package com.trickl.influxdb.client;
+
+import com.trickl.influxdb.protocol.ByteBufferPool;
+import com.trickl.influxdb.protocol.LineProtocolEncoder;
+import com.trickl.influxdb.protocol.LineProtocolWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import reactor.core.publisher.Flux;
+
+public class MeasurementBatcher {
+  /**
+   * Sort measurements by time, then by series, so that batches written in time order also keep
+   * the points of each series together.
+   *
+   * <p>Series keys are only computed for measurements that share a time with another, as they
+   * may be costly to find.
+   *
+   * @param <T> the type of measurement
+   * @param measurements the measurements to sort in place
+   * @param timeAccessor the time of a measurement
+   * @param seriesKey the series of a measurement
+   */
+  public static <T> void sort(
+      List<T> measurements,
+      Function<? super T, Instant> timeAccessor,
+      Function<? super T, String> seriesKey) {
+    measurements.sort(Comparator.comparing(timeAccessor));
+    int runStart = 0;
+    for (int i = 1; i <= measurements.size(); i++) {
+      Instant runTime = timeAccessor.apply(measurements.get(runStart));
+      if (i < measurements.size() && runTime.equals(timeAccessor.apply(measurements.get(i)))) {
+        continue;
+      }
+      if (i - runStart > 1) {
+        sortRun(measurements.subList(runStart, i), seriesKey);
+      }
+      runStart = i;
+    }
+  }
+
+  /**
+   * Split measurements into consecutive batches capped by point count and payload size.
+   *
+   * <p>The order of the measurements is preserved, so sorted input gives sorted batches. A single
+   * point larger than the byte limit is still written, in a batch of its own.
+   *
+   * @param <T> the type of measurement
+   * @param measurements the measurements to split
+   * @param maxPoints the maximum number of points in a batch
+   * @param maxBytes the maximum payload size of a batch
+   * @param pointSize the payload size of a point
+   * @return consecutive views of the measurements
+   */
+  public static <T> List<List<T>> split(
+      List<T> measurements, int maxPoints, long maxBytes, ToLongFunction<? super T> pointSize) {
+    List<List<T>> batches = new ArrayList<>();
+    int batchStart = 0;
+    long batchBytes = 0;
+    for (int i = 0; i < measurements.size(); i++) {
+      long size = pointSize.applyAsLong(measurements.get(i));
+      int batchPoints = i - batchStart;
+      if (batchPoints > 0 && (batchPoints >= maxPoints || batchBytes + size > maxBytes)) {
+        batches.add(measurements.subList(batchStart, i));
+        batchStart = i;
+        batchBytes = 0;
+      }
+      batchBytes += size;
+    }
+
+    if (batchStart < measurements.size()) {
+      batches.add(measurements.subList(batchStart, measurements.size()));
+    }
+    return batches;
+  }
+
+  /**
+   * Encode measurements as line protocol, in consecutive batches capped by point count and
+   * encoded payload size.
+   *
+   * <p>Batches are encoded lazily, as they are requested, into buffers taken from the pool. Each
+   * batch owns its buffers until it is released. As with {@link #split}, a single measurement
+   * larger than the byte limit is written in a batch of its own.
+   *
+   * @param <T> the type of measurement
+   * @param measurements the measurements to encode
+   * @param encoder the encoder for the type of measurement
+   * @param maxPoints the maximum number of points in a batch
+   * @param maxBytes the maximum payload size of a batch
+   * @param pool where to take encoding buffers from
+   * @return consecutive encoded batches
+   */
+  public static <T> Flux<WriteBatch<T>> encode(
+      List<T> measurements,
+      LineProtocolEncoder<T> encoder,
+      int maxPoints,
+      long maxBytes,
+      ByteBufferPool pool) {
+    return Flux.generate(
+        () -> new EncodeState(pool),
+        (state, sink) -> {
+          if (state.next >= measurements.size()) {
+            sink.complete();
+            return state;
+          }
+
+          LineProtocolWriter writer = state.writer;
+          int batchStart = state.next;
+          int batchPoints = 0;
+          while (state.next < measurements.size() && batchPoints < maxPoints) {
+            int mark = writer.length();
+            int points = encoder.encode(measurements.get(state.next), writer);
+            if (batchPoints > 0 && writer.length() > maxBytes) {
+              writer.truncate(mark);
+              break;
+            }
+            batchPoints += points;
+            state.next++;
+          }
+          sink.next(
+              new WriteBatch<>(
+                  measurements.subList(batchStart, state.next), writer.takePayload(), encoder));
+          return state;
+        },
+        state -> state.writer.clear());
+  }
+
+  private static <T> void sortRun(List<T> run, Function<? super T, String> seriesKey) {
+    List<Keyed<T>> keyed = new ArrayList<>(run.size());
+    run.forEach(measurement -> keyed.add(new Keyed<>(seriesKey.apply(measurement), measurement)));
+    keyed.sort(Comparator.comparing(entry -> entry.key));
+    for (int i = 0; i < run.size(); i++) {
+      run.set(i, keyed.get(i).measurement);
+    }
+  }
+
+  private static class Keyed<T> {
+    private final String key;
+
+    private final T measurement;
+
+    Keyed(String key, T measurement) {
+      this.key = key;
+      this.measurement = measurement;
+    }
+  }
+
+  private static class EncodeState {
+    private final LineProtocolWriter writer;
+
+    private int next = 0;
+
+    EncodeState(ByteBufferPool pool) {
+      writer = new LineProtocolWriter(pool);
+    }
+  }
+}
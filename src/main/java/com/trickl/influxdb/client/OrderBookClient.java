@@ -1,5 +1,13 @@
 package com.trickl.influxdb.client;
 
+import com.trickl.influxdb.exceptions.MeasurementNotSupportedException;
+import com.trickl.influxdb.persistence.OrderDeltaEntity;
+import com.trickl.influxdb.protocol.LineProtocolEncoder;
+import com.trickl.influxdb.protocol.OrderBookDelta;
+import com.trickl.influxdb.protocol.OrderBookDeltaEncoder;
+import com.trickl.influxdb.protocol.OrderBookEncoder;
+import com.trickl.influxdb.protocol.TopOfBookEncoder;
+import com.trickl.influxdb.protocol.WideOrderBookEncoder;
 import com.trickl.model.analytics.InstantDouble;
 import com.trickl.model.pricing.primitives.Order;
 import com.trickl.model.pricing.primitives.OrderBook;
@@ -9,61 +17,355 @@ import com.trickl.model.pricing.statistics.PriceSourceDouble;
 import com.trickl.model.pricing.statistics.PriceSourceFieldFirstLastDuration;
 import com.trickl.model.pricing.statistics.PriceSourceInstantDouble;
 import com.trickl.model.pricing.statistics.PriceSourceInteger;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
-@RequiredArgsConstructor
 public class OrderBookClient {
 
   private final OrderClient orderClient;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final OrderBookOptions options;
+
+  private final CandleBuilder candleBuilder;
+
+  private final Map<List<String>, DeltaTracker> deltaTrackers = new ConcurrentHashMap<>();
+
+  /**
+   * Create a client that writes every level of every book.
+   *
+   * @param orderClient the client for individual orders
+   * @param influxDbStorage where to store the books
+   */
+  public OrderBookClient(OrderClient orderClient, InfluxDbStorage influxDbStorage) {
+    this(orderClient, influxDbStorage, OrderBookOptions.builder().build());
+  }
+
+  /**
+   * Create a client.
+   *
+   * @param orderClient the client for individual orders
+   * @param influxDbStorage where to store the books
+   * @param options how books are written and read
+   */
+  public OrderBookClient(
+      OrderClient orderClient, InfluxDbStorage influxDbStorage, OrderBookOptions options) {
+    this(orderClient, influxDbStorage, options, null);
+  }
+
+  /**
+   * Create a client that also builds best bid and ask candles as books are stored.
+   *
+   * @param orderClient the client for individual orders
+   * @param influxDbStorage where to store the books
+   * @param options how books are written and read
+   * @param candleBuilder builds candles from stored books, or null for none
+   */
+  public OrderBookClient(
+      OrderClient orderClient,
+      InfluxDbStorage influxDbStorage,
+      OrderBookOptions options,
+      CandleBuilder candleBuilder) {
+    this.orderClient = orderClient;
+    this.influxDbStorage = influxDbStorage;
+    this.options = options;
+    this.candleBuilder = candleBuilder;
+  }
+
   /**
    * Stores prices in the database.
    *
+   * <p>Each level of each book is encoded directly as an order point, without building an order
+   * for every level.
+   *
+   * <p>With delta encoding, only the levels that changed since the last book stored for the
+   * instrument are written, as order deltas, with a full keyframe at least once per keyframe
+   * interval.
+   *
+   * <p>With a candle builder, the books are also added to the open candles of the instrument,
+   * and candles that close are stored alongside.
+   *
    * @param priceSource the instrument identifier
    * @param orderBooks data to store
    * @return counts of records stored
    */
   public Flux<Integer> store(PriceSource priceSource, List<OrderBook> orderBooks) {
+    Flux<Integer> stored = storeBooks(priceSource, orderBooks);
+    if (candleBuilder == null) {
+      return stored;
+    }
+    return stored.mergeWith(candleBuilder.add(priceSource, orderBooks).ignoreElements());
+  }
+
+  /**
+   * Stores a stream of order books in the database.
+   *
+   * @param priceSource the instrument identifier
+   * @param orderBooks data to store
+   * @return counts of records stored, one per batch written
+   */
+  public Flux<Integer> store(PriceSource priceSource, Flux<OrderBook> orderBooks) {
+    if (candleBuilder == null) {
+      return storeBooks(priceSource, orderBooks);
+    }
+    return orderBooks.publish(
+        books ->
+            storeBooks(priceSource, books)
+                .mergeWith(candleBuilder.add(priceSource, books).ignoreElements()));
+  }
+
+  private Flux<Integer> storeBooks(PriceSource priceSource, List<OrderBook> orderBooks) {
+    if (!isWritingDeltas()) {
+      return influxDbStorage.store(orderBooks, getEncoder(priceSource), OrderBook::getTime);
+    }
+
+    DeltaTracker tracker = getDeltaTracker(priceSource);
+    return Flux.defer(
+        () -> {
+          List<OrderBook> sortedBooks = new ArrayList<>(orderBooks);
+          sortedBooks.sort(
+              Comparator.comparing(
+                  OrderBook::getTime, Comparator.nullsLast(Comparator.naturalOrder())));
+          List<OrderBookDelta> deltas;
+          synchronized (tracker) {
+            deltas = sortedBooks.stream().map(tracker::next).collect(Collectors.toList());
+          }
+          long timedDeltas = deltas.stream().filter(delta -> delta.getTime() != null).count();
+          return resetUnlessStored(
+              influxDbStorage.store(deltas, getDeltaEncoder(priceSource), OrderBookDelta::getTime),
+              () -> timedDeltas,
+              tracker);
+        });
+  }
+
+  private Flux<Integer> storeBooks(PriceSource priceSource, Flux<OrderBook> orderBooks) {
+    if (!isWritingDeltas()) {
+      return influxDbStorage.store(orderBooks, getEncoder(priceSource), OrderBook::getTime);
+    }
+
+    DeltaTracker tracker = getDeltaTracker(priceSource);
+    return Flux.defer(
+        () -> {
+          AtomicLong timedDeltas = new AtomicLong();
+          Flux<OrderBookDelta> deltas =
+              orderBooks
+                  .map(tracker::next)
+                  .doOnNext(
+                      delta -> {
+                        if (delta.getTime() != null) {
+                          timedDeltas.incrementAndGet();
+                        }
+                      });
+          return resetUnlessStored(
+              influxDbStorage.store(deltas, getDeltaEncoder(priceSource), OrderBookDelta::getTime),
+              timedDeltas::get,
+              tracker);
+        });
+  }
+
+  /**
+   * Start the next delta from a keyframe, unless every delta written is known to be stored.
+   *
+   * <p>Quarantined deltas are missing from the stored counts, and spooled deltas may yet be
+   * discarded on replay, so neither is taken as stored. Each later delta would otherwise build on
+   * a book that cannot be rebuilt.
+   */
+  private Flux<Integer> resetUnlessStored(
+      Flux<Integer> counts, LongSupplier written, DeltaTracker tracker) {
+    AtomicLong stored = new AtomicLong();
+    return counts
+        .doOnNext(stored::addAndGet)
+        .doFinally(
+            signal -> {
+              if (signal != SignalType.ON_COMPLETE
+                  || stored.get() < written.getAsLong()
+                  || influxDbStorage.isSpooling()) {
+                tracker.reset();
+              }
+            });
+  }
+
+  private boolean isWritingDeltas() {
+    return options.isDeltaEncoding() && options.getWriteSchema() != OrderBookSchema.WIDE;
+  }
 
-    Mono<Flux<Integer>> storeBids =
-        Flux.fromIterable(orderBooks)
-            .flatMap(
-                orderBook ->
-                    Flux.fromIterable(getOrders(orderBook.getBids(), true, orderBook.getTime())))
-            .collectList()
-            .map(list -> orderClient.store(priceSource, list));
+  private LineProtocolEncoder<OrderBook> getEncoder(PriceSource priceSource) {
+    List<LineProtocolEncoder<OrderBook>> encoders = new ArrayList<>();
+    if (options.getWriteSchema() != OrderBookSchema.WIDE) {
+      encoders.add(new OrderBookEncoder(priceSource));
+    }
+    if (options.getWriteSchema() != OrderBookSchema.LEVELS) {
+      encoders.add(new WideOrderBookEncoder(priceSource));
+    }
+    if (options.isWriteTopOfBook()) {
+      encoders.add(new TopOfBookEncoder(priceSource));
+    }
+    return combine(encoders);
+  }
 
-    Mono<Flux<Integer>> storeAsks =
-        Flux.fromIterable(orderBooks)
-            .flatMap(
-                orderBook ->
-                    Flux.fromIterable(getOrders(orderBook.getAsks(), false, orderBook.getTime())))
-            .collectList()
-            .map(list -> orderClient.store(priceSource, list));
+  private LineProtocolEncoder<OrderBookDelta> getDeltaEncoder(PriceSource priceSource) {
+    LineProtocolEncoder<OrderBookDelta> deltaEncoder = new OrderBookDeltaEncoder(priceSource);
+    List<LineProtocolEncoder<OrderBook>> encoders = new ArrayList<>();
+    if (options.getWriteSchema() == OrderBookSchema.BOTH) {
+      encoders.add(new WideOrderBookEncoder(priceSource));
+    }
+    if (options.isWriteTopOfBook()) {
+      encoders.add(new TopOfBookEncoder(priceSource));
+    }
+    if (encoders.isEmpty()) {
+      return deltaEncoder;
+    }
+    LineProtocolEncoder<OrderBook> bookEncoder = combine(encoders);
+    return (delta, writer) ->
+        deltaEncoder.encode(delta, writer) + bookEncoder.encode(delta.getCurrent(), writer);
+  }
+
+  private static <T> LineProtocolEncoder<T> combine(List<LineProtocolEncoder<T>> encoders) {
+    if (encoders.size() == 1) {
+      return encoders.get(0);
+    }
+    return (measurement, writer) -> {
+      int points = 0;
+      for (LineProtocolEncoder<T> encoder : encoders) {
+        points += encoder.encode(measurement, writer);
+      }
+      return points;
+    };
+  }
 
-    return Flux.merge(storeBids, storeAsks).flatMap(rows -> rows);
+  private DeltaTracker getDeltaTracker(PriceSource priceSource) {
+    List<String> key =
+        List.of(
+            priceSource.getExchangeId().toUpperCase(), priceSource.getInstrumentId().toUpperCase());
+    return deltaTrackers.computeIfAbsent(
+        key, sourceKey -> new DeltaTracker(options.getKeyframeInterval()));
   }
 
   /**
    * Find candles.
    *
+   * <p>With delta encoding, the query reaches back one keyframe interval before the start, and
+   * full books are rebuilt from the keyframes and the changes written after each.
+   *
+   * <p>When reading both schemas, a book stored in the wide schema is preferred to one stored at
+   * the same time as levels.
+   *
    * @param priceSource the instrument identifier
    * @param queryBetween Query parameters
    * @return A list of order books
    */
   public Flux<OrderBook> findBetween(PriceSource priceSource, QueryBetween queryBetween) {
+    switch (options.getReadSchema()) {
+      case WIDE:
+        return orderClient.findBooksBetween(priceSource, queryBetween);
+      case BOTH:
+        Comparator<OrderBook> byTime = Comparator.comparing(OrderBook::getTime);
+        Flux<OrderBook> orderBooks =
+            Flux.mergeComparing(
+                    queryBetween.isMostRecentFirst() ? byTime.reversed() : byTime,
+                    orderClient.findBooksBetween(priceSource, queryBetween),
+                    findLevelsBetween(priceSource, queryBetween))
+                .distinctUntilChanged(OrderBook::getTime);
+        return queryBetween.getLimit() != null
+            ? orderBooks.take(queryBetween.getLimit())
+            : orderBooks;
+      default:
+        return findLevelsBetween(priceSource, queryBetween);
+    }
+  }
+
+  private Flux<OrderBook> findLevelsBetween(PriceSource priceSource, QueryBetween queryBetween) {
+    if (options.isDeltaEncoding()) {
+      return findRebuiltBetween(priceSource, queryBetween);
+    }
     return orderClient
         .findBetween(priceSource, queryBetween)
         .windowUntilChanged(Order::getTime)
         .flatMap(OrderBookClient::getOrderBook);
   }
 
+  private Flux<OrderBook> findRebuiltBetween(PriceSource priceSource, QueryBetween queryBetween) {
+    boolean mostRecentFirst = queryBetween.isMostRecentFirst();
+    QueryBetween lookbackQuery =
+        QueryBetween.builder()
+            .startIncl(true)
+            .start(queryBetween.getStart().minus(options.getKeyframeInterval()))
+            .endIncl(queryBetween.isEndIncl())
+            .end(queryBetween.getEnd())
+            .mostRecentFirst(mostRecentFirst)
+            .chunkSize(queryBetween.getChunkSize())
+            .chunkPrefetch(queryBetween.getChunkPrefetch())
+            .partitions(queryBetween.getPartitions())
+            .parallelism(queryBetween.getParallelism())
+            .build();
+
+    Flux<OrderBookRebuilder.Update> keyframes =
+        orderClient
+            .findBetween(priceSource, lookbackQuery)
+            .windowUntilChanged(Order::getTime)
+            .concatMap(OrderBookClient::getOrderBook)
+            .map(OrderBookRebuilder.Update::keyframe);
+    Flux<OrderBookRebuilder.Update> changes =
+        orderClient
+            .findDeltasBetween(priceSource, lookbackQuery)
+            .bufferUntilChanged(OrderDeltaEntity::getTime)
+            .map(OrderBookRebuilder.Update::changes);
+    Comparator<OrderBookRebuilder.Update> byTime =
+        Comparator.comparing(OrderBookRebuilder.Update::getTime);
+    Flux<OrderBookRebuilder.Update> updates =
+        Flux.mergeComparing(mostRecentFirst ? byTime.reversed() : byTime, keyframes, changes);
+
+    Flux<OrderBook> orderBooks;
+    if (mostRecentFirst) {
+      // Each keyframe ends the run of changes written after it, which is replayed forwards on its
+      // own, so only one keyframe interval is held at a time
+      orderBooks =
+          updates
+              .bufferUntil(OrderBookRebuilder.Update::isKeyframe)
+              .takeUntil(
+                  run -> !run.get(run.size() - 1).getTime().isAfter(queryBetween.getStart()))
+              .concatMapIterable(
+                  run -> {
+                    OrderBookRebuilder rebuilder = new OrderBookRebuilder(priceSource);
+                    List<OrderBook> books = new ArrayList<>(run.size());
+                    for (int i = run.size() - 1; i >= 0; i--) {
+                      rebuilder.apply(run.get(i)).ifPresent(books::add);
+                    }
+                    Collections.reverse(books);
+                    return books;
+                  });
+    } else {
+      orderBooks =
+          Flux.defer(
+              () -> {
+                OrderBookRebuilder rebuilder = new OrderBookRebuilder(priceSource);
+                return updates.<OrderBook>handle(
+                    (update, sink) -> rebuilder.apply(update).ifPresent(sink::next));
+              });
+    }
+
+    orderBooks =
+        orderBooks.filter(orderBook -> !orderBook.getTime().isBefore(queryBetween.getStart()));
+    if (queryBetween.getLimit() != null) {
+      orderBooks = orderBooks.take(queryBetween.getLimit());
+    }
+    return orderBooks;
+  }
+
   protected static Mono<OrderBook> getOrderBook(Flux<Order> orderFlux) {
     return orderFlux
         .collectList()
@@ -100,46 +402,140 @@ public class OrderBookClient {
   /**
    * Find all available series that overlap a time window.
    *
+   * <p>When books are read from the wide schema, the series are found from the best bids. With
+   * delta encoding, only keyframes are stored as orders, so the series are found from top of book
+   * points or wide books instead, and cannot be found without either.
+   *
    * @param queryBetween A time window there series must have a data point within
    * @param priceSource The price source
    * @return A list of series
    */
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
+    if (isReadingStatisticsFromWideBooks()) {
+      return orderClient.firstLastWideDuration(queryBetween, priceSource);
+    } else if (options.isDeltaEncoding()) {
+      return options.isReadTopOfBook()
+          ? orderClient.firstLastTopOfBookDuration(queryBetween, priceSource)
+          : notStoredAsOrders("First and last prices");
+    }
     return orderClient.firstLastDuration(queryBetween, priceSource);
   }
 
   /**
    * Get a count of all prices within a time window.
    *
+   * <p>Without top of book points, this is found from wide books when they are read. With delta
+   * encoding, only keyframes are stored as orders, so this needs one or the other.
+   *
    * @param queryBetween A time window there series must have a data point within
    * @param priceSource The price source
    * @return A count of orders
    */
   public Mono<Integer> count(QueryBetween queryBetween, PriceSource priceSource) {
+    if (options.isReadTopOfBook()) {
+      return orderClient.countTopOfBook(queryBetween, priceSource);
+    } else if (isReadingStatisticsFromWideBooks()) {
+      return orderClient.countWide(queryBetween, priceSource);
+    } else if (options.isDeltaEncoding()) {
+      return notStoredAsOrders("Price counts");
+    }
     return orderClient.count(queryBetween, priceSource);
   }
 
   /**
    * Get the average spread within a time window.
    *
+   * <p>Without top of book points, this is found from wide books when they are read. With delta
+   * encoding, only keyframes are stored as orders, so this needs one or the other.
+   *
    * @param queryBetween A time window there series must have a data point within
    * @param priceSource The price source
    * @return The average spread
    */
   public Mono<Double> averageSpread(QueryBetween queryBetween, PriceSource priceSource) {
+    if (options.isReadTopOfBook()) {
+      return orderClient.averageTopOfBookSpread(queryBetween, priceSource);
+    } else if (isReadingStatisticsFromWideBooks()) {
+      return orderClient.averageWideSpread(queryBetween, priceSource);
+    } else if (options.isDeltaEncoding()) {
+      return notStoredAsOrders("Average spreads");
+    }
     return orderClient.averageSpread(queryBetween, priceSource);
   }
 
   /**
    * Get the windowed averages within a time window.
    *
+   * <p>Without top of book points, these are found from wide books when they are read. With delta
+   * encoding, only keyframes are stored as orders, so these need one or the other.
+   *
    * @param queryBetween A time window there series must have a data point within
    * @param priceSource The price source
    * @return The average spread
    */
   public Flux<InstantDouble> windowedAverages(
       QueryBetween queryBetween, PriceSource priceSource, String windowPeriod) {
+    if (options.isReadTopOfBook()) {
+      return orderClient.windowedTopOfBookAverages(queryBetween, priceSource, windowPeriod);
+    } else if (isReadingStatisticsFromWideBooks()) {
+      return orderClient.windowedWideAverages(queryBetween, priceSource, windowPeriod);
+    } else if (options.isDeltaEncoding()) {
+      return Flux.from(notStoredAsOrders("Windowed averages"));
+    }
     return orderClient.windowedAverages(queryBetween, priceSource, windowPeriod);
   }
+
+  /**
+   * Check if statistics should be found from wide books. This is so if only wide books are read,
+   * or if both schemas are read but the levels schema only holds keyframes.
+   */
+  private boolean isReadingStatisticsFromWideBooks() {
+    return options.getReadSchema() == OrderBookSchema.WIDE
+        || (options.getReadSchema() == OrderBookSchema.BOTH && options.isDeltaEncoding());
+  }
+
+  private static <T> Mono<T> notStoredAsOrders(String statistic) {
+    return Mono.error(
+        new MeasurementNotSupportedException(
+            statistic
+                + " cannot be found from order books stored as deltas without top of book"
+                + " points or wide books, see influx-db.order-book.read-top-of-book"));
+  }
+
+  private static class DeltaTracker {
+    private final Duration keyframeInterval;
+
+    private OrderBook last = null;
+
+    private Instant keyframeTime = null;
+
+    DeltaTracker(Duration keyframeInterval) {
+      this.keyframeInterval = keyframeInterval;
+    }
+
+    synchronized OrderBookDelta next(OrderBook orderBook) {
+      Instant time = orderBook.getTime();
+      if (time == null) {
+        return new OrderBookDelta(null, orderBook);
+      }
+
+      boolean isKeyframe =
+          last == null
+              || !time.isAfter(last.getTime())
+              || !time.isBefore(keyframeTime.plus(keyframeInterval));
+      OrderBookDelta delta = new OrderBookDelta(isKeyframe ? null : last, orderBook);
+      if (isKeyframe) {
+        keyframeTime = time;
+      }
+      last = orderBook;
+      return delta;
+    }
+
+    /** Start again from a keyframe, after a write that may not have been stored. */
+    synchronized void reset() {
+      last = null;
+      keyframeTime = null;
+    }
+  }
 }
@@ -0,0 +1,30 @@
+package com.trickl.influxdb.client;
+
+import java.time.Duration;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class OrderBookOptions {
+  /** The schema books are written in. */
+  @Builder.Default protected OrderBookSchema writeSchema = OrderBookSchema.LEVELS;
+
+  /** The schema books are read from. */
+  @Builder.Default protected OrderBookSchema readSchema = OrderBookSchema.LEVELS;
+
+  /** If true, the best bid and ask of each book are also written as a top of book point. */
+  @Builder.Default protected boolean writeTopOfBook = false;
+
+  /** If true, spread, average and count statistics are read from top of book points. */
+  @Builder.Default protected boolean readTopOfBook = false;
+
+  /**
+   * If true, only the levels that changed since the last book stored are written. This applies to
+   * the levels schema only.
+   */
+  @Builder.Default protected boolean deltaEncoding = false;
+
+  /** The maximum time between full books when writing deltas, and the lookback when reading. */
+  @Builder.Default protected Duration keyframeInterval = Duration.ofMinutes(1);
+}
@@ -0,0 +1,106 @@
+package com.trickl.influxdb.client;
+
+import com.trickl.influxdb.persistence.BidOrAskFlags;
+import com.trickl.influxdb.persistence.OrderDeltaEntity;
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+class OrderBookRebuilder {
+
+  private final PriceSource source;
+
+  private OrderBook current = null;
+
+  OrderBookRebuilder(PriceSource priceSource) {
+    this.source =
+        PriceSource.builder()
+            .exchangeId(priceSource.getExchangeId().toUpperCase())
+            .instrumentId(priceSource.getInstrumentId().toUpperCase())
+            .build();
+  }
+
+  /**
+   * Apply the next update, in time order.
+   *
+   * @param update a keyframe or the levels that changed at one time
+   * @return the full book after the update, or empty if no keyframe has been seen yet
+   */
+  Optional<OrderBook> apply(Update update) {
+    if (update.keyframe != null) {
+      current = update.keyframe;
+    } else if (current != null) {
+      List<Quote> bids = new ArrayList<>(current.getBids());
+      List<Quote> asks = new ArrayList<>(current.getAsks());
+      update.changes.stream()
+          .filter(change -> change.getDepth() != null)
+          .sorted(Comparator.comparingInt(change -> Integer.parseInt(change.getDepth())))
+          .forEach(
+              change -> {
+                boolean isBid = BidOrAskFlags.BID.equals(change.getBidOrAsk());
+                applyChange(isBid ? bids : asks, change);
+              });
+      current = OrderBook.builder().bids(bids).asks(asks).time(update.time).build();
+    }
+    return Optional.ofNullable(current);
+  }
+
+  private void applyChange(List<Quote> quotes, OrderDeltaEntity change) {
+    int depth = Integer.parseInt(change.getDepth());
+    if (Boolean.TRUE.equals(change.getRemoved())) {
+      if (depth < quotes.size()) {
+        quotes.subList(depth, quotes.size()).clear();
+      }
+      return;
+    }
+
+    double price = Optional.ofNullable(change.getPrice()).orElse(Double.NaN);
+    Quote quote =
+        Quote.builder()
+            .price(Double.isNaN(price) ? BigDecimal.ZERO : BigDecimal.valueOf(price))
+            .volume(Optional.ofNullable(change.getVolume()).orElse(0L))
+            .source(source)
+            .build();
+    if (depth < quotes.size()) {
+      quotes.set(depth, quote);
+    } else if (depth == quotes.size()) {
+      quotes.add(quote);
+    }
+  }
+
+  static class Update {
+    private final Instant time;
+
+    private final OrderBook keyframe;
+
+    private final List<OrderDeltaEntity> changes;
+
+    private Update(Instant time, OrderBook keyframe, List<OrderDeltaEntity> changes) {
+      this.time = time;
+      this.keyframe = keyframe;
+      this.changes = changes;
+    }
+
+    static Update keyframe(OrderBook orderBook) {
+      return new Update(orderBook.getTime(), orderBook, null);
+    }
+
+    static Update changes(List<OrderDeltaEntity> changes) {
+      return new Update(changes.get(0).getTime(), null, changes);
+    }
+
+    Instant getTime() {
+      return time;
+    }
+
+    boolean isKeyframe() {
+      return keyframe != null;
+    }
+  }
+}
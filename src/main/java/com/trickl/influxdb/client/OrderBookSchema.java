@@ -0,0 +1,12 @@
+package com.trickl.influxdb.client;
+
+public enum OrderBookSchema {
+  /** An order point per level, tagged with its side and depth. */
+  LEVELS,
+
+  /** A single order book point per book, with a price and volume field per level. */
+  WIDE,
+
+  /** Both schemas, for migrating from one to the other. Reads prefer the wide schema. */
+  BOTH
+}
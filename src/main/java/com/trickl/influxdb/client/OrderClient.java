@@ -1,17 +1,25 @@
 package com.trickl.influxdb.client;
 
 import com.influxdb.client.reactive.InfluxDBClientReactive;
+import com.trickl.influxdb.binding.OrderBookRecordReader;
 import com.trickl.influxdb.binding.OrderReader;
 import com.trickl.influxdb.binding.OrderWriter;
+import com.trickl.influxdb.persistence.OrderBookFields;
+import com.trickl.influxdb.persistence.OrderDeltaEntity;
 import com.trickl.influxdb.persistence.OrderEntity;
 import com.trickl.model.analytics.InstantDouble;
 import com.trickl.model.pricing.primitives.Order;
+import com.trickl.model.pricing.primitives.OrderBook;
 import com.trickl.model.pricing.primitives.PriceSource;
 import com.trickl.model.pricing.statistics.PriceSourceDouble;
 import com.trickl.model.pricing.statistics.PriceSourceFieldFirstLastDuration;
 import com.trickl.model.pricing.statistics.PriceSourceInteger;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
@@ -20,10 +28,25 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class OrderClient {
 
+  private static final Map<String, Set<String>> BEST_PRICES = Map.of("depth", Set.of("0"));
+
+  private static final Map<String, Set<String>> BEST_BIDS =
+      Map.of("depth", Set.of("0"), "bidOrAsk", Set.of("B"));
+
+  private static final Map<String, Set<String>> BEST_ASKS =
+      Map.of("depth", Set.of("0"), "bidOrAsk", Set.of("A"));
+
   private final InfluxDBClientReactive influxDbClient;
 
   private final String bucket;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final QueryCoalescer queryCoalescer;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
   /**
    * Stores quotes in the database.
    *
@@ -34,10 +57,21 @@ public class OrderClient {
   public Flux<Integer> store(PriceSource priceSource, List<Order> orders) {
     OrderWriter transformer = new OrderWriter(priceSource);
     List<OrderEntity> measurements = orders.stream().map(transformer).collect(Collectors.toList());
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     return influxDbStorage.store(measurements, OrderEntity.class, OrderEntity::getTime);
   }
 
+  /**
+   * Stores a stream of quotes in the database.
+   *
+   * @param priceSource the instrument identifier
+   * @param orders data to store
+   * @return counts of records stored, one per batch written
+   */
+  public Flux<Integer> store(PriceSource priceSource, Flux<Order> orders) {
+    OrderWriter transformer = new OrderWriter(priceSource);
+    return influxDbStorage.store(orders.map(transformer), OrderEntity.class, OrderEntity::getTime);
+  }
+
   /**
    * Find candles.
    *
@@ -47,10 +81,69 @@ public class OrderClient {
    */
   public Flux<Order> findBetween(PriceSource priceSource, QueryBetween queryBetween) {
     OrderReader reader = new OrderReader();
-    InfluxDbFindBetween finder = new InfluxDbFindBetween(this.influxDbClient, bucket);
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(this.influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return finder.findBetween(priceSource, queryBetween, "order", OrderEntity.class).map(reader);
   }
 
+  /**
+   * Find orders for many instruments, with a single query.
+   *
+   * @param priceSources the instrument identifiers
+   * @param queryBetween Query parameters
+   * @return Lists of orders, for every price source
+   */
+  public Mono<Map<PriceSource, List<Order>>> findBetween(
+      Collection<PriceSource> priceSources, QueryBetween queryBetween) {
+    OrderReader reader = new OrderReader();
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(this.influxDbClient, bucket, queryCoalescer, parameterizedQueries);
+    return finder
+        .findBetween(priceSources, queryBetween, "order", OrderEntity.class)
+        .map(
+            ordersBySource -> {
+              Map<PriceSource, List<Order>> orders = new LinkedHashMap<>();
+              ordersBySource.forEach(
+                  (priceSource, entities) ->
+                      orders.put(
+                          priceSource,
+                          entities.stream().map(reader).collect(Collectors.toList())));
+              return orders;
+            });
+  }
+
+  /**
+   * Find order books stored as a single point each.
+   *
+   * @param priceSource the instrument identifier
+   * @param queryBetween Query parameters
+   * @return A list of order books
+   */
+  Flux<OrderBook> findBooksBetween(PriceSource priceSource, QueryBetween queryBetween) {
+    OrderBookRecordReader reader = new OrderBookRecordReader();
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(this.influxDbClient, bucket, queryCoalescer, parameterizedQueries);
+    // Fields name the columns of the order measurement, such as price, which a wide book
+    // spreads over a field per level, so whole books are read instead
+    QueryBetween wideQuery = queryBetween.toBuilder().fields(null).build();
+    return finder
+        .findRecordsBetween(priceSource, wideQuery, OrderBookFields.MEASUREMENT)
+        .map(reader);
+  }
+
+  /**
+   * Find the order book changes written between keyframes.
+   *
+   * @param priceSource the instrument identifier
+   * @param queryBetween Query parameters
+   * @return A list of changed levels
+   */
+  Flux<OrderDeltaEntity> findDeltasBetween(PriceSource priceSource, QueryBetween queryBetween) {
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(this.influxDbClient, bucket, queryCoalescer, parameterizedQueries);
+    return finder.findBetween(priceSource, queryBetween, "order_delta", OrderDeltaEntity.class);
+  }
+
   /**
    * Find a summary of price updates between a period of time, grouped by instrument.
    *
@@ -61,7 +154,7 @@ public class OrderClient {
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
     InfluxDbFirstLastDuration influxDbClient =
-        new InfluxDbFirstLastDuration(this.influxDbClient, bucket);
+        new InfluxDbFirstLastDuration(this.influxDbClient, bucket, parameterizedQueries);
     return influxDbClient.firstLastDuration(queryBetween, "order", "price", priceSource);
   }
 
@@ -73,9 +166,9 @@ public class OrderClient {
    * @return Counts by instruments
    */
   public Mono<Integer> count(QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbCount finder = new InfluxDbCount(influxDbClient, bucket);
+    InfluxDbCount finder = new InfluxDbCount(influxDbClient, bucket, parameterizedQueries);
     return finder
-        .count(queryBetween, "order", "price", priceSource, Optional.of("r.depth == \"0\""))
+        .count(queryBetween, "order", "price", priceSource, BEST_PRICES)
         .map(PriceSourceInteger::getValue);
   }
 
@@ -87,7 +180,8 @@ public class OrderClient {
    * @return Counts by instruments
    */
   public Mono<Double> averageSpread(QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbAverageSpread spreadBetween = new InfluxDbAverageSpread(this.influxDbClient, bucket);
+    InfluxDbAverageSpread spreadBetween =
+        new InfluxDbAverageSpread(this.influxDbClient, bucket, parameterizedQueries);
     return spreadBetween
         .averageSpread(
             queryBetween,
@@ -96,8 +190,8 @@ public class OrderClient {
             "order",
             "price",
             priceSource,
-            Optional.of("r.depth == \"0\" and r.bidOrAsk == \"B\""),
-            Optional.of("r.depth == \"0\" and r.bidOrAsk == \"A\""))
+            BEST_BIDS,
+            BEST_ASKS)
         .map(PriceSourceDouble::getValue);
   }
 
@@ -111,7 +205,7 @@ public class OrderClient {
   public Flux<InstantDouble> windowedAverages(
       QueryBetween queryBetween, PriceSource priceSource, String windowPeriod) {
     InfluxDbWindowedAverages spreadBetween =
-        new InfluxDbWindowedAverages(this.influxDbClient, bucket);
+        new InfluxDbWindowedAverages(this.influxDbClient, bucket, parameterizedQueries);
     return spreadBetween
         .windowedAverages(
             queryBetween,
@@ -121,11 +215,153 @@ public class OrderClient {
             "price",
             windowPeriod,
             priceSource,
-            Optional.of("r.depth == \"0\" and r.bidOrAsk == \"B\""),
-            Optional.of("r.depth == \"0\" and r.bidOrAsk == \"A\""))
+            BEST_BIDS,
+            BEST_ASKS)
         .map(
             row -> {
               return new InstantDouble(row.getTime(), row.getValue());
             });
   }
+
+  /**
+   * Find the first and last mid prices between a period of time, from top of book points.
+   *
+   * @param queryBetween A time window there series must have a data point within
+   * @param priceSource The price source
+   * @return A list of series, including the first and last mid price
+   */
+  Mono<PriceSourceFieldFirstLastDuration> firstLastTopOfBookDuration(
+      QueryBetween queryBetween, PriceSource priceSource) {
+    InfluxDbFirstLastDuration influxDbClient =
+        new InfluxDbFirstLastDuration(this.influxDbClient, bucket, parameterizedQueries);
+    return influxDbClient.firstLastDuration(queryBetween, "top_of_book", "mid", priceSource);
+  }
+
+  /**
+   * Find a count of best bids and asks between a period of time, from top of book points.
+   *
+   * @param queryBetween A time window there series must have a data point within
+   * @param priceSource The price source
+   * @return Counts by instruments
+   */
+  Mono<Integer> countTopOfBook(QueryBetween queryBetween, PriceSource priceSource) {
+    InfluxDbCount finder = new InfluxDbCount(influxDbClient, bucket, parameterizedQueries);
+    return finder
+        .count(queryBetween, "top_of_book", List.of("bid", "ask"), priceSource)
+        .map(PriceSourceInteger::getValue);
+  }
+
+  /**
+   * Find the average spread between a period of time, from top of book points.
+   *
+   * @param queryBetween A time window there series must have a data point within
+   * @param priceSource The price source
+   * @return The average spread
+   */
+  Mono<Double> averageTopOfBookSpread(QueryBetween queryBetween, PriceSource priceSource) {
+    InfluxDbAverageSpread spreadBetween =
+        new InfluxDbAverageSpread(this.influxDbClient, bucket, parameterizedQueries);
+    return spreadBetween
+        .averageSpread(queryBetween, "top_of_book", "spread", priceSource)
+        .map(PriceSourceDouble::getValue);
+  }
+
+  /**
+   * Get windowed averages over a period of time, from top of book points.
+   *
+   * @param queryBetween A time window there series must have a data point within
+   * @param priceSource The price source
+   * @param windowPeriod The width of each window
+   * @return Windowed averages by instruments
+   */
+  Flux<InstantDouble> windowedTopOfBookAverages(
+      QueryBetween queryBetween, PriceSource priceSource, String windowPeriod) {
+    InfluxDbWindowedAverages spreadBetween =
+        new InfluxDbWindowedAverages(this.influxDbClient, bucket, parameterizedQueries);
+    return spreadBetween
+        .windowedAverages(queryBetween, "top_of_book", "mid", windowPeriod, priceSource)
+        .map(row -> new InstantDouble(row.getTime(), row.getValue()));
+  }
+
+  /**
+   * Find the first and last best bids between a period of time, from order books stored as a
+   * single point each.
+   *
+   * @param queryBetween A time window there series must have a data point within
+   * @param priceSource The price source
+   * @return A list of series, including the first and last best bid
+   */
+  Mono<PriceSourceFieldFirstLastDuration> firstLastWideDuration(
+      QueryBetween queryBetween, PriceSource priceSource) {
+    InfluxDbFirstLastDuration influxDbClient =
+        new InfluxDbFirstLastDuration(this.influxDbClient, bucket, parameterizedQueries);
+    return influxDbClient.firstLastDuration(
+        queryBetween, OrderBookFields.MEASUREMENT, OrderBookFields.price(true, 0), priceSource);
+  }
+
+  /**
+   * Find a count of best bids and asks between a period of time, from order books stored as a
+   * single point each.
+   *
+   * @param queryBetween A time window there series must have a data point within
+   * @param priceSource The price source
+   * @return Counts by instruments
+   */
+  Mono<Integer> countWide(QueryBetween queryBetween, PriceSource priceSource) {
+    InfluxDbCount finder = new InfluxDbCount(influxDbClient, bucket, parameterizedQueries);
+    List<String> fields = List.of(OrderBookFields.price(true, 0), OrderBookFields.price(false, 0));
+    return finder
+        .count(queryBetween, OrderBookFields.MEASUREMENT, fields, priceSource)
+        .map(PriceSourceInteger::getValue);
+  }
+
+  /**
+   * Find the average spread between a period of time, from order books stored as a single point
+   * each.
+   *
+   * @param queryBetween A time window there series must have a data point within
+   * @param priceSource The price source
+   * @return The average spread
+   */
+  Mono<Double> averageWideSpread(QueryBetween queryBetween, PriceSource priceSource) {
+    InfluxDbAverageSpread spreadBetween =
+        new InfluxDbAverageSpread(this.influxDbClient, bucket, parameterizedQueries);
+    return spreadBetween
+        .averageSpread(
+            queryBetween,
+            OrderBookFields.MEASUREMENT,
+            OrderBookFields.price(true, 0),
+            OrderBookFields.MEASUREMENT,
+            OrderBookFields.price(false, 0),
+            priceSource,
+            Collections.emptyMap(),
+            Collections.emptyMap())
+        .map(PriceSourceDouble::getValue);
+  }
+
+  /**
+   * Get windowed averages over a period of time, from order books stored as a single point each.
+   *
+   * @param queryBetween A time window there series must have a data point within
+   * @param priceSource The price source
+   * @param windowPeriod The width of each window
+   * @return Windowed averages by instruments
+   */
+  Flux<InstantDouble> windowedWideAverages(
+      QueryBetween queryBetween, PriceSource priceSource, String windowPeriod) {
+    InfluxDbWindowedAverages spreadBetween =
+        new InfluxDbWindowedAverages(this.influxDbClient, bucket, parameterizedQueries);
+    return spreadBetween
+        .windowedAverages(
+            queryBetween,
+            OrderBookFields.MEASUREMENT,
+            OrderBookFields.price(true, 0),
+            OrderBookFields.MEASUREMENT,
+            OrderBookFields.price(false, 0),
+            windowPeriod,
+            priceSource,
+            Collections.emptyMap(),
+            Collections.emptyMap())
+        .map(row -> new InstantDouble(row.getTime(), row.getValue()));
+  }
 }
@@ -0,0 +1,16 @@
+package com.trickl.influxdb.client;
+
+@FunctionalInterface
+public interface QuarantineHandler {
+  /**
+   * Called for a measurement that the database refused to store.
+   *
+   * <p>A spooled write that is refused on replay cannot be split, so its line protocol is passed
+   * as a string instead.
+   *
+   * @param measurement the measurement, or the line protocol of a spooled write, which is not
+   *     retried
+   * @param error the error returned when it was written on its own
+   */
+  void quarantine(Object measurement, Throwable error);
+}
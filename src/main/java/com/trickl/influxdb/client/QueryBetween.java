@@ -1,11 +1,16 @@
 package com.trickl.influxdb.client;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import lombok.Builder;
 import lombok.Value;
 
 @Value
-@Builder
+@Builder(toBuilder = true)
 public class QueryBetween {
   protected boolean startIncl;
   protected Instant start;
@@ -13,5 +18,87 @@ public class QueryBetween {
   protected Instant end;
   protected boolean mostRecentFirst;
   protected Long limit;
+
+  /** If set, the width in seconds of the sub-range queries a long range is split into. */
   protected Integer chunkSize;
+
+  /** The number of chunks queried ahead of the one being read, zero if not set. */
+  protected Integer chunkPrefetch;
+
+  /** If set, the number of equal sub-ranges to split the query into, if not chunked. */
+  protected Integer partitions;
+
+  /** The number of partitions or chunks queried concurrently, all partitions if not set. */
+  protected Integer parallelism;
+
+  /** If set and not empty, only these fields are read, leaving any others unset. */
+  protected Set<String> fields;
+
+  /**
+   * Split the query into consecutive sub-range queries of at most the chunk size, or into the
+   * number of partitions if there is no chunk size.
+   *
+   * <p>The chunks are in the order results are wanted, so latest first if the most recent are
+   * first. Each chunk keeps the limit, which still has to be applied across all chunks.
+   *
+   * @return the chunks, or just this query if it is not split
+   */
+  public List<QueryBetween> splitIntoChunks() {
+    if (start == null || end == null || !end.isAfter(start)) {
+      return Collections.singletonList(this);
+    }
+
+    Duration chunkWidth;
+    if (chunkSize != null && chunkSize > 0) {
+      chunkWidth = Duration.ofSeconds(chunkSize);
+    } else if (partitions != null && partitions > 1) {
+      // Queries are bounded to the second, so partitions are whole seconds wide
+      Duration range = Duration.between(start, end);
+      long rangeSeconds = range.getSeconds() + (range.getNano() > 0 ? 1 : 0);
+      chunkWidth = Duration.ofSeconds(Math.max(1, (rangeSeconds + partitions - 1) / partitions));
+    } else {
+      return Collections.singletonList(this);
+    }
+
+    List<QueryBetween> chunks = new ArrayList<>();
+    Instant chunkStart = start;
+    while (chunkStart.isBefore(end)) {
+      Instant chunkEnd = chunkStart.plus(chunkWidth);
+      boolean isLast = !chunkEnd.isBefore(end);
+      chunks.add(
+          QueryBetween.builder()
+              .startIncl(chunkStart.equals(start) ? startIncl : true)
+              .start(chunkStart)
+              .endIncl(isLast ? endIncl : false)
+              .end(isLast ? end : chunkEnd)
+              .mostRecentFirst(mostRecentFirst)
+              .limit(limit)
+              .fields(fields)
+              .build());
+      chunkStart = chunkEnd;
+    }
+
+    if (chunks.isEmpty()) {
+      return Collections.singletonList(this);
+    }
+    if (mostRecentFirst) {
+      Collections.reverse(chunks);
+    }
+    return chunks;
+  }
+
+  /**
+   * Get the number of chunks to query at the same time.
+   *
+   * @return the parallelism if set, otherwise all partitions, or the chunk prefetch plus one
+   */
+  public int getChunkConcurrency() {
+    if (parallelism != null && parallelism > 0) {
+      return parallelism;
+    }
+    if ((chunkSize == null || chunkSize <= 0) && partitions != null && partitions > 1) {
+      return partitions;
+    }
+    return 1 + (chunkPrefetch != null ? Math.max(0, chunkPrefetch) : 0);
+  }
 }
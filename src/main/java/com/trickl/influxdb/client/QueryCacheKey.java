@@ -0,0 +1,22 @@
+package com.trickl.influxdb.client;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class QueryCacheKey {
+  protected String bucket;
+  protected String measurementName;
+  protected Class<?> measurementClazz;
+  protected String exchangeId;
+  protected String instrumentId;
+  protected Map<String, Set<String>> filter;
+  protected String temporalSource;
+  protected Set<String> fields;
+  protected Instant segmentStart;
+  protected Instant segmentEnd;
+}
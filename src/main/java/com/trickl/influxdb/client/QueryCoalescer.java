@@ -0,0 +1,75 @@
+package com.trickl.influxdb.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import reactor.core.publisher.Flux;
+
+public class QueryCoalescer {
+
+  private final Map<Object, Shared<?>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Share a single execution of a query between everyone that asks for it before it returns
+   * anything.
+   *
+   * <p>Nothing is replayed, so once the query has produced its first result, failed, or been
+   * cancelled by every subscriber, the next subscriber runs it again.
+   *
+   * @param <T> the type of result
+   * @param key identifies the query, such as its text
+   * @param query runs the query
+   * @return the results of the query
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Flux<T> coalesce(Object key, Supplier<Flux<T>> query) {
+    return Flux.from(
+        subscriber -> {
+          while (true) {
+            Shared<T> shared =
+                (Shared<T>)
+                    inFlight.computeIfAbsent(key, sharedKey -> new Shared<>(key, query.get()));
+            // Joining under the lock means the first result cannot be missed
+            synchronized (shared) {
+              if (shared.open) {
+                shared.results.subscribe(subscriber);
+                return;
+              }
+            }
+            inFlight.remove(key, shared);
+          }
+        });
+  }
+
+  /**
+   * Get the number of queries running.
+   *
+   * @return the number of distinct queries in flight
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  private class Shared<T> {
+    private final Object key;
+
+    private final Flux<T> results;
+
+    private volatile boolean open = true;
+
+    Shared(Object key, Flux<T> query) {
+      this.key = key;
+      this.results =
+          query.doOnEach(signal -> close()).doFinally(signal -> close()).publish().refCount();
+    }
+
+    private void close() {
+      if (open) {
+        synchronized (this) {
+          open = false;
+          inFlight.remove(key, this);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package com.trickl.influxdb.client;
+
+public enum QueryOrdering {
+  /** Merge every series into one table and sort it on the server. */
+  SERVER,
+
+  /** Read a single series, which the server already returns in time order. */
+  SINGLE_SERIES,
+
+  /** Read each series in time order, and merge the series of each instrument on the client. */
+  CLIENT_MERGE
+}
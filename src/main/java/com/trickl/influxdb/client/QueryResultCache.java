@@ -0,0 +1,31 @@
+package com.trickl.influxdb.client;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface QueryResultCache {
+  /**
+   * Get the cached results of a segment.
+   *
+   * @param key the segment query
+   * @return the results in time order, or empty if the segment is not cached
+   */
+  Optional<List<?>> get(QueryCacheKey key);
+
+  /**
+   * Cache the results of a segment, which must no longer change.
+   *
+   * @param key the segment query
+   * @param results the results in time order
+   */
+  void put(QueryCacheKey key, List<?> results);
+
+  /**
+   * Forget every cached segment of a measurement of an instrument, as it has been written to.
+   *
+   * @param measurementName the measurement name
+   * @param exchangeId the exchange, in upper case
+   * @param instrumentId the instrument, in upper case
+   */
+  void invalidate(String measurementName, String exchangeId, String instrumentId);
+}
@@ -35,6 +35,13 @@ public class SportsEventIncidentClient {
 
   private final String organisation;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final QueryCoalescer queryCoalescer;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
   /**
    * Stores prices in the database.
    *
@@ -46,7 +53,6 @@ public class SportsEventIncidentClient {
     SportsEventIncidentWriter transformer = new SportsEventIncidentWriter(priceSource);
     List<SportsEventIncidentEntity> measurements =
         events.stream().map(transformer).collect(Collectors.toList());
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     return influxDbStorage.store(
         measurements, SportsEventIncidentEntity.class, SportsEventIncidentEntity::getTime);
   }
@@ -62,7 +68,8 @@ public class SportsEventIncidentClient {
     SportsEventIncidentReader reader = new SportsEventIncidentReader();
 
     Set<String> incidentTypes = getIncidentTypes(eventSource);
-    InfluxDbFindBetween finder = new InfluxDbFindBetween(influxDbClient, bucket);
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return finder
         .findBetween(
             eventSource.getPriceSource(),
@@ -85,7 +92,8 @@ public class SportsEventIncidentClient {
   public Flux<AggregatedInstrumentEvents> findAggregatedBetween(
       EventSource eventSource, QueryBetween queryBetween) {
     AggregatedSportsEventIncidentReader reader = new AggregatedSportsEventIncidentReader();
-    InfluxDbFindBetween finder = new InfluxDbFindBetween(influxDbClient, bucket);
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return finder
         .findBetween(
             eventSource.getPriceSource(),
@@ -113,7 +121,7 @@ public class SportsEventIncidentClient {
             aggregateEventWidth.toString().substring(2).toLowerCase());
     Set<String> incidentTypes = getIncidentTypes(eventSource);
     InfluxDbAggregator influxDbAggregator =
-        new InfluxDbAggregator(influxDbClient, bucket, organisation);
+        new InfluxDbAggregator(influxDbClient, bucket, organisation, parameterizedQueries);
     return influxDbAggregator
         .aggregateSportsEventIncidentsBetween(
             eventSource.getPriceSource(),
@@ -135,7 +143,8 @@ public class SportsEventIncidentClient {
    */
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbFirstLastDuration finder = new InfluxDbFirstLastDuration(influxDbClient, bucket);
+    InfluxDbFirstLastDuration finder =
+        new InfluxDbFirstLastDuration(influxDbClient, bucket, parameterizedQueries);
     return finder.firstLastDuration(
         queryBetween, "sports_event_incident", "matchTime", priceSource);
   }
@@ -169,7 +178,8 @@ public class SportsEventIncidentClient {
    * @return Counts by instruments
    */
   public Mono<Integer> count(QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbCount influxDbClient = new InfluxDbCount(this.influxDbClient, bucket);
+    InfluxDbCount influxDbClient =
+        new InfluxDbCount(this.influxDbClient, bucket, parameterizedQueries);
     return influxDbClient
         .count(queryBetween, "sports_event_incident", "matchTime", priceSource)
         .map(PriceSourceInteger::getValue);
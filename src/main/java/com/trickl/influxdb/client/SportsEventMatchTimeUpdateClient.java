@@ -30,6 +30,13 @@ public class SportsEventMatchTimeUpdateClient {
 
   private final String organisation;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final QueryCoalescer queryCoalescer;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
   /**
    * Stores prices in the database.
    *
@@ -42,7 +49,6 @@ public class SportsEventMatchTimeUpdateClient {
         new SportsEventMatchTimeUpdateWriter(priceSource);
     List<SportsEventMatchTimeUpdateEntity> measurements =
         events.stream().map(transformer).collect(Collectors.toList());
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     return influxDbStorage.store(
         measurements,
         SportsEventMatchTimeUpdateEntity.class,
@@ -63,7 +69,8 @@ public class SportsEventMatchTimeUpdateClient {
       // Sub-types not supported
       return Flux.empty();
     }
-    InfluxDbFindBetween finder = new InfluxDbFindBetween(influxDbClient, bucket);
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return finder
         .findBetween(
             eventSource.getPriceSource(),
@@ -85,7 +92,8 @@ public class SportsEventMatchTimeUpdateClient {
     AggregatedSportsEventMatchTimeUpdateReader reader =
         new AggregatedSportsEventMatchTimeUpdateReader();
 
-    InfluxDbFindBetween finder = new InfluxDbFindBetween(influxDbClient, bucket);
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return finder
         .findBetween(
             eventSource.getPriceSource(),
@@ -112,7 +120,7 @@ public class SportsEventMatchTimeUpdateClient {
             "{0}_{1}",
             eventSource.getEventType(), aggregateEventWidth.toString().substring(2).toLowerCase());
     InfluxDbAggregator influxDbAggregator =
-        new InfluxDbAggregator(influxDbClient, bucket, organisation);
+        new InfluxDbAggregator(influxDbClient, bucket, organisation, parameterizedQueries);
     return influxDbAggregator
         .aggregateSportsEventMatchTimeUpdatesBetween(
             eventSource.getPriceSource(),
@@ -132,7 +140,8 @@ public class SportsEventMatchTimeUpdateClient {
    */
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbFirstLastDuration finder = new InfluxDbFirstLastDuration(influxDbClient, bucket);
+    InfluxDbFirstLastDuration finder =
+        new InfluxDbFirstLastDuration(influxDbClient, bucket, parameterizedQueries);
     return finder.firstLastDuration(
         queryBetween, "sports_event_match_time_update", "remaining_time", priceSource);
   }
@@ -145,7 +154,8 @@ public class SportsEventMatchTimeUpdateClient {
    * @return Counts by instruments
    */
   public Mono<Integer> count(QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbCount influxDbClient = new InfluxDbCount(this.influxDbClient, bucket);
+    InfluxDbCount influxDbClient =
+        new InfluxDbCount(this.influxDbClient, bucket, parameterizedQueries);
     return influxDbClient
         .count(
             queryBetween,
@@ -22,6 +22,13 @@ public class SportsEventOutcomeUpdateClient {
 
   private final String bucket;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final QueryCoalescer queryCoalescer;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
   /**
    * Stores prices in the database.
    *
@@ -33,7 +40,6 @@ public class SportsEventOutcomeUpdateClient {
     SportsEventOutcomeUpdateWriter transformer = new SportsEventOutcomeUpdateWriter(priceSource);
     List<SportsEventOutcomeUpdateEntity> measurements =
         events.stream().map(transformer).collect(Collectors.toList());
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     return influxDbStorage.store(
         measurements,
         SportsEventOutcomeUpdateEntity.class,
@@ -54,7 +60,8 @@ public class SportsEventOutcomeUpdateClient {
       // Sub-types not supported
       return Flux.empty();
     }
-    InfluxDbFindBetween finder = new InfluxDbFindBetween(influxDbClient, bucket);
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return finder
         .findBetween(
             eventSource.getPriceSource(),
@@ -74,7 +81,7 @@ public class SportsEventOutcomeUpdateClient {
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
     InfluxDbFirstLastDuration influxDbClient =
-        new InfluxDbFirstLastDuration(this.influxDbClient, bucket);
+        new InfluxDbFirstLastDuration(this.influxDbClient, bucket, parameterizedQueries);
     return influxDbClient.firstLastDuration(
         queryBetween, "sports_event_outcome_update", "outcome", priceSource);
   }
@@ -87,7 +94,8 @@ public class SportsEventOutcomeUpdateClient {
    * @return Counts by instruments
    */
   public Mono<Integer> count(QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbCount influxDbClient = new InfluxDbCount(this.influxDbClient, bucket);
+    InfluxDbCount influxDbClient =
+        new InfluxDbCount(this.influxDbClient, bucket, parameterizedQueries);
     return influxDbClient
         .count(queryBetween, "sports_event_outcome_update", "outcome", priceSource)
         .map(PriceSourceInteger::getValue);
@@ -22,6 +22,13 @@ public class SportsEventPeriodUpdateClient {
 
   private final String bucket;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final QueryCoalescer queryCoalescer;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
   /**
    * Stores prices in the database.
    *
@@ -33,7 +40,6 @@ public class SportsEventPeriodUpdateClient {
     SportsEventPeriodUpdateWriter transformer = new SportsEventPeriodUpdateWriter(priceSource);
     List<SportsEventPeriodUpdateEntity> measurements =
         events.stream().map(transformer).collect(Collectors.toList());
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     return influxDbStorage.store(
         measurements, SportsEventPeriodUpdateEntity.class, SportsEventPeriodUpdateEntity::getTime);
   }
@@ -52,7 +58,8 @@ public class SportsEventPeriodUpdateClient {
       // Sub-types not supported
       return Flux.empty();
     }
-    InfluxDbFindBetween finder = new InfluxDbFindBetween(influxDbClient, bucket);
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return finder
         .findBetween(
             eventSource.getPriceSource(),
@@ -71,7 +78,8 @@ public class SportsEventPeriodUpdateClient {
    */
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbFirstLastDuration finder = new InfluxDbFirstLastDuration(influxDbClient, bucket);
+    InfluxDbFirstLastDuration finder =
+        new InfluxDbFirstLastDuration(influxDbClient, bucket, parameterizedQueries);
     return finder.firstLastDuration(
         queryBetween, "sports_event_period_update", "period", priceSource);
   }
@@ -84,7 +92,8 @@ public class SportsEventPeriodUpdateClient {
    * @return Counts by instruments
    */
   public Mono<Integer> count(QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbCount influxDbClient = new InfluxDbCount(this.influxDbClient, bucket);
+    InfluxDbCount influxDbClient =
+        new InfluxDbCount(this.influxDbClient, bucket, parameterizedQueries);
     return influxDbClient
         .count(queryBetween, "sports_event_period_update", "period", priceSource)
         .map(PriceSourceInteger::getValue);
@@ -30,6 +30,13 @@ public class SportsEventScoreUpdateClient {
 
   private final String organisation;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final QueryCoalescer queryCoalescer;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
   /**
    * Stores prices in the database.
    *
@@ -41,7 +48,6 @@ public class SportsEventScoreUpdateClient {
     SportsEventScoreUpdateWriter transformer = new SportsEventScoreUpdateWriter(priceSource);
     List<SportsEventScoreUpdateEntity> measurements =
         events.stream().map(transformer).collect(Collectors.toList());
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     return influxDbStorage.store(
         measurements, SportsEventScoreUpdateEntity.class, SportsEventScoreUpdateEntity::getTime);
   }
@@ -60,7 +66,8 @@ public class SportsEventScoreUpdateClient {
       // Sub-types not supported
       return Flux.empty();
     }
-    InfluxDbFindBetween finder = new InfluxDbFindBetween(influxDbClient, bucket);
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return finder
         .findBetween(
             eventSource.getPriceSource(),
@@ -80,7 +87,8 @@ public class SportsEventScoreUpdateClient {
   public Flux<AggregatedInstrumentEvents> findAggregatedBetween(
       EventSource eventSource, QueryBetween queryBetween) {
     AggregatedSportsEventScoreUpdateReader reader = new AggregatedSportsEventScoreUpdateReader();
-    InfluxDbFindBetween finder = new InfluxDbFindBetween(influxDbClient, bucket);
+    InfluxDbFindBetween finder =
+        new InfluxDbFindBetween(influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return finder
         .findBetween(
             eventSource.getPriceSource(),
@@ -106,7 +114,7 @@ public class SportsEventScoreUpdateClient {
             "{0}_{1}",
             eventSource.getEventType(), aggregateEventWidth.toString().substring(2).toLowerCase());
     InfluxDbAggregator influxDbAggregator =
-        new InfluxDbAggregator(influxDbClient, bucket, organisation);
+        new InfluxDbAggregator(influxDbClient, bucket, organisation, parameterizedQueries);
     return influxDbAggregator
         .aggregateSportsEventScoreUpdatesBetween(
             eventSource.getPriceSource(),
@@ -126,7 +134,8 @@ public class SportsEventScoreUpdateClient {
    */
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbFirstLastDuration finder = new InfluxDbFirstLastDuration(influxDbClient, bucket);
+    InfluxDbFirstLastDuration finder =
+        new InfluxDbFirstLastDuration(influxDbClient, bucket, parameterizedQueries);
     return finder.firstLastDuration(
         queryBetween, "sports_event_score_update", "current", priceSource);
   }
@@ -139,7 +148,8 @@ public class SportsEventScoreUpdateClient {
    * @return Counts by instruments
    */
   public Mono<Integer> count(QueryBetween queryBetween, PriceSource priceSource) {
-    InfluxDbCount influxDbClient = new InfluxDbCount(this.influxDbClient, bucket);
+    InfluxDbCount influxDbClient =
+        new InfluxDbCount(this.influxDbClient, bucket, parameterizedQueries);
     return influxDbClient
         .count(queryBetween, "sports_event_score_update", "current", priceSource)
         .map(PriceSourceInteger::getValue);
@@ -0,0 +1,54 @@
+package com.trickl.influxdb.client;
+
+import java.time.Duration;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class StorageOptions {
+  /** The maximum number of points sent in a single write. */
+  @Builder.Default protected int maxBatchSize = 5000;
+
+  /** The maximum payload size of a single write, in bytes. */
+  @Builder.Default protected long maxBatchBytes = 5_000_000;
+
+  /** The assumed size of a point, in bytes, for measurements without a line protocol encoder. */
+  @Builder.Default protected int estimatedPointBytes = 256;
+
+  /** The maximum time a streamed point waits before its batch is written. */
+  @Builder.Default protected Duration maxBatchDelay = Duration.ofSeconds(1);
+
+  /** The maximum number of writes in flight at once, across all callers. */
+  @Builder.Default protected int maxConcurrentWrites = 4;
+
+  /** If true, the batches of a single store call are written one after another, in order. */
+  @Builder.Default protected boolean orderedWrites = false;
+
+  /** If true, small writes from all callers are merged into shared batches before writing. */
+  @Builder.Default protected boolean coalesceWrites = false;
+
+  /** If true, batch size and concurrency adapt to write latency, within the maximums above. */
+  @Builder.Default protected boolean adaptiveWrites = false;
+
+  /** The smallest batch size an adaptive write may shrink to. */
+  @Builder.Default protected int minBatchSize = 100;
+
+  /** The number of points an adaptive batch grows by after each fast write. */
+  @Builder.Default protected int batchSizeStep = 250;
+
+  /** The write latency above which adaptive writes back off. */
+  @Builder.Default protected Duration targetWriteLatency = Duration.ofSeconds(2);
+
+  /** The number of times a write is retried after a transient failure. */
+  @Builder.Default protected int maxRetries = 3;
+
+  /** The base delay before a retry, jittered by up to half either way. */
+  @Builder.Default protected Duration retryBackoff = Duration.ofMillis(500);
+
+  /** Called for each measurement the database refuses to store, once isolated from its batch. */
+  @Builder.Default protected QuarantineHandler quarantineHandler = (measurement, error) -> {};
+
+  /** How often spooled batches are replayed, when a spool is configured. */
+  @Builder.Default protected Duration spoolDrainInterval = Duration.ofSeconds(5);
+}
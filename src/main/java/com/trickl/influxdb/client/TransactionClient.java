@@ -22,6 +22,13 @@ public class TransactionClient {
 
   private final String bucket;
 
+  private final InfluxDbStorage influxDbStorage;
+
+  private final QueryCoalescer queryCoalescer;
+
+  // Sends values as query parameters, which only InfluxDB Cloud supports, rather than literals
+  private final boolean parameterizedQueries;
+
   /**
    * Stores broker transactions in the database.
    *
@@ -31,7 +38,6 @@ public class TransactionClient {
    */
   public Flux<Integer> store(
       TemporalPriceSource temporalPriceSource, List<Transaction> transactions) {
-    InfluxDbStorage influxDbStorage = new InfluxDbStorage(influxDbClient, bucket);
     TransactionWriter transformer = new TransactionWriter(temporalPriceSource);
     List<TransactionEntity> measurements =
         transactions.stream().map(transformer).collect(Collectors.toList());
@@ -48,7 +54,8 @@ public class TransactionClient {
   public Flux<Transaction> findBetween(
       TemporalPriceSource temporalPriceSource, QueryBetween queryBetween) {
     TransactionReader reader = new TransactionReader();
-    InfluxDbFindBetween influxDbClient = new InfluxDbFindBetween(this.influxDbClient, bucket);
+    InfluxDbFindBetween influxDbClient =
+        new InfluxDbFindBetween(this.influxDbClient, bucket, queryCoalescer, parameterizedQueries);
     return influxDbClient
         .findBetween(
             temporalPriceSource.getPriceSource(),
@@ -70,7 +77,7 @@ public class TransactionClient {
   public Mono<PriceSourceFieldFirstLastDuration> firstLastDuration(
       QueryBetween queryBetween, PriceSource priceSource) {
     InfluxDbFirstLastDuration influxDbClient =
-        new InfluxDbFirstLastDuration(this.influxDbClient, bucket);
+        new InfluxDbFirstLastDuration(this.influxDbClient, bucket, parameterizedQueries);
     return influxDbClient.firstLastDuration(
         queryBetween, "transaction", "price", priceSource);
   }
@@ -0,0 +1,37 @@
+package com.trickl.influxdb.client;
+
+import com.trickl.influxdb.protocol.LineProtocolEncoder;
+import com.trickl.influxdb.protocol.LineProtocolPayload;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+@Value
+@AllArgsConstructor
+public class WriteBatch<T> {
+  /** The measurements in the batch. */
+  protected List<T> measurements;
+
+  /** The measurements encoded as line protocol, or null to let the client library map them. */
+  protected LineProtocolPayload payload;
+
+  /** The encoder of the payload, or null if it can be found from the type of measurement. */
+  protected LineProtocolEncoder<T> encoder;
+
+  /**
+   * Create a batch encoded by the registered encoders for its types of measurement.
+   *
+   * @param measurements the measurements in the batch
+   * @param payload the encoded measurements, or null to let the client library map them
+   */
+  public WriteBatch(List<T> measurements, LineProtocolPayload payload) {
+    this(measurements, payload, null);
+  }
+
+  /** Return any encoded payload buffers to their pool, once the batch is no longer needed. */
+  public void release() {
+    if (payload != null) {
+      payload.release();
+    }
+  }
+}
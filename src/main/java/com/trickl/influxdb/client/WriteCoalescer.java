@@ -0,0 +1,177 @@
+package com.trickl.influxdb.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+class WriteCoalescer {
+
+  private final int maxPoints;
+
+  private final Duration maxDelay;
+
+  private final Function<List<Object>, Flux<BatchResult>> writer;
+
+  private List<Submission> pending = new ArrayList<>();
+
+  private int pendingPoints = 0;
+
+  private Disposable scheduledFlush = null;
+
+  /**
+   * Create a coalescer.
+   *
+   * @param maxPoints the number of pending points that triggers a flush
+   * @param maxDelay the longest time a submission waits before it is flushed
+   * @param writer writes a merged list of measurements, of any mix of types, in batches, with the
+   *     result of each batch
+   */
+  WriteCoalescer(
+      int maxPoints, Duration maxDelay, Function<List<Object>, Flux<BatchResult>> writer) {
+    this.maxPoints = maxPoints;
+    this.maxDelay = maxDelay;
+    this.writer = writer;
+  }
+
+  /**
+   * Queue measurements to be written with those of other submitters.
+   *
+   * <p>Cancelling the result does not withdraw the measurements once they have been queued.
+   *
+   * @param measurements the measurements to write
+   * @return the number of these measurements stored, once the merged write containing them
+   *     completes, or the error of any batch that held some of them
+   */
+  Mono<Integer> submit(List<?> measurements) {
+    return Mono.create(
+        sink -> {
+          List<Submission> ready = null;
+          synchronized (this) {
+            pending.add(new Submission(measurements, sink));
+            pendingPoints += measurements.size();
+            if (pendingPoints >= maxPoints) {
+              ready = takePending();
+            } else if (scheduledFlush == null) {
+              scheduledFlush =
+                  Schedulers.parallel()
+                      .schedule(this::flush, maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+            }
+          }
+          if (ready != null) {
+            write(ready);
+          }
+        });
+  }
+
+  /** Write everything pending now, without waiting for the flush delay. */
+  void flush() {
+    List<Submission> ready;
+    synchronized (this) {
+      ready = takePending();
+    }
+    if (!ready.isEmpty()) {
+      write(ready);
+    }
+  }
+
+  private List<Submission> takePending() {
+    List<Submission> taken = pending;
+    pending = new ArrayList<>();
+    pendingPoints = 0;
+    if (scheduledFlush != null) {
+      scheduledFlush.dispose();
+      scheduledFlush = null;
+    }
+    return taken;
+  }
+
+  private void write(List<Submission> submissions) {
+    // Each position in the merged list is owned by the submission it came from, so a measurement
+    // submitted more than once is counted against each submission separately
+    List<Object> measurements = new ArrayList<>();
+    List<Submission> owners = new ArrayList<>();
+    submissions.forEach(
+        submission -> {
+          measurements.addAll(submission.measurements);
+          owners.addAll(Collections.nCopies(submission.measurements.size(), submission));
+        });
+    writer
+        .apply(measurements)
+        .subscribe(
+            result -> {
+              result.quarantined.forEach(
+                  index -> owners.get(index).quarantined.incrementAndGet());
+              if (result.error != null) {
+                owners
+                    .subList(result.start, result.start + result.size)
+                    .forEach(owner -> owner.failed(result.error));
+              }
+            },
+            error -> submissions.forEach(submission -> submission.sink.error(error)),
+            () -> submissions.forEach(Submission::complete));
+  }
+
+  /** The outcome of writing one batch of a merged list. */
+  static class BatchResult {
+    private final int start;
+
+    private final int size;
+
+    private final List<Integer> quarantined;
+
+    private final Throwable error;
+
+    /**
+     * Create a result.
+     *
+     * @param start the index in the merged list of the first measurement in the batch
+     * @param size the number of measurements in the batch
+     * @param quarantined the indexes in the merged list of measurements that were quarantined
+     * @param error the reason the batch was not stored, or null if it was
+     */
+    BatchResult(int start, int size, List<Integer> quarantined, Throwable error) {
+      this.start = start;
+      this.size = size;
+      this.quarantined = quarantined;
+      this.error = error;
+    }
+  }
+
+  private static class Submission {
+    private final List<?> measurements;
+
+    private final MonoSink<Integer> sink;
+
+    private final AtomicInteger quarantined = new AtomicInteger();
+
+    private volatile Throwable error = null;
+
+    Submission(List<?> measurements, MonoSink<Integer> sink) {
+      this.measurements = measurements;
+      this.sink = sink;
+    }
+
+    void failed(Throwable failure) {
+      if (error == null) {
+        error = failure;
+      }
+    }
+
+    void complete() {
+      if (error != null) {
+        sink.error(error);
+      } else {
+        sink.success(measurements.size() - quarantined.get());
+      }
+    }
+  }
+}
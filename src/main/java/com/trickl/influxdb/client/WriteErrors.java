@@ -0,0 +1,87 @@
+package com.trickl.influxdb.client;
+
+import com.influxdb.exceptions.InfluxException;
+import com.trickl.influxdb.exceptions.InfluxDbWriteException;
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+class WriteErrors {
+
+  private static final int BAD_REQUEST = 400;
+
+  private static final int PAYLOAD_TOO_LARGE = 413;
+
+  private static final int UNPROCESSABLE_ENTITY = 422;
+
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  private static final int SERVICE_UNAVAILABLE = 503;
+
+  private WriteErrors() {}
+
+  /**
+   * Get the HTTP status of a failed write.
+   *
+   * @param error the write error
+   * @return the status, or 0 if the write failed without a response
+   */
+  static int status(Throwable error) {
+    if (error instanceof InfluxDbWriteException) {
+      return ((InfluxDbWriteException) error).getStatus();
+    } else if (error instanceof InfluxException) {
+      return ((InfluxException) error).status();
+    }
+    return 0;
+  }
+
+  /**
+   * Check if a write was refused because the database is overloaded.
+   *
+   * @param error the write error
+   * @return true for 429 and 503 responses
+   */
+  static boolean isOverloaded(Throwable error) {
+    int status = status(error);
+    return status == TOO_MANY_REQUESTS || status == SERVICE_UNAVAILABLE;
+  }
+
+  /**
+   * Check if a write may succeed if it is sent again unchanged.
+   *
+   * @param error the write error
+   * @return true for overload, server, connection and timeout errors
+   */
+  static boolean isTransient(Throwable error) {
+    int status = status(error);
+    if (status == TOO_MANY_REQUESTS || status >= 500) {
+      return true;
+    }
+    return status == 0 && isConnectionFailure(error);
+  }
+
+  /**
+   * Check if a write failed without a response because the database could not be reached.
+   *
+   * @param error the write error
+   * @return true if the error, or any of its causes, is an IO or timeout error
+   */
+  private static boolean isConnectionFailure(Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException || cause instanceof TimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check if a write was refused because of the content of the batch.
+   *
+   * @param error the write error
+   * @return true if some points in the batch cannot be written
+   */
+  static boolean isRejectedContent(Throwable error) {
+    int status = status(error);
+    return status == BAD_REQUEST || status == PAYLOAD_TOO_LARGE || status == UNPROCESSABLE_ENTITY;
+  }
+}
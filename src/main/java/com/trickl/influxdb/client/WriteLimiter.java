@@ -0,0 +1,150 @@
+package com.trickl.influxdb.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+public class WriteLimiter {
+
+  private final WriteMetrics metrics;
+
+  private final Deque<PendingWrite<?>> pendingWrites = new ArrayDeque<>();
+
+  private int inFlight = 0;
+
+  private int limit;
+
+  /**
+   * Create a limiter that allows a fixed number of writes in flight.
+   *
+   * @param limit the maximum number of concurrent writes
+   * @param metrics where to record queueing metrics
+   */
+  public WriteLimiter(int limit, WriteMetrics metrics) {
+    this.limit = Math.max(1, limit);
+    this.metrics = metrics;
+  }
+
+  /**
+   * Defer a write until a write slot is free.
+   *
+   * <p>Writes are started in the order they are subscribed to. Cancelling a queued write removes
+   * it from the queue without it ever being started.
+   *
+   * @param <T> the type of the write result
+   * @param write the write to perform
+   * @return the result of the write
+   */
+  public <T> Mono<T> limit(Mono<T> write) {
+    return Mono.create(
+        sink -> {
+          PendingWrite<T> pendingWrite = new PendingWrite<>(write, sink);
+          sink.onCancel(pendingWrite::cancel);
+          synchronized (this) {
+            pendingWrites.add(pendingWrite);
+          }
+          metrics.writeQueued();
+          drain();
+        });
+  }
+
+  /**
+   * Get the maximum number of concurrent writes.
+   *
+   * @return the current limit
+   */
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Change the maximum number of concurrent writes.
+   *
+   * <p>Lowering the limit does not interrupt writes already in flight.
+   *
+   * @param limit the new limit
+   */
+  public void setLimit(int limit) {
+    synchronized (this) {
+      this.limit = Math.max(1, limit);
+    }
+    drain();
+  }
+
+  private void release() {
+    synchronized (this) {
+      inFlight--;
+    }
+    metrics.writeFinished();
+    drain();
+  }
+
+  private void drain() {
+    List<PendingWrite<?>> ready = new ArrayList<>();
+    synchronized (this) {
+      while (inFlight < limit && !pendingWrites.isEmpty()) {
+        PendingWrite<?> pendingWrite = pendingWrites.poll();
+        metrics.writeDequeued(System.nanoTime() - pendingWrite.enqueuedNanos);
+        if (!pendingWrite.cancelled) {
+          inFlight++;
+          ready.add(pendingWrite);
+        }
+      }
+    }
+    ready.forEach(PendingWrite::start);
+  }
+
+  private class PendingWrite<T> {
+    private final Mono<T> write;
+
+    private final MonoSink<T> sink;
+
+    private final long enqueuedNanos = System.nanoTime();
+
+    private volatile boolean cancelled = false;
+
+    private Disposable subscription;
+
+    PendingWrite(Mono<T> write, MonoSink<T> sink) {
+      this.write = write;
+      this.sink = sink;
+    }
+
+    void start() {
+      metrics.writeStarted();
+      if (cancelled) {
+        release();
+        return;
+      }
+
+      Disposable started =
+          write
+              .doFinally(signal -> release())
+              .subscribe(sink::success, sink::error, () -> sink.success());
+
+      boolean disposeNow;
+      synchronized (this) {
+        subscription = started;
+        disposeNow = cancelled;
+      }
+      if (disposeNow) {
+        started.dispose();
+      }
+    }
+
+    void cancel() {
+      Disposable started;
+      synchronized (this) {
+        cancelled = true;
+        started = subscription;
+      }
+      if (started != null) {
+        started.dispose();
+      }
+    }
+  }
+}
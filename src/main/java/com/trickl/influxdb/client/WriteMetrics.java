@@ -0,0 +1,171 @@
+package com.trickl.influxdb.client;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WriteMetrics {
+
+  private final AtomicLong queuedWrites = new AtomicLong();
+
+  private final AtomicLong inFlightWrites = new AtomicLong();
+
+  private final AtomicLong completedWrites = new AtomicLong();
+
+  private final AtomicLong failedWrites = new AtomicLong();
+
+  private final AtomicLong pointsWritten = new AtomicLong();
+
+  private final AtomicLong queueWaitNanos = new AtomicLong();
+
+  private final AtomicLong throttledWrites = new AtomicLong();
+
+  private final AtomicLong pointsSpooled = new AtomicLong();
+
+  private final AtomicLong pointsQuarantined = new AtomicLong();
+
+  private final AtomicLong batchSize = new AtomicLong();
+
+  private final AtomicLong concurrencyLimit = new AtomicLong();
+
+  /**
+   * Get the number of writes waiting for a free write slot.
+   *
+   * @return the current queue length
+   */
+  public long getQueuedWrites() {
+    return queuedWrites.get();
+  }
+
+  /**
+   * Get the number of writes currently being sent to the database.
+   *
+   * @return the number of writes in flight
+   */
+  public long getInFlightWrites() {
+    return inFlightWrites.get();
+  }
+
+  /**
+   * Get the number of writes that have completed successfully.
+   *
+   * @return the number of successful writes
+   */
+  public long getCompletedWrites() {
+    return completedWrites.get();
+  }
+
+  /**
+   * Get the number of writes that have failed.
+   *
+   * @return the number of failed writes
+   */
+  public long getFailedWrites() {
+    return failedWrites.get();
+  }
+
+  /**
+   * Get the number of points written successfully.
+   *
+   * @return the number of points written
+   */
+  public long getPointsWritten() {
+    return pointsWritten.get();
+  }
+
+  /**
+   * Get the total time writes have spent waiting for a free write slot.
+   *
+   * @return the cumulative queue wait
+   */
+  public Duration getTotalQueueWait() {
+    return Duration.ofNanos(queueWaitNanos.get());
+  }
+
+  /**
+   * Get the number of writes rejected because the database was overloaded.
+   *
+   * @return the number of 429 and 503 responses
+   */
+  public long getThrottledWrites() {
+    return throttledWrites.get();
+  }
+
+  /**
+   * Get the number of points written to the local spool instead of the database.
+   *
+   * @return the number of points spooled
+   */
+  public long getPointsSpooled() {
+    return pointsSpooled.get();
+  }
+
+  /**
+   * Get the number of points the database refused to store.
+   *
+   * @return the number of points quarantined
+   */
+  public long getPointsQuarantined() {
+    return pointsQuarantined.get();
+  }
+
+  /**
+   * Get the number of points currently sent in a single write.
+   *
+   * @return the current batch size
+   */
+  public long getBatchSize() {
+    return batchSize.get();
+  }
+
+  /**
+   * Get the number of writes currently allowed in flight at once.
+   *
+   * @return the current concurrency limit
+   */
+  public long getConcurrencyLimit() {
+    return concurrencyLimit.get();
+  }
+
+  void writeQueued() {
+    queuedWrites.incrementAndGet();
+  }
+
+  void writeDequeued(long waitNanos) {
+    queuedWrites.decrementAndGet();
+    queueWaitNanos.addAndGet(waitNanos);
+  }
+
+  void writeStarted() {
+    inFlightWrites.incrementAndGet();
+  }
+
+  void writeFinished() {
+    inFlightWrites.decrementAndGet();
+  }
+
+  void writeCompleted(int points) {
+    completedWrites.incrementAndGet();
+    pointsWritten.addAndGet(points);
+  }
+
+  void writeFailed() {
+    failedWrites.incrementAndGet();
+  }
+
+  void writeThrottled() {
+    throttledWrites.incrementAndGet();
+  }
+
+  void writeSpooled(int points) {
+    pointsSpooled.addAndGet(points);
+  }
+
+  void pointQuarantined() {
+    pointsQuarantined.incrementAndGet();
+  }
+
+  void settingsChanged(int batchSize, int concurrencyLimit) {
+    this.batchSize.set(batchSize);
+    this.concurrencyLimit.set(concurrencyLimit);
+  }
+}
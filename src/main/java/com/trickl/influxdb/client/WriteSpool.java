@@ -0,0 +1,329 @@
+package com.trickl.influxdb.client;
+
+import com.trickl.influxdb.protocol.LineProtocolPayload;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+@Log
+public class WriteSpool {
+
+  private static final String SEGMENT_SUFFIX = ".spool";
+
+  // Each record is its length, a CRC32 of its payload, a state flag and then the payload.
+  // The length is written last, so a record torn by a crash fails its checksum on recovery.
+  private static final int HEADER_BYTES = 9;
+
+  private static final int CRC_OFFSET = 4;
+
+  private static final int STATE_OFFSET = 8;
+
+  private static final byte PENDING = 0;
+
+  private static final byte ACKNOWLEDGED = 1;
+
+  private final Path directory;
+
+  private final long maxSegmentBytes;
+
+  private final long maxSpoolBytes;
+
+  private final List<Segment> segments = new ArrayList<>();
+
+  private final Deque<SpoolRecord> pendingRecords = new ArrayDeque<>();
+
+  private long nextSequence = 0;
+
+  /**
+   * Open a spool, recovering any pending records left by a previous process.
+   *
+   * <p>Payloads are kept in memory-mapped segment files, and a segment file is deleted once every
+   * record in it has been acknowledged.
+   *
+   * @param directory where to keep segment files
+   * @param maxSegmentBytes the size of each segment file
+   * @param maxSpoolBytes the maximum total size of all segment files
+   * @throws IOException if the directory or an existing segment cannot be read
+   */
+  public WriteSpool(Path directory, long maxSegmentBytes, long maxSpoolBytes) throws IOException {
+    this.directory = directory;
+    this.maxSegmentBytes = maxSegmentBytes;
+    this.maxSpoolBytes = maxSpoolBytes;
+    Files.createDirectories(directory);
+    recover();
+  }
+
+  /**
+   * Durably add a payload to the end of the spool.
+   *
+   * @param payload the encoded batch
+   * @return true if the payload was spooled, false if the spool is full or cannot be written
+   */
+  public synchronized boolean append(LineProtocolPayload payload) {
+    int recordBytes = HEADER_BYTES + payload.length();
+    try {
+      Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      if (segment == null || segment.writePosition + recordBytes > segment.buffer.capacity()) {
+        long segmentBytes = Math.max(maxSegmentBytes, recordBytes);
+        if (getSizeBytes() + segmentBytes > maxSpoolBytes) {
+          return false;
+        }
+        if (segment != null && segment.pendingCount == 0) {
+          deleteSegment(segment);
+        }
+        segment = createSegment(segmentBytes);
+      }
+
+      CRC32 checksum = new CRC32();
+      ByteBuffer target = segment.buffer.duplicate();
+      target.position(segment.writePosition + HEADER_BYTES);
+      for (ByteBuffer source : payload.getBuffers()) {
+        checksum.update(source.duplicate());
+        target.put(source);
+      }
+      int position = segment.writePosition;
+      segment.buffer.putInt(position + CRC_OFFSET, (int) checksum.getValue());
+      segment.buffer.put(position + STATE_OFFSET, PENDING);
+      segment.buffer.putInt(position, payload.length());
+      segment.buffer.force();
+
+      segment.writePosition += recordBytes;
+      segment.pendingCount++;
+      pendingRecords.add(new SpoolRecord(segment, position, payload.length()));
+      return true;
+    } catch (IOException | RuntimeException e) {
+      log.log(Level.WARNING, "Unable to spool write", e);
+      return false;
+    }
+  }
+
+  /**
+   * Get the oldest record that has not been acknowledged.
+   *
+   * @return the oldest pending record, if any
+   */
+  public synchronized Optional<SpoolRecord> peek() {
+    return Optional.ofNullable(pendingRecords.peek());
+  }
+
+  /**
+   * Mark a record as written, so it is not replayed again.
+   *
+   * @param record a record returned by {@link #peek()}
+   */
+  public synchronized void acknowledge(SpoolRecord record) {
+    if (!pendingRecords.remove(record)) {
+      return;
+    }
+    Segment segment = record.segment;
+    segment.buffer.put(record.position + STATE_OFFSET, ACKNOWLEDGED);
+    segment.buffer.force();
+    segment.pendingCount--;
+    if (segment.pendingCount == 0 && !isActive(segment)) {
+      try {
+        deleteSegment(segment);
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Unable to delete spool segment " + segment.path, e);
+      }
+    }
+  }
+
+  /**
+   * Check if there is anything left to replay.
+   *
+   * @return true if no records are pending
+   */
+  public synchronized boolean isEmpty() {
+    return pendingRecords.isEmpty();
+  }
+
+  /**
+   * Get the number of records waiting to be replayed.
+   *
+   * @return the number of pending records
+   */
+  public synchronized int getPendingCount() {
+    return pendingRecords.size();
+  }
+
+  /**
+   * Get the space used by the spool on disk.
+   *
+   * @return the total size of all segment files, in bytes
+   */
+  public synchronized long getSizeBytes() {
+    return segments.stream().mapToLong(segment -> segment.buffer.capacity()).sum();
+  }
+
+  /** Close all segment files. Pending records are kept for the next process. */
+  public synchronized void close() {
+    for (Segment segment : segments) {
+      try {
+        segment.channel.close();
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Unable to close spool segment " + segment.path, e);
+      }
+    }
+    segments.clear();
+    pendingRecords.clear();
+  }
+
+  private void recover() throws IOException {
+    List<Path> paths;
+    try (Stream<Path> files = Files.list(directory)) {
+      paths =
+          files
+              .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+
+    for (Path path : paths) {
+      FileChannel channel =
+          FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+      Segment segment = new Segment(path, channel, buffer);
+      segments.add(segment);
+      scan(segment);
+      nextSequence = Math.max(nextSequence, parseSequence(path) + 1);
+    }
+
+    for (Segment segment : new ArrayList<>(segments)) {
+      if (segment.pendingCount == 0 && !isActive(segment)) {
+        deleteSegment(segment);
+      }
+    }
+
+    if (!pendingRecords.isEmpty()) {
+      log.info(
+          MessageFormat.format(
+              "Recovered {0} spooled writes from {1}", pendingRecords.size(), directory));
+    }
+  }
+
+  private void scan(Segment segment) {
+    MappedByteBuffer buffer = segment.buffer;
+    int position = 0;
+    while (position + HEADER_BYTES <= buffer.capacity()) {
+      int length = buffer.getInt(position);
+      if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+        break;
+      }
+
+      ByteBuffer payload = buffer.duplicate();
+      payload.position(position + HEADER_BYTES).limit(position + HEADER_BYTES + length);
+      CRC32 checksum = new CRC32();
+      checksum.update(payload);
+      if ((int) checksum.getValue() != buffer.getInt(position + CRC_OFFSET)) {
+        log.warning(
+            MessageFormat.format(
+                "Discarding torn spool record at {0} in {1}", position, segment.path));
+        break;
+      }
+
+      if (buffer.get(position + STATE_OFFSET) == PENDING) {
+        segment.pendingCount++;
+        pendingRecords.add(new SpoolRecord(segment, position, length));
+      }
+      position += HEADER_BYTES + length;
+    }
+
+    segment.writePosition = position;
+    if (position + Integer.BYTES <= buffer.capacity()) {
+      buffer.putInt(position, 0);
+      buffer.force();
+    }
+  }
+
+  private Segment createSegment(long segmentBytes) throws IOException {
+    Path path = directory.resolve(String.format("%020d%s", nextSequence++, SEGMENT_SUFFIX));
+    FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    Segment segment =
+        new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+    segments.add(segment);
+    return segment;
+  }
+
+  private boolean isActive(Segment segment) {
+    return segment == segments.get(segments.size() - 1);
+  }
+
+  private void deleteSegment(Segment segment) throws IOException {
+    segments.remove(segment);
+    segment.channel.close();
+    Files.deleteIfExists(segment.path);
+  }
+
+  private static long parseSequence(Path path) {
+    String fileName = path.getFileName().toString();
+    try {
+      return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static class Segment {
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private int writePosition = 0;
+
+    private int pendingCount = 0;
+
+    Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+      this.path = path;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+  }
+
+  public static class SpoolRecord {
+    private final Segment segment;
+
+    private final int position;
+
+    @Getter private final int length;
+
+    SpoolRecord(Segment segment, int position, int length) {
+      this.segment = segment;
+      this.position = position;
+      this.length = length;
+    }
+
+    /**
+     * Get the spooled payload, read directly from the mapped segment.
+     *
+     * @return the payload, valid until the record is acknowledged
+     */
+    public LineProtocolPayload getPayload() {
+      ByteBuffer payload = segment.buffer.duplicate();
+      payload.position(position + HEADER_BYTES).limit(position + HEADER_BYTES + length);
+      return LineProtocolPayload.wrap(payload.slice());
+    }
+  }
+}
@@ -4,20 +4,35 @@ import com.influxdb.client.reactive.InfluxDBClientReactive;
 import com.influxdb.client.reactive.InfluxDBClientReactiveFactory;
 import com.trickl.influxdb.client.AnalyticPrimitiveValueClient;
 import com.trickl.influxdb.client.BrokerOrderClient;
+import com.trickl.influxdb.client.CachingInfluxDbFindBetween;
+import com.trickl.influxdb.client.CandleBuilder;
 import com.trickl.influxdb.client.CandleClient;
 import com.trickl.influxdb.client.CandleStreamClient;
+import com.trickl.influxdb.client.InfluxDbFindBetween;
+import com.trickl.influxdb.client.InfluxDbHttpWriter;
+import com.trickl.influxdb.client.InfluxDbStorage;
 import com.trickl.influxdb.client.InstrumentEventClient;
+import com.trickl.influxdb.client.LruQueryResultCache;
 import com.trickl.influxdb.client.MarketStateChangeClient;
 import com.trickl.influxdb.client.OrderBookClient;
+import com.trickl.influxdb.client.OrderBookOptions;
+import com.trickl.influxdb.client.OrderBookSchema;
 import com.trickl.influxdb.client.OrderClient;
+import com.trickl.influxdb.client.QueryCoalescer;
 import com.trickl.influxdb.client.SportsEventIncidentClient;
 import com.trickl.influxdb.client.SportsEventMatchTimeUpdateClient;
 import com.trickl.influxdb.client.SportsEventOutcomeUpdateClient;
 import com.trickl.influxdb.client.SportsEventPeriodUpdateClient;
 import com.trickl.influxdb.client.SportsEventScoreUpdateClient;
+import com.trickl.influxdb.client.StorageOptions;
 import com.trickl.influxdb.client.TransactionClient;
+import com.trickl.influxdb.client.WriteSpool;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -37,69 +52,253 @@ public class InfluxDbConfiguration {
   @Value("${influx-db.database:prices}")
   private String bucket;
 
+  @Value("${influx-db.write.max-batch-size:5000}")
+  private int maxBatchSize;
+
+  @Value("${influx-db.write.max-batch-delay:PT1S}")
+  private Duration maxBatchDelay;
+
+  @Value("${influx-db.write.max-concurrent-writes:4}")
+  private int maxConcurrentWrites;
+
+  @Value("${influx-db.write.ordered:false}")
+  private boolean orderedWrites;
+
+  @Value("${influx-db.write.coalesce:false}")
+  private boolean coalesceWrites;
+
+  @Value("${influx-db.write.adaptive:false}")
+  private boolean adaptiveWrites;
+
+  @Value("${influx-db.write.target-latency:PT2S}")
+  private Duration targetWriteLatency;
+
+  @Value("${influx-db.write.direct:false}")
+  private boolean directWrites;
+
+  @Value("${influx-db.write.connect-timeout:PT10S}")
+  private Duration writeConnectTimeout;
+
+  @Value("${influx-db.write.request-timeout:PT30S}")
+  private Duration writeRequestTimeout;
+
+  @Value("${influx-db.write.gzip:true}")
+  private boolean gzipWrites;
+
+  @Value("${influx-db.order-book.write-schema:LEVELS}")
+  private OrderBookSchema orderBookWriteSchema;
+
+  @Value("${influx-db.order-book.read-schema:LEVELS}")
+  private OrderBookSchema orderBookReadSchema;
+
+  @Value("${influx-db.order-book.write-top-of-book:false}")
+  private boolean writeTopOfBook;
+
+  @Value("${influx-db.order-book.read-top-of-book:false}")
+  private boolean readTopOfBook;
+
+  @Value("${influx-db.order-book.delta:false}")
+  private boolean orderBookDeltas;
+
+  @Value("${influx-db.order-book.keyframe-interval:PT1M}")
+  private Duration orderBookKeyframeInterval;
+
+  @Value("${influx-db.candles.enabled:false}")
+  private boolean buildCandles;
+
+  @Value("${influx-db.candles.widths:PT1M,PT5M,PT1H}")
+  private List<Duration> candleWidths;
+
+  @Value("${influx-db.candles.watermark:PT5S}")
+  private Duration candleWatermark;
+
+  @Value("${influx-db.spool.directory:}")
+  private String spoolDirectory;
+
+  @Value("${influx-db.spool.segment-bytes:67108864}")
+  private long spoolSegmentBytes;
+
+  @Value("${influx-db.spool.max-bytes:1073741824}")
+  private long spoolMaxBytes;
+
+  @Value("${influx-db.spool.drain-interval:PT5S}")
+  private Duration spoolDrainInterval;
+
+  @Value("${influx-db.query.parameterized:false}")
+  private boolean parameterizedQueries;
+
+  @Value("${influx-db.query.coalesce:true}")
+  private boolean coalesceQueries;
+
+  @Value("${influx-db.query-cache.enabled:false}")
+  private boolean cacheQueries;
+
+  @Value("${influx-db.query-cache.segment-width:PT1H}")
+  private Duration querySegmentWidth;
+
+  @Value("${influx-db.query-cache.settle-delay:PT5M}")
+  private Duration querySettleDelay;
+
+  @Value("${influx-db.query-cache.max-points:1000000}")
+  private long queryCacheMaxPoints;
+
   @Bean
   InfluxDBClientReactive influxDbClient() {
     return InfluxDBClientReactiveFactory.create(url, token.toCharArray(), org, bucket);
   }
 
+  @Bean
+  InfluxDbStorage influxDbStorage() {
+    return new InfluxDbStorage(
+        influxDbClient(),
+        bucket,
+        StorageOptions.builder()
+            .maxBatchSize(maxBatchSize)
+            .maxBatchDelay(maxBatchDelay)
+            .maxConcurrentWrites(maxConcurrentWrites)
+            .orderedWrites(orderedWrites)
+            .coalesceWrites(coalesceWrites)
+            .adaptiveWrites(adaptiveWrites)
+            .targetWriteLatency(targetWriteLatency)
+            .spoolDrainInterval(spoolDrainInterval)
+            .build(),
+        directWrites ? httpWriter() : null,
+        writeSpool());
+  }
+
+  private InfluxDbHttpWriter httpWriter() {
+    return new InfluxDbHttpWriter(
+        url, token, org, bucket, gzipWrites, writeConnectTimeout, writeRequestTimeout);
+  }
+
+  private WriteSpool writeSpool() {
+    if (spoolDirectory.isEmpty()) {
+      return null;
+    }
+    try {
+      return new WriteSpool(Paths.get(spoolDirectory), spoolSegmentBytes, spoolMaxBytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open write spool in " + spoolDirectory, e);
+    }
+  }
+
+  @Bean
+  QueryCoalescer influxDbQueryCoalescer() {
+    return new QueryCoalescer();
+  }
+
+  private QueryCoalescer queryCoalescer() {
+    return coalesceQueries ? influxDbQueryCoalescer() : null;
+  }
+
+  @Bean
+  InfluxDbFindBetween influxDbFindBetween() {
+    if (!cacheQueries) {
+      return new InfluxDbFindBetween(
+          influxDbClient(), bucket, queryCoalescer(), parameterizedQueries);
+    }
+    return new CachingInfluxDbFindBetween(
+        influxDbClient(),
+        bucket,
+        queryCoalescer(),
+        parameterizedQueries,
+        new LruQueryResultCache(queryCacheMaxPoints),
+        querySegmentWidth,
+        querySettleDelay,
+        Instant::now);
+  }
+
   @Bean
   CandleClient influxDbCandleClient() {
-    return new CandleClient(influxDbClient(), bucket, org);
+    return new CandleClient(
+        influxDbClient(),
+        bucket,
+        org,
+        influxDbStorage(),
+        readTopOfBook,
+        influxDbFindBetween(),
+        parameterizedQueries);
   }
 
   @Bean
   OrderClient influxDbOrderClient() {
-    return new OrderClient(influxDbClient(), bucket);
+    return new OrderClient(
+        influxDbClient(), bucket, influxDbStorage(), queryCoalescer(), parameterizedQueries);
   }
 
   @Bean
   OrderBookClient influxDbOrderBookClient() {
-    return new OrderBookClient(influxDbOrderClient());
+    return new OrderBookClient(
+        influxDbOrderClient(),
+        influxDbStorage(),
+        OrderBookOptions.builder()
+            .writeSchema(orderBookWriteSchema)
+            .readSchema(orderBookReadSchema)
+            .writeTopOfBook(writeTopOfBook)
+            .readTopOfBook(readTopOfBook)
+            .deltaEncoding(orderBookDeltas)
+            .keyframeInterval(orderBookKeyframeInterval)
+            .build(),
+        buildCandles ? influxDbCandleBuilder() : null);
+  }
+
+  @Bean
+  CandleBuilder influxDbCandleBuilder() {
+    return new CandleBuilder(influxDbCandleClient(), candleWidths, candleWatermark);
   }
 
   @Bean
   MarketStateChangeClient influxDbMarketStateChangeClient() {
-    return new MarketStateChangeClient(influxDbClient(), bucket);
+    return new MarketStateChangeClient(
+        influxDbClient(), bucket, influxDbStorage(), queryCoalescer(), parameterizedQueries);
   }
 
   @Bean
   SportsEventOutcomeUpdateClient influxDbSportsEventOutcomeUpdateClient() {
-    return new SportsEventOutcomeUpdateClient(influxDbClient(), bucket);
+    return new SportsEventOutcomeUpdateClient(
+        influxDbClient(), bucket, influxDbStorage(), queryCoalescer(), parameterizedQueries);
   }
 
   @Bean
   SportsEventScoreUpdateClient influxDbSportsEventScoreUpdateClient() {
-    return new SportsEventScoreUpdateClient(influxDbClient(), bucket, org);
+    return new SportsEventScoreUpdateClient(
+        influxDbClient(), bucket, org, influxDbStorage(), queryCoalescer(), parameterizedQueries);
   }
 
   @Bean
   SportsEventPeriodUpdateClient influxDbSportsEventPeriodUpdateClient() {
-    return new SportsEventPeriodUpdateClient(influxDbClient(), bucket);
+    return new SportsEventPeriodUpdateClient(
+        influxDbClient(), bucket, influxDbStorage(), queryCoalescer(), parameterizedQueries);
   }
 
   @Bean
   SportsEventMatchTimeUpdateClient influxDbSportsEventMatchTimeUpdateClient() {
-    return new SportsEventMatchTimeUpdateClient(influxDbClient(), bucket, org);
+    return new SportsEventMatchTimeUpdateClient(
+        influxDbClient(), bucket, org, influxDbStorage(), queryCoalescer(), parameterizedQueries);
   }
 
   @Bean
   SportsEventIncidentClient influxDbSportsEventIncidentClient() {
-    return new SportsEventIncidentClient(influxDbClient(), bucket, org);
+    return new SportsEventIncidentClient(
+        influxDbClient(), bucket, org, influxDbStorage(), queryCoalescer(), parameterizedQueries);
   }
 
   @Bean
   AnalyticPrimitiveValueClient influxDbAnalyticPrimitiveValueClient() {
-    return new AnalyticPrimitiveValueClient(influxDbClient(), bucket);
+    return new AnalyticPrimitiveValueClient(
+        influxDbClient(), bucket, influxDbStorage(), influxDbFindBetween(), parameterizedQueries);
   }
 
   @Bean
   BrokerOrderClient influxDbBrokerOrderClient() {
-    return new BrokerOrderClient(influxDbClient(), bucket);
+    return new BrokerOrderClient(
+        influxDbClient(), bucket, influxDbStorage(), queryCoalescer(), parameterizedQueries);
   }
 
   @Bean
   TransactionClient influxDbTransactionClient() {
-    return new TransactionClient(influxDbClient(), bucket);
+    return new TransactionClient(
+        influxDbClient(), bucket, influxDbStorage(), queryCoalescer(), parameterizedQueries);
   }
 
   @Bean
@@ -110,7 +309,8 @@ public class InfluxDbConfiguration {
         influxDbSportsEventOutcomeUpdateClient(),
         influxDbSportsEventScoreUpdateClient(),
         influxDbSportsEventPeriodUpdateClient(),
-        influxDbSportsEventMatchTimeUpdateClient());
+        influxDbSportsEventMatchTimeUpdateClient(),
+        influxDbStorage());
   }
 
   @Bean
@@ -0,0 +1,22 @@
+package com.trickl.influxdb.exceptions;
+
+import lombok.Getter;
+
+public class InfluxDbWriteException extends RuntimeException {
+
+  private static final long serialVersionUID = 4127350984367012398L;
+
+  /** The HTTP status returned by the database. */
+  @Getter private final int status;
+
+  /**
+   * Construct a {@link InfluxDbWriteException} for a rejected write.
+   *
+   * @param status the HTTP status returned by the database
+   * @param msg the message
+   */
+  public InfluxDbWriteException(int status, String msg) {
+    super(msg);
+    this.status = status;
+  }
+}
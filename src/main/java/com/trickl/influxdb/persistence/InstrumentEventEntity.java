@@ -0,0 +1,12 @@
+package com.trickl.influxdb.persistence;
+
+import java.time.Instant;
+
+public interface InstrumentEventEntity {
+  /**
+   * Get the time of the event.
+   *
+   * @return the event time
+   */
+  Instant getTime();
+}
@@ -16,7 +16,7 @@ import lombok.ToString;
 @AllArgsConstructor
 @NoArgsConstructor
 @ToString
-public class MarketStateChangeEntity {
+public class MarketStateChangeEntity implements InstrumentEventEntity {
   @NotNull
   @Column(name = "time", timestamp = true)
   private Instant time;
@@ -17,7 +17,7 @@ import lombok.ToString;
 @AllArgsConstructor
 @NoArgsConstructor
 @ToString
-public class OhlcvBarEntity {
+public class OhlcvBarEntity implements PriceSourceEntity {
   @NotNull
   @Column(name = "time", timestamp = true)
   private Instant time;
@@ -0,0 +1,54 @@
+package com.trickl.influxdb.persistence;
+
+public class OrderBookFields {
+  public static final String MEASUREMENT = "order_book";
+
+  private static final String BID = "b";
+  private static final String ASK = "a";
+  private static final String PRICE = "p";
+  private static final String VOLUME = "v";
+
+  private static final int CACHED_DEPTHS = 64;
+
+  private static final String[] BID_PRICES = names(BID, PRICE);
+  private static final String[] BID_VOLUMES = names(BID, VOLUME);
+  private static final String[] ASK_PRICES = names(ASK, PRICE);
+  private static final String[] ASK_VOLUMES = names(ASK, VOLUME);
+
+  private OrderBookFields() {
+  }
+
+  /**
+   * Get the name of the field holding a price, e.g. b0p for the best bid.
+   *
+   * @param isBid true for a bid, false for an ask
+   * @param depth the level in the book, from zero
+   * @return the field name
+   */
+  public static String price(boolean isBid, int depth) {
+    return name(isBid ? BID_PRICES : ASK_PRICES, isBid ? BID : ASK, depth, PRICE);
+  }
+
+  /**
+   * Get the name of the field holding a volume, e.g. a0v for the best ask.
+   *
+   * @param isBid true for a bid, false for an ask
+   * @param depth the level in the book, from zero
+   * @return the field name
+   */
+  public static String volume(boolean isBid, int depth) {
+    return name(isBid ? BID_VOLUMES : ASK_VOLUMES, isBid ? BID : ASK, depth, VOLUME);
+  }
+
+  private static String name(String[] cached, String side, int depth, String suffix) {
+    return depth < cached.length ? cached[depth] : side + depth + suffix;
+  }
+
+  private static String[] names(String side, String suffix) {
+    String[] names = new String[CACHED_DEPTHS];
+    for (int depth = 0; depth < CACHED_DEPTHS; depth++) {
+      names[depth] = side + depth + suffix;
+    }
+    return names;
+  }
+}
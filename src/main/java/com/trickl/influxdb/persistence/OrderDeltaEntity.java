@@ -0,0 +1,52 @@
+package com.trickl.influxdb.persistence;
+
+import com.influxdb.annotations.Column;
+import com.influxdb.annotations.Measurement;
+import jakarta.validation.constraints.NotNull;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Measurement(name = "order_delta")
+@Builder
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class OrderDeltaEntity {
+  @NotNull
+  @Column(name = "time", timestamp = true)
+  private Instant time;
+
+  @NotNull
+  @Column(name = "instrumentId", tag = true)
+  private String instrumentId;
+
+  @NotNull
+  @Column(name = "exchangeId", tag = true)
+  private String exchangeId;
+
+  @Column(name = "bidOrAsk", tag = true)
+  protected String bidOrAsk;
+
+  @Column(name = "depth", tag = true)
+  protected String depth;
+
+  @Column(name = "price")
+  protected Double price;
+
+  /** The amount of liquidity. */
+  @Column(name = "volume")
+  protected Long volume;
+
+  /** True if this level, and every deeper level, is no longer in the book. */
+  @Column(name = "removed")
+  protected Boolean removed;
+
+  /** True if no level changed, so this only marks the time of a book. */
+  @Column(name = "unchanged")
+  protected Boolean unchanged;
+}
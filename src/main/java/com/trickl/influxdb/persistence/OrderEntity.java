@@ -17,7 +17,7 @@ import lombok.ToString;
 @AllArgsConstructor
 @NoArgsConstructor
 @ToString
-public class OrderEntity {
+public class OrderEntity implements PriceSourceEntity {
   @NotNull
   @Column(name = "time", timestamp = true)
   private Instant time;
@@ -0,0 +1,26 @@
+package com.trickl.influxdb.persistence;
+
+import java.time.Instant;
+
+public interface PriceSourceEntity {
+  /**
+   * Get the time of the measurement.
+   *
+   * @return the time
+   */
+  Instant getTime();
+
+  /**
+   * Get the exchange of the instrument.
+   *
+   * @return the exchange identifier
+   */
+  String getExchangeId();
+
+  /**
+   * Get the instrument.
+   *
+   * @return the instrument identifier
+   */
+  String getInstrumentId();
+}
@@ -16,7 +16,7 @@ import lombok.ToString;
 @AllArgsConstructor
 @NoArgsConstructor
 @ToString
-public class SportsEventIncidentEntity {
+public class SportsEventIncidentEntity implements InstrumentEventEntity {
   @NotNull
   @Column(name = "time", timestamp = true)
   private Instant time;
@@ -0,0 +1,28 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.AnalyticPrimitiveValueEntity;
+import java.util.function.BiConsumer;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class AnalyticPrimitiveValueEntityEncoder<T extends AnalyticPrimitiveValueEntity>
+    implements LineProtocolEncoder<T> {
+
+  private final String measurementName;
+
+  private final BiConsumer<T, LineProtocolWriter> valueWriter;
+
+  @Override
+  public int encode(T value, LineProtocolWriter writer) {
+    writer
+        .measurement(measurementName)
+        .tag("analyticName", value.getAnalyticName())
+        .tag("domain", value.getDomain())
+        .tag("exchangeId", value.getExchangeId())
+        .tag("instrumentId", value.getInstrumentId())
+        .tag("parameters", value.getParameters())
+        .tag("temporalSource", value.getTemporalSource());
+    valueWriter.accept(value, writer);
+    return writer.timestamp(value.getTime()) ? 1 : 0;
+  }
+}
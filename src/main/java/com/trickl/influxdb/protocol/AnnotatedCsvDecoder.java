@@ -0,0 +1,66 @@
+package com.trickl.influxdb.protocol;
+
+import com.influxdb.exceptions.InfluxException;
+import java.util.function.Function;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+
+public class AnnotatedCsvDecoder {
+  /**
+   * Decode a raw annotated CSV query response, line by line, into measurements.
+   *
+   * <p>Each table header compiles a row mapper, so data rows are read straight from the line by
+   * column index, without building a record or map per row. Annotation rows are skipped, and an
+   * error table is surfaced as an error. Values spanning more than one line are not supported.
+   *
+   * @param <T> the type of measurement
+   * @param lines the lines of the response, as returned by a raw query
+   * @param mapper maps rows onto the type of measurement
+   * @return the measurements, in response order
+   */
+  public static <T> Flux<T> decode(Publisher<String> lines, AnnotatedCsvRowMapper<T> mapper) {
+    return Flux.defer(
+        () -> {
+          DecodeState<T> state = new DecodeState<>(mapper);
+          return Flux.from(lines).<T>handle(state::accept);
+        });
+  }
+
+  private static class DecodeState<T> {
+    private final AnnotatedCsvRowMapper<T> mapper;
+
+    private final AnnotatedCsvRow row = new AnnotatedCsvRow();
+
+    private Function<AnnotatedCsvRow, T> rowMapper = null;
+
+    private int errorIndex = -1;
+
+    DecodeState(AnnotatedCsvRowMapper<T> mapper) {
+      this.mapper = mapper;
+    }
+
+    void accept(String line, SynchronousSink<T> sink) {
+      if (line.isEmpty() || line.charAt(0) == '#') {
+        // Annotations and blank lines come before the header of a new table
+        rowMapper = null;
+        errorIndex = -1;
+        return;
+      }
+
+      row.read(line);
+      if (errorIndex >= 0) {
+        sink.error(new InfluxException(row.getString(errorIndex)));
+      } else if (rowMapper == null) {
+        AnnotatedCsvRow header = new AnnotatedCsvRow().read(line);
+        if (header.indexOf("_time") < 0 && header.indexOf("error") >= 0) {
+          errorIndex = header.indexOf("error");
+        } else {
+          rowMapper = mapper.compile(header);
+        }
+      } else {
+        sink.next(rowMapper.apply(row));
+      }
+    }
+  }
+}
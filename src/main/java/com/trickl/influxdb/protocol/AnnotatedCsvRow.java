@@ -0,0 +1,212 @@
+package com.trickl.influxdb.protocol;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+public class AnnotatedCsvRow {
+
+  private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+  private String line = "";
+
+  private int[] starts = new int[16];
+
+  private int[] ends = new int[16];
+
+  private boolean[] quoted = new boolean[16];
+
+  private int size = 0;
+
+  /**
+   * Split a line of the response into columns, without copying any values.
+   *
+   * <p>The row is reused for each line, so values must be read before the next line.
+   *
+   * @param line a line of annotated CSV
+   * @return this row
+   */
+  public AnnotatedCsvRow read(String line) {
+    this.line = line;
+    size = 0;
+    int position = 0;
+    int length = line.length();
+    while (true) {
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, size * 2);
+        ends = Arrays.copyOf(ends, size * 2);
+        quoted = Arrays.copyOf(quoted, size * 2);
+      }
+
+      if (position < length && line.charAt(position) == '"') {
+        int end = position + 1;
+        while (end < length) {
+          if (line.charAt(end) == '"') {
+            if (end + 1 < length && line.charAt(end + 1) == '"') {
+              end += 2;
+              continue;
+            }
+            break;
+          }
+          end++;
+        }
+        starts[size] = position + 1;
+        ends[size] = Math.min(end, length);
+        quoted[size++] = true;
+        position = line.indexOf(',', end);
+      } else {
+        int end = line.indexOf(',', position);
+        starts[size] = position;
+        ends[size] = end < 0 ? length : end;
+        quoted[size++] = false;
+        position = end;
+      }
+
+      if (position < 0) {
+        return this;
+      }
+      position++;
+    }
+  }
+
+  /**
+   * Get the number of columns.
+   *
+   * @return the number of columns in the row
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Find a column of a header row by name.
+   *
+   * @param column the column name
+   * @return the index of the column, or -1 if there is no such column
+   */
+  public int indexOf(String column) {
+    for (int i = 0; i < size; i++) {
+      if (ends[i] - starts[i] == column.length()
+          && line.regionMatches(starts[i], column, 0, column.length())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Check if a value is missing.
+   *
+   * @param index the column index
+   * @return true if there is no such column or the value is empty
+   */
+  public boolean isEmpty(int index) {
+    return index < 0 || index >= size || starts[index] >= ends[index];
+  }
+
+  /**
+   * Read a string value.
+   *
+   * @param index the column index
+   * @return the value, or null if it is empty
+   */
+  public String getString(int index) {
+    if (isEmpty(index)) {
+      return null;
+    }
+    String value = line.substring(starts[index], ends[index]);
+    return quoted[index] ? value.replace("\"\"", "\"") : value;
+  }
+
+  /**
+   * Read a float value.
+   *
+   * @param index the column index
+   * @return the value, or null if it is empty
+   */
+  public Double getDouble(int index) {
+    if (isEmpty(index)) {
+      return null;
+    }
+    return Double.parseDouble(line.substring(starts[index], ends[index]));
+  }
+
+  /**
+   * Read an integer value.
+   *
+   * @param index the column index
+   * @return the value, or null if it is empty
+   */
+  public Long getLong(int index) {
+    if (isEmpty(index)) {
+      return null;
+    }
+    return parseLong(starts[index], ends[index]);
+  }
+
+  /**
+   * Read an RFC3339 time value, such as the _time column.
+   *
+   * @param index the column index
+   * @return the value, or null if it is empty
+   */
+  public Instant getTime(int index) {
+    if (isEmpty(index)) {
+      return null;
+    }
+
+    int start = starts[index];
+    int end = ends[index];
+    if (end - start < 20
+        || line.charAt(start + 4) != '-'
+        || line.charAt(start + 10) != 'T'
+        || line.charAt(end - 1) != 'Z') {
+      return Instant.parse(line.substring(start, end));
+    }
+
+    long epochDay =
+        LocalDate.of(
+                (int) parseLong(start, start + 4),
+                (int) parseLong(start + 5, start + 7),
+                (int) parseLong(start + 8, start + 10))
+            .toEpochDay();
+    long seconds =
+        epochDay * SECONDS_PER_DAY
+            + parseLong(start + 11, start + 13) * 3600
+            + parseLong(start + 14, start + 16) * 60
+            + parseLong(start + 17, start + 19);
+    int nanos = 0;
+    if (line.charAt(start + 19) == '.') {
+      int digits = 0;
+      for (int i = start + 20; i < end - 1; i++, digits++) {
+        nanos = nanos * 10 + digit(i);
+      }
+      for (; digits < 9; digits++) {
+        nanos *= 10;
+      }
+    }
+    return Instant.ofEpochSecond(seconds, nanos);
+  }
+
+  @Override
+  public String toString() {
+    return line;
+  }
+
+  private long parseLong(int start, int end) {
+    boolean negative = line.charAt(start) == '-';
+    long value = 0;
+    for (int i = negative ? start + 1 : start; i < end; i++) {
+      value = value * 10 + digit(i);
+    }
+    return negative ? -value : value;
+  }
+
+  private int digit(int index) {
+    char c = line.charAt(index);
+    if (c < '0' || c > '9') {
+      throw new NumberFormatException("Not a digit at " + index + " of " + line);
+    }
+    return c - '0';
+  }
+}
@@ -0,0 +1,13 @@
+package com.trickl.influxdb.protocol;
+
+import java.util.function.Function;
+
+public interface AnnotatedCsvRowMapper<T> {
+  /**
+   * Compile a mapper for the columns of a table, looking up each column index once.
+   *
+   * @param header the header row of the table
+   * @return reads a measurement from each data row of the table
+   */
+  Function<AnnotatedCsvRow, T> compile(AnnotatedCsvRow header);
+}
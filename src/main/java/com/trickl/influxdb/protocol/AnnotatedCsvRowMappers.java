@@ -0,0 +1,26 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.OhlcvBarEntity;
+import com.trickl.influxdb.persistence.OrderEntity;
+import java.util.Map;
+import java.util.Optional;
+
+public class AnnotatedCsvRowMappers {
+
+  private static final Map<Class<?>, AnnotatedCsvRowMapper<?>> MAPPERS =
+      Map.ofEntries(
+          Map.entry(OrderEntity.class, new OrderEntityRowMapper()),
+          Map.entry(OhlcvBarEntity.class, new OhlcvBarEntityRowMapper()));
+
+  /**
+   * Find the annotated CSV row mapper for a type of measurement.
+   *
+   * @param <T> the type of measurement
+   * @param measurementClazz the type of measurement
+   * @return the mapper, or empty if the type must be mapped by the client library
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Optional<AnnotatedCsvRowMapper<T>> find(Class<T> measurementClazz) {
+    return Optional.ofNullable((AnnotatedCsvRowMapper<T>) MAPPERS.get(measurementClazz));
+  }
+}
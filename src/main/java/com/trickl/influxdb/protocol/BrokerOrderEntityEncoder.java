@@ -0,0 +1,27 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.BrokerOrderEntity;
+
+public class BrokerOrderEntityEncoder implements LineProtocolEncoder<BrokerOrderEntity> {
+  @Override
+  public int encode(BrokerOrderEntity order, LineProtocolWriter writer) {
+    writer
+        .measurement("broker_order")
+        .tag("bidOrAsk", order.getBidOrAsk())
+        .tag("exchangeId", order.getExchangeId())
+        .tag("instrumentId", order.getInstrumentId())
+        .tag("simulationId", order.getSimulationId())
+        .stringField("brokerId", order.getBrokerId())
+        .stringField("clientReference", order.getClientReference())
+        .stringField("createdAtTime", order.getCreatedAtTime())
+        .doubleField("price", order.getPrice())
+        .doubleField("quantityFilled", order.getQuantityFilled())
+        .doubleField("quantityUnfilled", order.getQuantityUnfilled())
+        .stringField("reason", order.getReason())
+        .stringField("state", order.getState())
+        .stringField("timeInForce", order.getTimeInForce())
+        .stringField("type", order.getType())
+        .longField("volume", order.getVolume());
+    return writer.timestamp(order.getTime()) ? 1 : 0;
+  }
+}
@@ -0,0 +1,73 @@
+package com.trickl.influxdb.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ByteBufferPool {
+
+  private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger pooledCount = new AtomicInteger();
+
+  private final int bufferSize;
+
+  private final int maxPooled;
+
+  /** Create a pool of 64KiB buffers. */
+  public ByteBufferPool() {
+    this(64 * 1024, 256);
+  }
+
+  /**
+   * Create a pool.
+   *
+   * @param bufferSize the capacity of each buffer, in bytes
+   * @param maxPooled the maximum number of idle buffers retained for reuse
+   */
+  public ByteBufferPool(int bufferSize, int maxPooled) {
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+  }
+
+  /**
+   * Take an empty direct buffer from the pool, allocating one if none are idle.
+   *
+   * @return a buffer ready for writing
+   */
+  public ByteBuffer acquire() {
+    ByteBuffer buffer = buffers.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocateDirect(bufferSize);
+    }
+    pooledCount.decrementAndGet();
+    return buffer;
+  }
+
+  /**
+   * Return a buffer to the pool. The buffer must not be used by the caller afterwards.
+   *
+   * @param buffer a buffer previously acquired from this pool
+   */
+  public void release(ByteBuffer buffer) {
+    if (!buffer.isDirect() || buffer.capacity() != bufferSize) {
+      return;
+    }
+    if (pooledCount.incrementAndGet() > maxPooled) {
+      pooledCount.decrementAndGet();
+      return;
+    }
+    buffer.clear();
+    buffers.offer(buffer);
+  }
+
+  /**
+   * Get the number of idle buffers held for reuse.
+   *
+   * @return the number of pooled buffers
+   */
+  public int getPooledCount() {
+    return pooledCount.get();
+  }
+}
@@ -0,0 +1,86 @@
+package com.trickl.influxdb.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import reactor.core.publisher.Flux;
+
+public class GzipCompressor {
+
+  private static final byte[] GZIP_HEADER = {
+    0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+
+  private static final int GZIP_TRAILER_LENGTH = 8;
+
+  /**
+   * Gzip a sequence of buffers, one output buffer at a time.
+   *
+   * <p>Input is compressed lazily, as output buffers are requested. Output buffers are taken from
+   * the pool, and are not returned to it. The compressed body is only held in full if the caller
+   * keeps every buffer, so it should release each one as soon as it has been sent.
+   *
+   * @param input the buffers to compress, ready for reading
+   * @param pool where to take output buffers from
+   * @return the compressed stream, as buffers ready for reading
+   */
+  public static Flux<ByteBuffer> compress(List<ByteBuffer> input, ByteBufferPool pool) {
+    return Flux.generate(
+        () -> new CompressState(input.iterator()),
+        (state, sink) -> {
+          ByteBuffer output = pool.acquire();
+          if (!state.headerWritten) {
+            output.put(GZIP_HEADER);
+            state.headerWritten = true;
+          }
+
+          Deflater deflater = state.deflater;
+          while (output.hasRemaining() && !deflater.finished()) {
+            if (deflater.needsInput()) {
+              if (state.input.hasNext()) {
+                ByteBuffer next = state.input.next();
+                state.checksum.update(next.duplicate());
+                deflater.setInput(next);
+              } else {
+                deflater.finish();
+              }
+            }
+            deflater.deflate(output);
+          }
+
+          if (deflater.finished() && output.remaining() >= GZIP_TRAILER_LENGTH) {
+            putIntLittleEndian(output, (int) state.checksum.getValue());
+            putIntLittleEndian(output, (int) deflater.getBytesRead());
+            sink.next(output.flip());
+            sink.complete();
+          } else {
+            sink.next(output.flip());
+          }
+          return state;
+        },
+        state -> state.deflater.end());
+  }
+
+  private static void putIntLittleEndian(ByteBuffer buffer, int value) {
+    buffer.put((byte) value);
+    buffer.put((byte) (value >> 8));
+    buffer.put((byte) (value >> 16));
+    buffer.put((byte) (value >> 24));
+  }
+
+  private static class CompressState {
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+
+    private final CRC32 checksum = new CRC32();
+
+    private final Iterator<ByteBuffer> input;
+
+    private boolean headerWritten = false;
+
+    CompressState(Iterator<ByteBuffer> input) {
+      this.input = input;
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package com.trickl.influxdb.protocol;
+
+public interface LineProtocolEncoder<T> {
+  /**
+   * Write a measurement as line protocol.
+   *
+   * @param measurement the measurement to encode
+   * @param writer where to write the encoded points
+   * @return the number of points written
+   */
+  int encode(T measurement, LineProtocolWriter writer);
+}
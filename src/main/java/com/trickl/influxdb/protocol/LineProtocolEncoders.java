@@ -0,0 +1,128 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.AnalyticBooleanValueEntity;
+import com.trickl.influxdb.persistence.AnalyticDoubleValueEntity;
+import com.trickl.influxdb.persistence.AnalyticIntegerValueEntity;
+import com.trickl.influxdb.persistence.AnalyticStringValueEntity;
+import com.trickl.influxdb.persistence.BrokerOrderEntity;
+import com.trickl.influxdb.persistence.MarketStateChangeEntity;
+import com.trickl.influxdb.persistence.OhlcvBarEntity;
+import com.trickl.influxdb.persistence.OrderEntity;
+import com.trickl.influxdb.persistence.SportsEventIncidentEntity;
+import com.trickl.influxdb.persistence.SportsEventMatchTimeUpdateEntity;
+import com.trickl.influxdb.persistence.SportsEventOutcomeUpdateEntity;
+import com.trickl.influxdb.persistence.SportsEventPeriodUpdateEntity;
+import com.trickl.influxdb.persistence.SportsEventScoreUpdateEntity;
+import com.trickl.influxdb.persistence.TransactionEntity;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+public class LineProtocolEncoders {
+
+  private static final ThreadLocal<LineProtocolWriter> SERIES_KEY_WRITER =
+      ThreadLocal.withInitial(() -> new LineProtocolWriter(new ByteBufferPool(1024, 4)));
+
+  private static final Map<Class<?>, LineProtocolEncoder<?>> ENCODERS =
+      Map.ofEntries(
+          Map.entry(OrderEntity.class, new OrderEntityEncoder()),
+          Map.entry(OhlcvBarEntity.class, new OhlcvBarEntityEncoder()),
+          Map.entry(BrokerOrderEntity.class, new BrokerOrderEntityEncoder()),
+          Map.entry(TransactionEntity.class, new TransactionEntityEncoder()),
+          Map.entry(MarketStateChangeEntity.class, new MarketStateChangeEntityEncoder()),
+          Map.entry(SportsEventIncidentEntity.class, new SportsEventIncidentEntityEncoder()),
+          Map.entry(
+              SportsEventMatchTimeUpdateEntity.class,
+              new SportsEventMatchTimeUpdateEntityEncoder()),
+          Map.entry(
+              SportsEventOutcomeUpdateEntity.class, new SportsEventOutcomeUpdateEntityEncoder()),
+          Map.entry(
+              SportsEventPeriodUpdateEntity.class, new SportsEventPeriodUpdateEntityEncoder()),
+          Map.entry(SportsEventScoreUpdateEntity.class, new SportsEventScoreUpdateEntityEncoder()),
+          Map.entry(
+              AnalyticDoubleValueEntity.class,
+              new AnalyticPrimitiveValueEntityEncoder<AnalyticDoubleValueEntity>(
+                  "analytic_double_value",
+                  (value, writer) -> writer.doubleField("value", value.getValue()))),
+          Map.entry(
+              AnalyticIntegerValueEntity.class,
+              new AnalyticPrimitiveValueEntityEncoder<AnalyticIntegerValueEntity>(
+                  "analytic_integer_value",
+                  (value, writer) -> writer.longField("value", value.getValue()))),
+          Map.entry(
+              AnalyticBooleanValueEntity.class,
+              new AnalyticPrimitiveValueEntityEncoder<AnalyticBooleanValueEntity>(
+                  "analytic_boolean_value",
+                  (value, writer) -> writer.booleanField("value", value.getValue()))),
+          Map.entry(
+              AnalyticStringValueEntity.class,
+              new AnalyticPrimitiveValueEntityEncoder<AnalyticStringValueEntity>(
+                  "analytic_string_value",
+                  (value, writer) -> writer.stringField("value", value.getValue()))));
+
+  /**
+   * Find the line protocol encoder for a type of measurement.
+   *
+   * @param <T> the type of measurement
+   * @param measurementClazz the type of measurement
+   * @return the encoder, or empty if the type must be mapped by the client library
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Optional<LineProtocolEncoder<T>> find(Class<T> measurementClazz) {
+    return Optional.ofNullable((LineProtocolEncoder<T>) ENCODERS.get(measurementClazz));
+  }
+
+  /**
+   * Find a line protocol encoder for a collection of measurements of any mix of types.
+   *
+   * @param <T> a common supertype of the measurements
+   * @param measurements the measurements to encode
+   * @return an encoder for every measurement, or empty if any type must be mapped by the client
+   *     library
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Optional<LineProtocolEncoder<T>> findForAll(
+      Collection<? extends T> measurements) {
+    Map<Class<?>, LineProtocolEncoder<Object>> encoders = new HashMap<>();
+    for (Object measurement : measurements) {
+      Class<?> measurementClazz = measurement.getClass();
+      if (!encoders.containsKey(measurementClazz)) {
+        LineProtocolEncoder<?> encoder = ENCODERS.get(measurementClazz);
+        if (encoder == null) {
+          return Optional.empty();
+        }
+        encoders.put(measurementClazz, (LineProtocolEncoder<Object>) encoder);
+      }
+    }
+    return Optional.of(
+        (measurement, writer) -> encoders.get(measurement.getClass()).encode(measurement, writer));
+  }
+
+  /**
+   * Find the series a measurement is written to.
+   *
+   * @param <T> the type of measurement
+   * @param encoder the encoder for the measurement
+   * @param measurement the measurement
+   * @return the measurement name and tags of the first point written, as line protocol
+   */
+  public static <T> String seriesKey(LineProtocolEncoder<T> encoder, T measurement) {
+    LineProtocolWriter writer = SERIES_KEY_WRITER.get();
+    try {
+      encoder.encode(measurement, writer);
+      String line = writer.toString();
+      for (int i = 0; i < line.length(); i++) {
+        char c = line.charAt(i);
+        if (c == '\\') {
+          i++;
+        } else if (c == ' ' || c == '\n') {
+          return line.substring(0, i);
+        }
+      }
+      return line;
+    } finally {
+      writer.clear();
+    }
+  }
+}
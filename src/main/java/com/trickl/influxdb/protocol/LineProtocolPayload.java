@@ -0,0 +1,99 @@
+package com.trickl.influxdb.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class LineProtocolPayload {
+
+  private final List<ByteBuffer> buffers;
+
+  private final int length;
+
+  private final ByteBufferPool pool;
+
+  private final AtomicInteger references;
+
+  private final AtomicBoolean released = new AtomicBoolean(false);
+
+  LineProtocolPayload(List<ByteBuffer> buffers, int length, ByteBufferPool pool) {
+    this(buffers, length, pool, new AtomicInteger(1));
+  }
+
+  private LineProtocolPayload(
+      List<ByteBuffer> buffers, int length, ByteBufferPool pool, AtomicInteger references) {
+    this.buffers = buffers;
+    this.length = length;
+    this.pool = pool;
+    this.references = references;
+  }
+
+  /**
+   * Wrap encoded bytes that do not belong to a pool.
+   *
+   * @param buffer line protocol, ready for reading
+   * @return a payload whose release has no effect
+   */
+  public static LineProtocolPayload wrap(ByteBuffer buffer) {
+    return new LineProtocolPayload(List.of(buffer), buffer.remaining(), null);
+  }
+
+  /**
+   * Get the size of the payload.
+   *
+   * @return the length in bytes
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Get the encoded bytes, without copying them.
+   *
+   * @return independent read views of the payload buffers, in order
+   */
+  public List<ByteBuffer> getBuffers() {
+    return buffers.stream().map(ByteBuffer::duplicate).collect(Collectors.toList());
+  }
+
+  /**
+   * Share the payload with another reader, such as a request that may outlive its caller.
+   *
+   * <p>The buffers only return to their pool once this and every shared payload are released.
+   *
+   * @return a payload over the same buffers, to be released separately
+   */
+  public LineProtocolPayload retain() {
+    references.incrementAndGet();
+    return new LineProtocolPayload(buffers, length, pool, references);
+  }
+
+  /**
+   * Return the buffers to their pool, unless they are still shared. The payload must not be read
+   * afterwards.
+   *
+   * <p>Releasing more than once has no effect.
+   */
+  public void release() {
+    if (released.compareAndSet(false, true)
+        && references.decrementAndGet() == 0
+        && pool != null) {
+      buffers.forEach(pool::release);
+    }
+  }
+
+  @Override
+  public String toString() {
+    byte[] bytes = new byte[length];
+    int offset = 0;
+    for (ByteBuffer buffer : getBuffers()) {
+      int remaining = buffer.remaining();
+      buffer.get(bytes, offset, remaining);
+      offset += remaining;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,332 @@
+package com.trickl.influxdb.protocol;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LineProtocolWriter {
+
+  private final ByteBufferPool pool;
+
+  private final List<ByteBuffer> buffers = new ArrayList<>();
+
+  private final byte[] digits = new byte[20];
+
+  private ByteBuffer current = null;
+
+  private int length = 0;
+
+  private int lineStart = 0;
+
+  private int fieldCount = 0;
+
+  /** Create a writer with its own small buffer pool. */
+  public LineProtocolWriter() {
+    this(new ByteBufferPool(8 * 1024, 16));
+  }
+
+  /**
+   * Create a writer.
+   *
+   * @param pool where to take buffers from as the payload grows
+   */
+  public LineProtocolWriter(ByteBufferPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Start a new point.
+   *
+   * <p>Line breaks cannot be escaped in measurement names or tags, so are written as spaces.
+   *
+   * @param name the measurement name
+   * @return this writer
+   */
+  public LineProtocolWriter measurement(String name) {
+    lineStart = length;
+    fieldCount = 0;
+    if (lineStart > 0) {
+      put('\n');
+    }
+    putEscaped(name, false);
+    return this;
+  }
+
+  /**
+   * Add a tag to the current point. Null or empty values are omitted.
+   *
+   * @param key the tag key
+   * @param value the tag value
+   * @return this writer
+   */
+  public LineProtocolWriter tag(String key, String value) {
+    if (value == null || value.isEmpty()) {
+      return this;
+    }
+    put(',');
+    putEscaped(key, true);
+    put('=');
+    putEscaped(value, true);
+    return this;
+  }
+
+  /**
+   * Add a float field to the current point. Null and non-finite values are omitted.
+   *
+   * @param key the field key
+   * @param value the field value
+   * @return this writer
+   */
+  public LineProtocolWriter doubleField(String key, Double value) {
+    if (value == null || value.isNaN() || value.isInfinite()) {
+      return this;
+    }
+    putFieldKey(key);
+    String text = Double.toString(value);
+    if (text.indexOf('E') >= 0) {
+      text = BigDecimal.valueOf(value).toPlainString();
+    }
+    putAscii(text);
+    return this;
+  }
+
+  /**
+   * Add an integer field to the current point. Null values are omitted.
+   *
+   * @param key the field key
+   * @param value the field value
+   * @return this writer
+   */
+  public LineProtocolWriter longField(String key, Long value) {
+    if (value == null) {
+      return this;
+    }
+    putFieldKey(key);
+    putLong(value);
+    put('i');
+    return this;
+  }
+
+  /**
+   * Add a boolean field to the current point. Null values are omitted.
+   *
+   * @param key the field key
+   * @param value the field value
+   * @return this writer
+   */
+  public LineProtocolWriter booleanField(String key, Boolean value) {
+    if (value == null) {
+      return this;
+    }
+    putFieldKey(key);
+    putAscii(value ? "true" : "false");
+    return this;
+  }
+
+  /**
+   * Add a string field to the current point. Null values are omitted.
+   *
+   * <p>Only quotes and backslashes are escaped, as a line break is valid inside a quoted string.
+   *
+   * @param key the field key
+   * @param value the field value
+   * @return this writer
+   */
+  public LineProtocolWriter stringField(String key, String value) {
+    if (value == null) {
+      return this;
+    }
+    putFieldKey(key);
+    put('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        put('\\');
+        put(c);
+      } else {
+        i = putChar(value, i);
+      }
+    }
+    put('"');
+    return this;
+  }
+
+  /**
+   * Finish the current point with a millisecond timestamp.
+   *
+   * <p>A point without a time or without any fields is not valid line protocol, so it is removed
+   * from the buffer instead.
+   *
+   * @param time the time of the point
+   * @return true if the point was written
+   */
+  public boolean timestamp(Instant time) {
+    if (time == null || fieldCount == 0) {
+      truncate(lineStart);
+      return false;
+    }
+    put(' ');
+    putLong(time.toEpochMilli());
+    return true;
+  }
+
+  /**
+   * Get the length of the encoded payload.
+   *
+   * @return the number of bytes written
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Discard everything written after a previous length.
+   *
+   * @param length the length to return to, in bytes
+   */
+  public void truncate(int length) {
+    int excess = this.length - length;
+    while (excess > 0) {
+      ByteBuffer last = buffers.get(buffers.size() - 1);
+      int used = last.position();
+      if (used <= excess) {
+        buffers.remove(buffers.size() - 1);
+        pool.release(last);
+        excess -= used;
+      } else {
+        last.position(used - excess);
+        excess = 0;
+      }
+    }
+    current = buffers.isEmpty() ? null : buffers.get(buffers.size() - 1);
+    this.length = Math.min(this.length, length);
+    lineStart = this.length;
+  }
+
+  /** Discard the contents of the writer, returning its buffers to the pool. */
+  public void clear() {
+    truncate(0);
+  }
+
+  /**
+   * Hand the encoded payload over to the caller and leave the writer empty.
+   *
+   * <p>The caller becomes responsible for releasing the payload once it has been sent.
+   *
+   * @return the encoded payload
+   */
+  public LineProtocolPayload takePayload() {
+    List<ByteBuffer> payloadBuffers = new ArrayList<>(buffers);
+    payloadBuffers.forEach(ByteBuffer::flip);
+    LineProtocolPayload payload = new LineProtocolPayload(payloadBuffers, length, pool);
+    buffers.clear();
+    current = null;
+    length = 0;
+    lineStart = 0;
+    return payload;
+  }
+
+  @Override
+  public String toString() {
+    byte[] bytes = new byte[length];
+    int offset = 0;
+    for (ByteBuffer buffer : buffers) {
+      ByteBuffer written = buffer.duplicate().flip();
+      int remaining = written.remaining();
+      written.get(bytes, offset, remaining);
+      offset += remaining;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private void putFieldKey(String key) {
+    put(fieldCount == 0 ? ' ' : ',');
+    putEscaped(key, true);
+    put('=');
+    fieldCount++;
+  }
+
+  private void putEscaped(String value, boolean escapeEquals) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ' ' || c == ',' || (c == '=' && escapeEquals)) {
+        put('\\');
+        put(c);
+      } else if (c == '\n' || c == '\r') {
+        // Line protocol has no escape for line breaks outside string fields
+        put('\\');
+        put(' ');
+      } else {
+        i = putChar(value, i);
+      }
+    }
+  }
+
+  private void putAscii(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      put(value.charAt(i));
+    }
+  }
+
+  private void putLong(long value) {
+    if (value == Long.MIN_VALUE) {
+      putAscii(Long.toString(value));
+      return;
+    }
+    if (value < 0) {
+      put('-');
+      value = -value;
+    }
+    int start = digits.length;
+    do {
+      digits[--start] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    for (int i = start; i < digits.length; i++) {
+      put(digits[i]);
+    }
+  }
+
+  /** Write the UTF-8 encoding of the character at an index, returning the last index consumed. */
+  private int putChar(String value, int index) {
+    char c = value.charAt(index);
+    if (c < 0x80) {
+      put((byte) c);
+      return index;
+    }
+
+    int codePoint = value.codePointAt(index);
+    if (Character.isSurrogate(c) && codePoint == c) {
+      put('?');
+    } else if (codePoint < 0x800) {
+      put((byte) (0xC0 | (codePoint >> 6)));
+      put((byte) (0x80 | (codePoint & 0x3F)));
+    } else if (codePoint < 0x10000) {
+      put((byte) (0xE0 | (codePoint >> 12)));
+      put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+      put((byte) (0x80 | (codePoint & 0x3F)));
+    } else {
+      put((byte) (0xF0 | (codePoint >> 18)));
+      put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+      put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+      put((byte) (0x80 | (codePoint & 0x3F)));
+    }
+    return index + Character.charCount(codePoint) - 1;
+  }
+
+  private void put(char c) {
+    put((byte) c);
+  }
+
+  private void put(byte b) {
+    if (current == null || !current.hasRemaining()) {
+      current = pool.acquire();
+      buffers.add(current);
+    }
+    current.put(b);
+    length++;
+  }
+}
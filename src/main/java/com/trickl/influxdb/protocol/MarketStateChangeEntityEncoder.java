@@ -0,0 +1,17 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.MarketStateChangeEntity;
+
+public class MarketStateChangeEntityEncoder
+    implements LineProtocolEncoder<MarketStateChangeEntity> {
+  @Override
+  public int encode(MarketStateChangeEntity change, LineProtocolWriter writer) {
+    writer
+        .measurement("market_state_change")
+        .tag("exchangeId", change.getExchangeId())
+        .tag("instrumentId", change.getInstrumentId())
+        .stringField("description", change.getDescription())
+        .stringField("state", change.getState());
+    return writer.timestamp(change.getTime()) ? 1 : 0;
+  }
+}
@@ -0,0 +1,51 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.OhlcvBarEntity;
+
+public class OhlcvBarEntityEncoder implements LineProtocolEncoder<OhlcvBarEntity> {
+
+  private final String measurementName;
+
+  private final String bidOrAsk;
+
+  /** Create an encoder for the measurement named by the entity. */
+  public OhlcvBarEntityEncoder() {
+    this("ohlvc_bar");
+  }
+
+  /**
+   * Create an encoder for bars stored under another name, such as a candle name.
+   *
+   * @param measurementName the measurement name
+   */
+  public OhlcvBarEntityEncoder(String measurementName) {
+    this(measurementName, null);
+  }
+
+  /**
+   * Create an encoder for best bid or ask bars, tagged as they are by the server side aggregation
+   * so both write to the same series.
+   *
+   * @param measurementName the measurement name
+   * @param bidOrAsk the bidOrAsk tag, B or A, or null for none
+   */
+  public OhlcvBarEntityEncoder(String measurementName, String bidOrAsk) {
+    this.measurementName = measurementName;
+    this.bidOrAsk = bidOrAsk;
+  }
+
+  @Override
+  public int encode(OhlcvBarEntity bar, LineProtocolWriter writer) {
+    writer
+        .measurement(measurementName)
+        .tag("bidOrAsk", bidOrAsk)
+        .tag("exchangeId", bar.getExchangeId())
+        .tag("instrumentId", bar.getInstrumentId())
+        .doubleField("close", bar.getClose())
+        .doubleField("high", bar.getHigh())
+        .doubleField("low", bar.getLow())
+        .doubleField("open", bar.getOpen())
+        .longField("volume", bar.getVolume());
+    return writer.timestamp(bar.getTime()) ? 1 : 0;
+  }
+}
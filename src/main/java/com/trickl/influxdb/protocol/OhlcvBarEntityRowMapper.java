@@ -0,0 +1,29 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.OhlcvBarEntity;
+import java.util.function.Function;
+
+public class OhlcvBarEntityRowMapper implements AnnotatedCsvRowMapper<OhlcvBarEntity> {
+
+  @Override
+  public Function<AnnotatedCsvRow, OhlcvBarEntity> compile(AnnotatedCsvRow header) {
+    int time = header.indexOf("_time");
+    int instrumentId = header.indexOf("instrumentId");
+    int exchangeId = header.indexOf("exchangeId");
+    int open = header.indexOf("open");
+    int high = header.indexOf("high");
+    int low = header.indexOf("low");
+    int close = header.indexOf("close");
+    int volume = header.indexOf("volume");
+    return row ->
+        new OhlcvBarEntity(
+            row.getTime(time),
+            row.getString(instrumentId),
+            row.getString(exchangeId),
+            row.getDouble(open),
+            row.getDouble(high),
+            row.getDouble(low),
+            row.getDouble(close),
+            row.getLong(volume));
+  }
+}
@@ -0,0 +1,32 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.model.pricing.primitives.OrderBook;
+import java.time.Instant;
+import lombok.Value;
+
+@Value
+public class OrderBookDelta {
+  /** The last book stored, or null if the current book is a keyframe. */
+  protected OrderBook previous;
+
+  /** The book to store. */
+  protected OrderBook current;
+
+  /**
+   * Check if the whole book is written.
+   *
+   * @return true if there is no previous book to compare with
+   */
+  public boolean isKeyframe() {
+    return previous == null;
+  }
+
+  /**
+   * Get the time of the book to store.
+   *
+   * @return the time of the current book
+   */
+  public Instant getTime() {
+    return current.getTime();
+  }
+}
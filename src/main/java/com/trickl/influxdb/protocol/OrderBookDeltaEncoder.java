@@ -0,0 +1,117 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.BidOrAskFlags;
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+public class OrderBookDeltaEncoder implements LineProtocolEncoder<OrderBookDelta> {
+
+  private final OrderBookEncoder keyframeEncoder;
+
+  private final String exchangeId;
+
+  private final String instrumentId;
+
+  /**
+   * Create an encoder for the order book changes of an instrument.
+   *
+   * @param priceSource the instrument identifier
+   */
+  public OrderBookDeltaEncoder(PriceSource priceSource) {
+    this.keyframeEncoder = new OrderBookEncoder(priceSource);
+    this.exchangeId = priceSource.getExchangeId().toUpperCase();
+    this.instrumentId = priceSource.getInstrumentId().toUpperCase();
+  }
+
+  /**
+   * Write a keyframe as a full set of order points, or otherwise an order delta point for each
+   * level whose price or volume changed.
+   *
+   * <p>If a side of the book has shrunk, a single point marks the first missing level, and every
+   * level below it, as removed. If no level changed, a single point without a level marks the
+   * book as unchanged, so the time of the book is still stored.
+   *
+   * @param delta the book and the last book stored
+   * @param writer where to write the encoded points
+   * @return the number of points written
+   */
+  @Override
+  public int encode(OrderBookDelta delta, LineProtocolWriter writer) {
+    if (delta.isKeyframe()) {
+      return keyframeEncoder.encode(delta.getCurrent(), writer);
+    }
+    OrderBook previous = delta.getPrevious();
+    OrderBook current = delta.getCurrent();
+    Instant time = current.getTime();
+    int points = encodeSide(previous.getBids(), current.getBids(), BidOrAskFlags.BID, time, writer);
+    points += encodeSide(previous.getAsks(), current.getAsks(), BidOrAskFlags.ASK, time, writer);
+    if (points == 0) {
+      writer
+          .measurement("order_delta")
+          .tag("exchangeId", exchangeId)
+          .tag("instrumentId", instrumentId)
+          .booleanField("unchanged", true);
+      if (writer.timestamp(time)) {
+        points++;
+      }
+    }
+    return points;
+  }
+
+  private int encodeSide(
+      List<Quote> previousQuotes,
+      List<Quote> quotes,
+      String bidOrAsk,
+      Instant time,
+      LineProtocolWriter writer) {
+    List<Quote> previous = previousQuotes != null ? previousQuotes : Collections.emptyList();
+    List<Quote> current = quotes != null ? quotes : Collections.emptyList();
+    int points = 0;
+    for (int depth = 0; depth < current.size(); depth++) {
+      Quote quote = current.get(depth);
+      if (depth < previous.size() && isUnchanged(previous.get(depth), quote)) {
+        continue;
+      }
+      BigDecimal price = quote.getPrice();
+      startPoint(bidOrAsk, depth, writer)
+          .doubleField("price", price != null ? price.doubleValue() : null)
+          .longField("volume", quote.getVolume());
+      if (writer.timestamp(time)) {
+        points++;
+      }
+    }
+
+    if (current.size() < previous.size()) {
+      startPoint(bidOrAsk, current.size(), writer).booleanField("removed", true);
+      if (writer.timestamp(time)) {
+        points++;
+      }
+    }
+    return points;
+  }
+
+  private LineProtocolWriter startPoint(String bidOrAsk, int depth, LineProtocolWriter writer) {
+    return writer
+        .measurement("order_delta")
+        .tag("bidOrAsk", bidOrAsk)
+        .tag("depth", OrderBookEncoder.depthTag(depth))
+        .tag("exchangeId", exchangeId)
+        .tag("instrumentId", instrumentId);
+  }
+
+  private static boolean isUnchanged(Quote previous, Quote current) {
+    BigDecimal previousPrice = previous.getPrice();
+    BigDecimal price = current.getPrice();
+    boolean samePrice =
+        previousPrice == null
+            ? price == null
+            : price != null && previousPrice.compareTo(price) == 0;
+    return samePrice && Objects.equals(previous.getVolume(), current.getVolume());
+  }
+}
@@ -0,0 +1,77 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.BidOrAskFlags;
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.util.List;
+
+public class OrderBookEncoder implements LineProtocolEncoder<OrderBook> {
+
+  private static final String[] DEPTHS = new String[64];
+
+  static {
+    for (int depth = 0; depth < DEPTHS.length; depth++) {
+      DEPTHS[depth] = Integer.toString(depth);
+    }
+  }
+
+  private final String exchangeId;
+
+  private final String instrumentId;
+
+  /**
+   * Create an encoder for the order books of an instrument.
+   *
+   * @param priceSource the instrument identifier
+   */
+  public OrderBookEncoder(PriceSource priceSource) {
+    this.exchangeId = priceSource.getExchangeId().toUpperCase();
+    this.instrumentId = priceSource.getInstrumentId().toUpperCase();
+  }
+
+  /**
+   * Write every level of an order book as an order point, bids first.
+   *
+   * <p>The points are the same as those written for each {@link
+   * com.trickl.influxdb.persistence.OrderEntity}, without creating an order or entity per level.
+   *
+   * @param orderBook the order book to encode
+   * @param writer where to write the encoded points
+   * @return the number of points written
+   */
+  @Override
+  public int encode(OrderBook orderBook, LineProtocolWriter writer) {
+    return encodeSide(orderBook.getBids(), BidOrAskFlags.BID, orderBook, writer)
+        + encodeSide(orderBook.getAsks(), BidOrAskFlags.ASK, orderBook, writer);
+  }
+
+  static String depthTag(int depth) {
+    return depth < DEPTHS.length ? DEPTHS[depth] : Integer.toString(depth);
+  }
+
+  private int encodeSide(
+      List<Quote> quotes, String bidOrAsk, OrderBook orderBook, LineProtocolWriter writer) {
+    if (quotes == null) {
+      return 0;
+    }
+    int points = 0;
+    for (int depth = 0; depth < quotes.size(); depth++) {
+      Quote quote = quotes.get(depth);
+      BigDecimal price = quote.getPrice();
+      writer
+          .measurement("order")
+          .tag("bidOrAsk", bidOrAsk)
+          .tag("depth", depthTag(depth))
+          .tag("exchangeId", exchangeId)
+          .tag("instrumentId", instrumentId)
+          .doubleField("price", price != null ? price.doubleValue() : null)
+          .longField("volume", quote.getVolume());
+      if (writer.timestamp(orderBook.getTime())) {
+        points++;
+      }
+    }
+    return points;
+  }
+}
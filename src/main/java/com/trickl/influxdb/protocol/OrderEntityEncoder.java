@@ -0,0 +1,18 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.OrderEntity;
+
+public class OrderEntityEncoder implements LineProtocolEncoder<OrderEntity> {
+  @Override
+  public int encode(OrderEntity order, LineProtocolWriter writer) {
+    writer
+        .measurement("order")
+        .tag("bidOrAsk", order.getBidOrAsk())
+        .tag("depth", order.getDepth())
+        .tag("exchangeId", order.getExchangeId())
+        .tag("instrumentId", order.getInstrumentId())
+        .doubleField("price", order.getPrice())
+        .longField("volume", order.getVolume());
+    return writer.timestamp(order.getTime()) ? 1 : 0;
+  }
+}
@@ -0,0 +1,27 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.OrderEntity;
+import java.util.function.Function;
+
+public class OrderEntityRowMapper implements AnnotatedCsvRowMapper<OrderEntity> {
+
+  @Override
+  public Function<AnnotatedCsvRow, OrderEntity> compile(AnnotatedCsvRow header) {
+    int time = header.indexOf("_time");
+    int instrumentId = header.indexOf("instrumentId");
+    int exchangeId = header.indexOf("exchangeId");
+    int bidOrAsk = header.indexOf("bidOrAsk");
+    int depth = header.indexOf("depth");
+    int price = header.indexOf("price");
+    int volume = header.indexOf("volume");
+    return row ->
+        new OrderEntity(
+            row.getTime(time),
+            row.getString(instrumentId),
+            row.getString(exchangeId),
+            row.getString(bidOrAsk),
+            row.getString(depth),
+            row.getDouble(price),
+            row.getLong(volume));
+  }
+}
@@ -0,0 +1,19 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.SportsEventIncidentEntity;
+
+public class SportsEventIncidentEntityEncoder
+    implements LineProtocolEncoder<SportsEventIncidentEntity> {
+  @Override
+  public int encode(SportsEventIncidentEntity incident, LineProtocolWriter writer) {
+    writer
+        .measurement("sports_event_incident")
+        .tag("exchangeId", incident.getExchangeId())
+        .tag("instrumentId", incident.getInstrumentId())
+        .stringField("incidentType", incident.getIncidentType())
+        .stringField("matchTime", incident.getMatchTime())
+        .stringField("period", incident.getPeriod())
+        .stringField("side", incident.getSide());
+    return writer.timestamp(incident.getTime()) ? 1 : 0;
+  }
+}
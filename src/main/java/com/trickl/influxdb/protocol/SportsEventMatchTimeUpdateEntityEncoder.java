@@ -0,0 +1,18 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.SportsEventMatchTimeUpdateEntity;
+
+public class SportsEventMatchTimeUpdateEntityEncoder
+    implements LineProtocolEncoder<SportsEventMatchTimeUpdateEntity> {
+  @Override
+  public int encode(SportsEventMatchTimeUpdateEntity update, LineProtocolWriter writer) {
+    writer
+        .measurement("sports_event_match_time_update")
+        .tag("exchangeId", update.getExchangeId())
+        .tag("instrumentId", update.getInstrumentId())
+        .stringField("matchTime", update.getMatchTime())
+        .stringField("remainingTime", update.getRemainingTime())
+        .stringField("remainingTimeInPeriod", update.getRemainingTimeInPeriod());
+    return writer.timestamp(update.getTime()) ? 1 : 0;
+  }
+}
@@ -0,0 +1,17 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.SportsEventOutcomeUpdateEntity;
+
+public class SportsEventOutcomeUpdateEntityEncoder
+    implements LineProtocolEncoder<SportsEventOutcomeUpdateEntity> {
+  @Override
+  public int encode(SportsEventOutcomeUpdateEntity update, LineProtocolWriter writer) {
+    writer
+        .measurement("sports_event_outcome_update")
+        .tag("exchangeId", update.getExchangeId())
+        .tag("instrumentId", update.getInstrumentId())
+        .stringField("description", update.getDescription())
+        .stringField("outcome", update.getOutcome());
+    return writer.timestamp(update.getTime()) ? 1 : 0;
+  }
+}
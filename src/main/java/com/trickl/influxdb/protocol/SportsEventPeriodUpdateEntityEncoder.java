@@ -0,0 +1,16 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.SportsEventPeriodUpdateEntity;
+
+public class SportsEventPeriodUpdateEntityEncoder
+    implements LineProtocolEncoder<SportsEventPeriodUpdateEntity> {
+  @Override
+  public int encode(SportsEventPeriodUpdateEntity update, LineProtocolWriter writer) {
+    writer
+        .measurement("sports_event_period_update")
+        .tag("exchangeId", update.getExchangeId())
+        .tag("instrumentId", update.getInstrumentId())
+        .stringField("period", update.getPeriod());
+    return writer.timestamp(update.getTime()) ? 1 : 0;
+  }
+}
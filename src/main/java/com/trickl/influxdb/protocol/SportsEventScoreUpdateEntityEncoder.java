@@ -0,0 +1,33 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.SportsEventScoreUpdateEntity;
+
+public class SportsEventScoreUpdateEntityEncoder
+    implements LineProtocolEncoder<SportsEventScoreUpdateEntity> {
+  @Override
+  public int encode(SportsEventScoreUpdateEntity update, LineProtocolWriter writer) {
+    writer
+        .measurement("sports_event_score_update")
+        .tag("exchangeId", update.getExchangeId())
+        .tag("instrumentId", update.getInstrumentId())
+        .stringField("current", update.getCurrent())
+        .stringField("firstHalf", update.getFirstHalf())
+        .stringField("fullTime", update.getFullTime())
+        .stringField("game", update.getGame())
+        .stringField("normalTime", update.getNormalTime())
+        .stringField("quarterFour", update.getQuarterFour())
+        .stringField("quarterOne", update.getQuarterOne())
+        .stringField("quarterThree", update.getQuarterThree())
+        .stringField("quarterTwo", update.getQuarterTwo())
+        .stringField("secondHalf", update.getSecondHalf())
+        .stringField("setFive", update.getSetFive())
+        .stringField("setFour", update.getSetFour())
+        .stringField("setOne", update.getSetOne())
+        .stringField("setThree", update.getSetThree())
+        .stringField("setTwo", update.getSetTwo())
+        .stringField("sets", update.getSets())
+        .stringField("tieBreakOne", update.getTieBreakOne())
+        .stringField("tieBreakTwo", update.getTieBreakTwo());
+    return writer.timestamp(update.getTime()) ? 1 : 0;
+  }
+}
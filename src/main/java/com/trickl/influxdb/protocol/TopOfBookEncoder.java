@@ -0,0 +1,56 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.util.List;
+
+public class TopOfBookEncoder implements LineProtocolEncoder<OrderBook> {
+
+  private final String exchangeId;
+
+  private final String instrumentId;
+
+  /**
+   * Create an encoder for the best prices of an instrument.
+   *
+   * @param priceSource the instrument identifier
+   */
+  public TopOfBookEncoder(PriceSource priceSource) {
+    this.exchangeId = priceSource.getExchangeId().toUpperCase();
+    this.instrumentId = priceSource.getInstrumentId().toUpperCase();
+  }
+
+  /**
+   * Write the best bid and ask of a book as a top of book point, with the mid price and spread if
+   * both sides have a price.
+   *
+   * @param orderBook the order book to encode
+   * @param writer where to write the encoded point
+   * @return the number of points written
+   */
+  @Override
+  public int encode(OrderBook orderBook, LineProtocolWriter writer) {
+    Double bid = getBestPrice(orderBook.getBids());
+    Double ask = getBestPrice(orderBook.getAsks());
+    boolean isTwoSided = bid != null && ask != null;
+    writer
+        .measurement("top_of_book")
+        .tag("exchangeId", exchangeId)
+        .tag("instrumentId", instrumentId)
+        .doubleField("ask", ask)
+        .doubleField("bid", bid)
+        .doubleField("mid", isTwoSided ? (bid + ask) / 2 : null)
+        .doubleField("spread", isTwoSided ? ask - bid : null);
+    return writer.timestamp(orderBook.getTime()) ? 1 : 0;
+  }
+
+  private static Double getBestPrice(List<Quote> quotes) {
+    if (quotes == null || quotes.isEmpty()) {
+      return null;
+    }
+    BigDecimal price = quotes.get(0).getPrice();
+    return price != null ? price.doubleValue() : null;
+  }
+}
@@ -0,0 +1,20 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.TransactionEntity;
+
+public class TransactionEntityEncoder implements LineProtocolEncoder<TransactionEntity> {
+  @Override
+  public int encode(TransactionEntity transaction, LineProtocolWriter writer) {
+    writer
+        .measurement("transaction")
+        .tag("accountId", transaction.getAccountId())
+        .tag("exchangeId", transaction.getExchangeId())
+        .tag("instrumentId", transaction.getInstrumentId())
+        .tag("orderId", transaction.getOrderId())
+        .tag("simulationId", transaction.getSimulationId())
+        .stringField("brokerId", transaction.getBrokerId())
+        .stringField("type", transaction.getType())
+        .doubleField("value", transaction.getValue());
+    return writer.timestamp(transaction.getTime()) ? 1 : 0;
+  }
+}
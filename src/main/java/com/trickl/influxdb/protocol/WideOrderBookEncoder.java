@@ -0,0 +1,57 @@
+package com.trickl.influxdb.protocol;
+
+import com.trickl.influxdb.persistence.OrderBookFields;
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.util.List;
+
+public class WideOrderBookEncoder implements LineProtocolEncoder<OrderBook> {
+
+  private final String exchangeId;
+
+  private final String instrumentId;
+
+  /**
+   * Create an encoder for the order books of an instrument.
+   *
+   * @param priceSource the instrument identifier
+   */
+  public WideOrderBookEncoder(PriceSource priceSource) {
+    this.exchangeId = priceSource.getExchangeId().toUpperCase();
+    this.instrumentId = priceSource.getInstrumentId().toUpperCase();
+  }
+
+  /**
+   * Write a whole order book as a single point, with a price and volume field per level.
+   *
+   * @param orderBook the order book to encode
+   * @param writer where to write the encoded point
+   * @return the number of points written
+   */
+  @Override
+  public int encode(OrderBook orderBook, LineProtocolWriter writer) {
+    writer
+        .measurement(OrderBookFields.MEASUREMENT)
+        .tag("exchangeId", exchangeId)
+        .tag("instrumentId", instrumentId);
+    encodeSide(orderBook.getAsks(), false, writer);
+    encodeSide(orderBook.getBids(), true, writer);
+    return writer.timestamp(orderBook.getTime()) ? 1 : 0;
+  }
+
+  private void encodeSide(List<Quote> quotes, boolean isBid, LineProtocolWriter writer) {
+    if (quotes == null) {
+      return;
+    }
+    for (int depth = 0; depth < quotes.size(); depth++) {
+      Quote quote = quotes.get(depth);
+      BigDecimal price = quote.getPrice();
+      writer
+          .doubleField(
+              OrderBookFields.price(isBid, depth), price != null ? price.doubleValue() : null)
+          .longField(OrderBookFields.volume(isBid, depth), quote.getVolume());
+    }
+  }
+}
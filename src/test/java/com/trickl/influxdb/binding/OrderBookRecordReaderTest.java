@@ -0,0 +1,42 @@
+package com.trickl.influxdb.binding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.influxdb.query.FluxRecord;
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+public class OrderBookRecordReaderTest {
+
+  private final OrderBookRecordReader reader = new OrderBookRecordReader();
+
+  @Test
+  public void testReadLevelsUntilTheFirstMissingDepth() {
+    FluxRecord record = new FluxRecord(0);
+    record.getValues().put("_time", Instant.ofEpochMilli(1000));
+    record.getValues().put("exchangeId", "xlon");
+    record.getValues().put("instrumentId", "VOD");
+    record.getValues().put("b0p", 100.5);
+    record.getValues().put("b0v", 10L);
+    record.getValues().put("b1p", 100.0);
+    record.getValues().put("b1v", 20L);
+    record.getValues().put("b3p", 99.0);
+    record.getValues().put("a0p", 101.0);
+
+    OrderBook orderBook = reader.apply(record);
+
+    assertThat(orderBook.getTime()).isEqualTo(Instant.ofEpochMilli(1000));
+    assertThat(orderBook.getBids())
+        .extracting(Quote::getPrice)
+        .containsExactly(BigDecimal.valueOf(100.5), BigDecimal.valueOf(100.0));
+    assertThat(orderBook.getBids()).extracting(Quote::getVolume).containsExactly(10L, 20L);
+    assertThat(orderBook.getAsks())
+        .extracting(Quote::getPrice)
+        .containsExactly(BigDecimal.valueOf(101.0));
+    assertThat(orderBook.getAsks()).extracting(Quote::getVolume).containsExactly(0L);
+    assertThat(orderBook.getBids().get(0).getSource().getExchangeId()).isEqualTo("XLON");
+  }
+}
@@ -0,0 +1,107 @@
+package com.trickl.influxdb.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.trickl.model.pricing.primitives.PriceSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+public class CachingInfluxDbFindBetweenTest {
+
+  private static final Instant NOW = Instant.parse("2023-01-02T10:10:00Z");
+
+  private final PriceSource priceSource =
+      PriceSource.builder().exchangeId("XLON").instrumentId("VOD").build();
+
+  private final List<QueryBetween> queried = new ArrayList<>();
+
+  private final CachingInfluxDbFindBetween finder =
+      new CachingInfluxDbFindBetween(
+          null,
+          "prices",
+          null,
+          false,
+          new LruQueryResultCache(100),
+          Duration.ofMinutes(1),
+          Duration.ofMinutes(1),
+          () -> NOW) {
+        @Override
+        <T> Flux<T> findUncached(
+            PriceSource priceSource,
+            QueryBetween queryBetween,
+            String measurementName,
+            Class<T> measurementClazz,
+            Map<String, Set<String>> filter,
+            Optional<String> temporalSource) {
+          queried.add(queryBetween);
+          return Flux.just(queryBetween.getStart().toString()).map(measurementClazz::cast);
+        }
+      };
+
+  @Test
+  public void testSettledSegmentsAreReadFromCache() {
+    List<String> first = find(NOW.minusSeconds(600), NOW.minusSeconds(420));
+    List<String> second = find(NOW.minusSeconds(600), NOW.minusSeconds(420));
+
+    assertThat(first).hasSize(3).isEqualTo(second);
+    assertThat(queried).hasSize(3);
+  }
+
+  @Test
+  public void testSegmentsThatHaveNotSettledAreAlwaysQueried() {
+    find(NOW.minusSeconds(120), NOW);
+    assertThat(queried)
+        .extracting(QueryBetween::getStart)
+        .containsExactly(NOW.minusSeconds(120), NOW.minusSeconds(60));
+
+    queried.clear();
+    find(NOW.minusSeconds(120), NOW);
+    assertThat(queried).extracting(QueryBetween::getStart).containsExactly(NOW.minusSeconds(60));
+  }
+
+  @Test
+  public void testPartialSegmentsAreAlwaysQueried() {
+    find(NOW.minusSeconds(590), NOW.minusSeconds(470));
+    queried.clear();
+    find(NOW.minusSeconds(590), NOW.minusSeconds(470));
+
+    assertThat(queried)
+        .extracting(QueryBetween::getStart)
+        .containsExactly(NOW.minusSeconds(590), NOW.minusSeconds(480));
+  }
+
+  @Test
+  public void testWriteInvalidatesCachedSegments() {
+    find(NOW.minusSeconds(600), NOW.minusSeconds(540));
+    finder.invalidate("best_bid_1m", priceSource);
+    find(NOW.minusSeconds(600), NOW.minusSeconds(540));
+
+    assertThat(queried).hasSize(2);
+  }
+
+  @Test
+  public void testWriteToAnotherMeasurementKeepsCachedSegments() {
+    find(NOW.minusSeconds(600), NOW.minusSeconds(540));
+    finder.invalidate("best_ask_1m", priceSource);
+    find(NOW.minusSeconds(600), NOW.minusSeconds(540));
+
+    assertThat(queried).hasSize(1);
+  }
+
+  private List<String> find(Instant start, Instant end) {
+    QueryBetween queryBetween =
+        QueryBetween.builder().startIncl(true).start(start).end(end).build();
+    return finder
+        .findBetween(
+            priceSource, queryBetween, "best_bid_1m", String.class, Map.of(), Optional.empty())
+        .collectList()
+        .block();
+  }
+}
@@ -0,0 +1,144 @@
+package com.trickl.influxdb.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.trickl.model.pricing.primitives.Candle;
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+public class CandleBuilderTest {
+
+  private static final Instant MINUTE = Instant.parse("2023-01-02T10:00:00Z");
+
+  private final PriceSource priceSource =
+      PriceSource.builder().exchangeId("XLON").instrumentId("VOD").build();
+
+  private final CandleClient candleClient = mock(CandleClient.class);
+
+  private final Map<String, List<Candle>> stored = new LinkedHashMap<>();
+
+  private final Map<String, Boolean> storedAsBid = new LinkedHashMap<>();
+
+  private Instant now = MINUTE;
+
+  private CandleBuilder candleBuilder;
+
+  @BeforeEach
+  public void setup() {
+    when(candleClient.storeBestBidsOrAsks(
+            any(PriceSource.class), anyString(), anyBoolean(), anyList()))
+        .thenAnswer(
+            invocation -> {
+              String name = invocation.getArgument(1);
+              List<Candle> candles = invocation.getArgument(3);
+              storedAsBid.put(name, invocation.getArgument(2));
+              stored.computeIfAbsent(name, key -> new ArrayList<>()).addAll(candles);
+              return Flux.just(candles.size());
+            });
+    candleBuilder =
+        new CandleBuilder(
+            candleClient,
+            List.of(Duration.ofMinutes(1)),
+            Duration.ofSeconds(5),
+            Duration.ofDays(1),
+            () -> now);
+  }
+
+  @AfterEach
+  public void teardown() {
+    candleBuilder.close();
+  }
+
+  @Test
+  public void testCandleClosesWhenBookPassesWatermark() {
+    add(book(10, 100, 101), book(50, 102, 103), book(62, 104, 105));
+    assertThat(stored).isEmpty();
+
+    add(book(66, 106, 107));
+    assertThat(stored).containsOnlyKeys("best_bid_1m", "best_ask_1m");
+    assertThat(storedAsBid).containsEntry("best_bid_1m", true).containsEntry("best_ask_1m", false);
+    Candle bid = stored.get("best_bid_1m").get(0);
+    assertThat(bid.getTime()).isEqualTo(MINUTE.plusSeconds(60));
+    assertThat(bid.getOpen()).isEqualTo(price(100));
+    assertThat(bid.getClose()).isEqualTo(price(102));
+    assertThat(stored.get("best_ask_1m").get(0).getHigh()).isEqualTo(price(103));
+  }
+
+  @Test
+  public void testOutOfOrderBooksAreOrderedWithinCandle() {
+    add(book(50, 102, 103), book(10, 100, 101), book(30, 99, 104), book(66, 106, 107));
+    Candle bid = stored.get("best_bid_1m").get(0);
+    assertThat(bid.getOpen()).isEqualTo(price(100));
+    assertThat(bid.getClose()).isEqualTo(price(102));
+    assertThat(bid.getLow()).isEqualTo(price(99));
+    assertThat(bid.getHigh()).isEqualTo(price(102));
+  }
+
+  @Test
+  public void testLateBooksForClosedCandlesAreDropped() {
+    add(book(10, 100, 101), book(66, 106, 107), book(20, 1, 2));
+    assertThat(stored.get("best_bid_1m")).hasSize(1);
+    assertThat(stored.get("best_bid_1m").get(0).getLow()).isEqualTo(price(100));
+  }
+
+  @Test
+  public void testFlushClosesOpenCandles() {
+    add(book(10, 100, 101), book(70, 106, 107));
+    assertThat(stored).isEmpty();
+
+    candleBuilder.flush().blockLast();
+    assertThat(stored.get("best_bid_1m"))
+        .extracting(Candle::getTime)
+        .containsExactly(MINUTE.plusSeconds(60), MINUTE.plusSeconds(120));
+  }
+
+  @Test
+  public void testIdleCandlesCloseWithTheClock() {
+    add(book(10, 100, 101));
+    now = MINUTE.plusSeconds(50);
+    candleBuilder.closeIdle().blockLast();
+    assertThat(stored).isEmpty();
+
+    now = MINUTE.plusSeconds(56);
+    candleBuilder.closeIdle().blockLast();
+    assertThat(stored.get("best_bid_1m")).extracting(Candle::getOpen).containsExactly(price(100));
+  }
+
+  private void add(OrderBook... orderBooks) {
+    candleBuilder.add(priceSource, List.of(orderBooks)).blockLast();
+  }
+
+  private OrderBook book(int seconds, int bid, int ask) {
+    return OrderBook.builder()
+        .bids(List.of(quote(price(bid))))
+        .asks(List.of(quote(price(ask))))
+        .time(MINUTE.plusSeconds(seconds))
+        .build();
+  }
+
+  private Quote quote(BigDecimal price) {
+    return Quote.builder().price(price).volume(1L).source(priceSource).build();
+  }
+
+  private static BigDecimal price(int value) {
+    return BigDecimal.valueOf(value);
+  }
+}
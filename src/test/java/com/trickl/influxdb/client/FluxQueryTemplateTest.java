@@ -0,0 +1,80 @@
+package com.trickl.influxdb.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.influxdb.client.domain.Query;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class FluxQueryTemplateTest {
+
+  private final FluxQueryTemplate template =
+      new FluxQueryTemplate(
+          "from(bucket: params.bucket)\n"
+              + "|> filter(fn: (r) => r._measurement == params.measurement)\n"
+              + "{{filter}}|> limit(n: params.limit)\n");
+
+  @Test
+  public void testValuesAreWrittenAsLiteralsUnlessParameterized() {
+    Query query = bind().toQuery(false);
+
+    assertThat(query.getParams()).isNullOrEmpty();
+    assertThat(query.getQuery())
+        .isEqualTo(
+            "from(bucket: \"prices\")\n"
+                + "|> filter(fn: (r) => r._measurement == \"order\")\n"
+                + "|> filter(fn: (r) => (r[\"depth\"] == \"0\"))\n"
+                + "|> limit(n: 10)\n");
+  }
+
+  @Test
+  public void testValuesAreSentAsParametersIfEnabled() {
+    Query query = bind().toQuery(true);
+
+    assertThat(query.getQuery()).contains("r._measurement == params.measurement");
+    assertThat(query.getParams()).containsEntry("measurement", "order").containsEntry("p3", "0");
+  }
+
+  @Test
+  public void testStringLiteralsAreEscaped() {
+    String text =
+        template
+            .bind()
+            .param("bucket", "a\"b\\c${d}\ne")
+            .param("measurement", List.of("x", "y"))
+            .param("limit", 1.5)
+            .getInlineText();
+
+    assertThat(text)
+        .startsWith("from(bucket: \"a\\\"b\\\\c\\${d}\\ne\")")
+        .contains("r._measurement == [\"x\", \"y\"]")
+        .contains("limit(n: 1.5)");
+  }
+
+  @Test
+  public void testFilterKeysAreQuoted() {
+    String filter =
+        FluxStatementFilterBuilder.buildFrom(
+            Map.of("a\"b) or (true", Set.of("x")), value -> "params.p0");
+
+    assertThat(filter).isEqualTo("|> filter(fn: (r) => (r[\"a\\\"b) or (true\"] == params.p0))\n");
+  }
+
+  @Test
+  public void testNullCannotBeWritten() {
+    FluxQueryTemplate.Binding query =
+        template.bind().param("bucket", null).param("measurement", "order").param("limit", 1);
+
+    assertThatThrownBy(query::getInlineText).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private FluxQueryTemplate.Binding bind() {
+    FluxQueryTemplate.Binding query =
+        template.bind().param("bucket", "prices").param("measurement", "order").param("limit", 10);
+    return query.fragment(
+        "filter", FluxStatementFilterBuilder.buildFrom(Map.of("depth", Set.of("0")), query::param));
+  }
+}
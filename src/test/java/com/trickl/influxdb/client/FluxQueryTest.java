@@ -0,0 +1,161 @@
+package com.trickl.influxdb.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class FluxQueryTest {
+
+  private static final String SOURCE =
+      "from(bucket: params.bucket)\n"
+          + "|> range(start: params.start, stop: params.stop)\n"
+          + "|> filter(fn: (r) => r._measurement == params.measurement)\n";
+
+  private static final String PIVOT =
+      "|> pivot(rowKey: [\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\")\n";
+
+  @Test
+  public void testStagesAreRendered() {
+    FluxQuery query = source().keep("_time", "_value").fragment("filter").call("count");
+
+    assertThat(query.toString())
+        .isEqualTo(
+            SOURCE
+                + "|> keep(columns: [\"_time\", \"_value\"])\n"
+                + "{{filter}}|> count()\n");
+  }
+
+  @Test
+  public void testSortFollowedBySortIsDropped() {
+    FluxQuery query =
+        source().sort(false, "_value").group("instrumentId").drop("_field").sort(true, "_time");
+
+    assertThat(query.optimize().toString())
+        .isEqualTo(
+            SOURCE
+                + "|> group(columns: [\"instrumentId\"])\n"
+                + "|> drop(columns: [\"_field\"])\n"
+                + "|> sort(columns: [\"_time\"], desc: true)\n");
+  }
+
+  @Test
+  public void testSortIsKeptIfRowsChangeBeforeNextSort() {
+    FluxQuery query = source().sort(false, "_time").limit("1").sort(true, "_value");
+
+    assertThat(query.optimize().toString()).isEqualTo(query.toString());
+  }
+
+  @Test
+  public void testSortIsKeptAcrossFragment() {
+    FluxQuery query = source().sort(false, "_time").fragment("filter").sort(true, "_value");
+
+    assertThat(query.optimize().toString()).isEqualTo(query.toString());
+  }
+
+  @Test
+  public void testConsecutiveGroupsKeepTheLast() {
+    FluxQuery query = source().group("exchangeId").group().group("instrumentId").call("count");
+
+    assertThat(query.optimize().toString())
+        .isEqualTo(SOURCE + "|> group(columns: [\"instrumentId\"])\n|> count()\n");
+  }
+
+  @Test
+  public void testGroupsSeparatedByAnotherStageAreKept() {
+    FluxQuery query = source().group().drop("_field").group("instrumentId");
+
+    assertThat(query.optimize().toString()).isEqualTo(query.toString());
+  }
+
+  @Test
+  public void testLimitIsAppliedAheadOfPivot() {
+    FluxQuery query = source().pivot(rowKey(), fieldKey(), "_value").drop("_field").limit("10");
+
+    assertThat(query.optimize().toString())
+        .isEqualTo(
+            SOURCE
+                + "|> limit(n: 10)\n"
+                + PIVOT
+                + "|> drop(columns: [\"_field\"])\n"
+                + "|> limit(n: 10)\n");
+  }
+
+  @Test
+  public void testLimitAfterDescendingTimeSortIsAppliedAsTailAheadOfPivot() {
+    FluxQuery query =
+        source().pivot(rowKey(), fieldKey(), "_value").sort(true, "_time").limit("params.n");
+
+    assertThat(query.optimize().toString())
+        .isEqualTo(
+            SOURCE
+                + "|> tail(n: params.n)\n"
+                + PIVOT
+                + "|> sort(columns: [\"_time\"], desc: true)\n"
+                + "|> limit(n: params.n)\n");
+  }
+
+  @Test
+  public void testTailIsAppliedAheadOfPivot() {
+    FluxQuery query = source().pivot(rowKey(), fieldKey(), "_value").tail("1");
+
+    assertThat(query.optimize().toString())
+        .isEqualTo(
+            SOURCE
+                + "|> tail(n: 1)\n"
+                + PIVOT
+                + "|> tail(n: 1)\n");
+  }
+
+  @Test
+  public void testLimitIsNotMovedPastOtherSorts() {
+    FluxQuery query = source().pivot(rowKey(), fieldKey(), "_value").sort(false, "bid").limit("1");
+
+    assertThat(query.optimize().toString()).isEqualTo(query.toString());
+  }
+
+  @Test
+  public void testLimitIsNotMovedIfPivotInputIsNotInTimeOrder() {
+    FluxQuery query = source().group().pivot(rowKey(), fieldKey(), "_value").limit("1");
+
+    assertThat(query.optimize().toString()).isEqualTo(query.toString());
+  }
+
+  @Test
+  public void testLimitIsNotMovedPastFragment() {
+    FluxQuery query = source().pivot(rowKey(), fieldKey(), "_value").fragment("filter").limit("1");
+
+    assertThat(query.optimize().toString()).isEqualTo(query.toString());
+  }
+
+  @Test
+  public void testJoinedTablesAreOptimised() {
+    FluxQuery bids = source().group("a").group("b");
+    FluxQuery asks = source().sort(false, "_time").sort(true, "_time");
+    FluxQuery query = FluxQuery.join("bid", bids, "ask", asks, "_time");
+
+    assertThat(query.optimize().toString())
+        .isEqualTo(
+            "bid = "
+                + SOURCE
+                + "|> group(columns: [\"b\"])\n\n"
+                + "ask = "
+                + SOURCE
+                + "|> sort(columns: [\"_time\"], desc: true)\n\n"
+                + "join(tables: {bid: bid, ask: ask}, on: [\"_time\"])\n");
+  }
+
+  private static FluxQuery source() {
+    return FluxQuery.from("params.bucket")
+        .range("params.start", "params.stop")
+        .filter("r._measurement == params.measurement");
+  }
+
+  private static List<String> rowKey() {
+    return List.of("_time");
+  }
+
+  private static List<String> fieldKey() {
+    return List.of("_field");
+  }
+}
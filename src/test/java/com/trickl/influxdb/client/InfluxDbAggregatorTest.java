@@ -0,0 +1,58 @@
+package com.trickl.influxdb.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+// The aggregator queries were written as Flux text before they were built as a FluxQuery,
+// so they are compared with that text, ignoring layout.
+public class InfluxDbAggregatorTest {
+
+  @Test
+  public void testBestBidOrAskFromTopOfBookQueryIsUnchanged() throws IOException {
+    assertThat(text(InfluxDbAggregator.TOP_OF_BOOK_QUERY))
+        .isEqualTo(golden("bestBidOrAskFromTopOfBook.flux"));
+  }
+
+  @Test
+  public void testBestBidOrAskFromOrdersQueryIsUnchanged() throws IOException {
+    assertThat(text(InfluxDbAggregator.ORDER_QUERY))
+        .isEqualTo(golden("bestBidOrAskFromOrders.flux"));
+  }
+
+  @Test
+  public void testSportsEventIncidentsQueryIsUnchanged() throws IOException {
+    assertThat(text(InfluxDbAggregator.INCIDENTS_QUERY))
+        .isEqualTo(golden("sportsEventIncidents.flux"));
+  }
+
+  @Test
+  public void testSportsEventScoreUpdatesQueryIsUnchanged() throws IOException {
+    assertThat(text(InfluxDbAggregator.SCORE_UPDATES_QUERY))
+        .isEqualTo(golden("sportsEventScoreUpdates.flux"));
+  }
+
+  @Test
+  public void testSportsEventMatchTimeUpdatesQueryIsUnchanged() throws IOException {
+    assertThat(text(InfluxDbAggregator.MATCH_TIME_UPDATES_QUERY))
+        .isEqualTo(golden("sportsEventMatchTimeUpdates.flux"));
+  }
+
+  private static String text(FluxQueryTemplate template) {
+    return withoutLayout(template.bind().getText());
+  }
+
+  private static String golden(String name) throws IOException {
+    try (InputStream stream =
+        InfluxDbAggregatorTest.class.getResourceAsStream("aggregator/" + name)) {
+      return withoutLayout(new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  private static String withoutLayout(String flux) {
+    return flux.replaceAll("\\s+", "");
+  }
+}
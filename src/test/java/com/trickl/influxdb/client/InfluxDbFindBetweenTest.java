@@ -0,0 +1,203 @@
+package com.trickl.influxdb.client;
+
+import static com.trickl.influxdb.client.InfluxDbFindBetween.getOrdering;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.influxdb.annotations.Column;
+import com.influxdb.client.domain.Query;
+import com.influxdb.client.reactive.InfluxDBClientReactive;
+import com.influxdb.client.reactive.QueryReactiveApi;
+import com.trickl.influxdb.persistence.PriceSourceEntity;
+import com.trickl.model.pricing.primitives.PriceSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import lombok.Value;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+public class InfluxDbFindBetweenTest {
+
+  private static final Instant START = Instant.parse("2023-01-02T10:00:00Z");
+
+  private final PriceSource priceSource =
+      PriceSource.builder().exchangeId("XLON").instrumentId("VOD").build();
+
+  private final QueryReactiveApi queryApi = mock(QueryReactiveApi.class);
+
+  private final List<String> queries = new ArrayList<>();
+
+  private List<Point> points;
+
+  private InfluxDbFindBetween finder;
+
+  @BeforeEach
+  public void setup() {
+    InfluxDBClientReactive influxDbClient = mock(InfluxDBClientReactive.class);
+    when(influxDbClient.getQueryReactiveApi()).thenReturn(queryApi);
+    when(queryApi.query(any(Query.class), any(Class.class)))
+        .thenAnswer(
+            invocation -> {
+              queries.add(invocation.<Query>getArgument(0).getQuery());
+              return Flux.fromIterable(points);
+            });
+    finder = new InfluxDbFindBetween(influxDbClient, "prices");
+  }
+
+  @Test
+  public void testSingleSeriesIsReadAsItArrives() {
+    points = points(1, 2, 3);
+
+    assertThat(find(Point.class, Map.of(), false)).containsExactlyElementsOf(points);
+    assertThat(queries.get(0)).doesNotContain("sort(").doesNotContain("group(");
+  }
+
+  @Test
+  public void testSingleSeriesReadsOnlyItsTailForTheMostRecentFirst() {
+    points = points(3, 2);
+
+    assertThat(find(Point.class, Map.of(), true)).containsExactlyElementsOf(points);
+    assertThat(queries.get(0))
+        .doesNotContain("group(")
+        .contains("|> tail(n: 2)\n|> pivot(")
+        .contains("|> sort(columns: [\"_time\"], desc: true)\n|> limit(n: 2)");
+  }
+
+  @Test
+  public void testServerSortsIfAnotherTagIsNotFiltered() {
+    points = points(1, 2);
+
+    find(SidedPoint.class, Map.of(), false);
+    assertThat(queries.get(0)).contains("|> group()\n|> sort(columns: [\"_time\"], desc: false)");
+  }
+
+  @Test
+  public void testTagFilteredToOneValueIsReadAsItArrives() {
+    points = points(1, 2);
+
+    find(SidedPoint.class, Map.of("bidOrAsk", Set.of("B")), false);
+    assertThat(queries.get(0)).doesNotContain("sort(").doesNotContain("group(");
+  }
+
+  @Test
+  public void testServerSortsIfTagsAreNotKnown() {
+    points = points(1, 2);
+
+    find(UntaggedPoint.class, Map.of(), false);
+    assertThat(queries.get(0)).contains("|> group()\n|> sort(columns: [\"_time\"], desc: false)");
+  }
+
+  @Test
+  public void testInstrumentTagsReadOneSeries() {
+    assertThat(getOrdering(List.of("exchangeId", "instrumentId"), Map.of(), Optional.empty()))
+        .isEqualTo(QueryOrdering.SINGLE_SERIES);
+  }
+
+  @Test
+  public void testOtherTagReadsManySeries() {
+    assertThat(
+            getOrdering(
+                List.of("exchangeId", "instrumentId", "bidOrAsk"), Map.of(), Optional.empty()))
+        .isEqualTo(QueryOrdering.SERVER);
+  }
+
+  @Test
+  public void testTagFilteredToOneValueReadsOneSeries() {
+    assertThat(
+            getOrdering(
+                List.of("exchangeId", "instrumentId", "bidOrAsk"),
+                Map.of("bidOrAsk", Set.of("B")),
+                Optional.empty()))
+        .isEqualTo(QueryOrdering.SINGLE_SERIES);
+  }
+
+  @Test
+  public void testTagFilteredToManyValuesReadsManySeries() {
+    assertThat(
+            getOrdering(
+                List.of("exchangeId", "instrumentId", "bidOrAsk"),
+                Map.of("bidOrAsk", Set.of("B", "A")),
+                Optional.empty()))
+        .isEqualTo(QueryOrdering.SERVER);
+  }
+
+  @Test
+  public void testUnknownTagsAreSortedOnTheServer() {
+    assertThat(getOrdering(List.of(), Map.of(), Optional.empty()))
+        .isEqualTo(QueryOrdering.SERVER);
+  }
+
+  @Test
+  public void testTemporalSourceIsFixedOnlyWhenQueried() {
+    List<String> tags = List.of("exchangeId", "instrumentId", "temporalSource");
+
+    assertThat(getOrdering(tags, Map.of(), Optional.of("live")))
+        .isEqualTo(QueryOrdering.SINGLE_SERIES);
+    assertThat(getOrdering(tags, Map.of(), Optional.empty()))
+        .isEqualTo(QueryOrdering.SERVER);
+  }
+
+  private <T> List<T> find(
+      Class<T> measurementClazz, Map<String, Set<String>> filter, boolean mostRecentFirst) {
+    QueryBetween queryBetween =
+        QueryBetween.builder()
+            .startIncl(true)
+            .start(START)
+            .end(at(10))
+            .limit(mostRecentFirst ? 2L : null)
+            .mostRecentFirst(mostRecentFirst)
+            .build();
+    return finder
+        .findBetween(priceSource, queryBetween, "best_bid_1m", measurementClazz, filter)
+        .collectList()
+        .block();
+  }
+
+  private static List<Point> points(int... seconds) {
+    List<Point> points = new ArrayList<>();
+    for (int second : seconds) {
+      points.add(new Point(at(second), "XLON", "VOD"));
+    }
+    return points;
+  }
+
+  private static Instant at(int second) {
+    return START.plusSeconds(second);
+  }
+
+  @Value
+  public static class Point implements PriceSourceEntity {
+    Instant time;
+
+    @Column(name = "exchangeId", tag = true)
+    String exchangeId;
+
+    @Column(name = "instrumentId", tag = true)
+    String instrumentId;
+  }
+
+  @Value
+  public static class SidedPoint {
+    @Column(name = "exchangeId", tag = true)
+    String exchangeId;
+
+    @Column(name = "instrumentId", tag = true)
+    String instrumentId;
+
+    @Column(name = "bidOrAsk", tag = true)
+    String bidOrAsk;
+  }
+
+  @Value
+  public static class UntaggedPoint {
+    String exchangeId;
+    String instrumentId;
+  }
+}
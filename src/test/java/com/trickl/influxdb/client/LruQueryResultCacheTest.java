@@ -0,0 +1,74 @@
+package com.trickl.influxdb.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class LruQueryResultCacheTest {
+
+  private static final Instant START = Instant.parse("2023-01-02T10:00:00Z");
+
+  @Test
+  public void testCachedSegmentIsHit() {
+    LruQueryResultCache cache = new LruQueryResultCache(10);
+    cache.put(key("best_bid_1m", "VOD", 0), List.of("a", "b"));
+
+    assertThat(cache.get(key("best_bid_1m", "VOD", 0))).contains(List.of("a", "b"));
+    assertThat(cache.get(key("best_bid_1m", "VOD", 1))).isEmpty();
+    assertThat(cache.getPoints()).isEqualTo(2);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedSegmentsAreEvictedByPoints() {
+    LruQueryResultCache cache = new LruQueryResultCache(4);
+    cache.put(key("best_bid_1m", "VOD", 0), List.of("a", "b"));
+    cache.put(key("best_bid_1m", "VOD", 1), List.of("c"));
+    cache.get(key("best_bid_1m", "VOD", 0));
+    cache.put(key("best_bid_1m", "VOD", 2), List.of("d", "e"));
+
+    assertThat(cache.get(key("best_bid_1m", "VOD", 1))).isEmpty();
+    assertThat(cache.get(key("best_bid_1m", "VOD", 0))).isPresent();
+    assertThat(cache.get(key("best_bid_1m", "VOD", 2))).isPresent();
+    assertThat(cache.getPoints()).isEqualTo(4);
+  }
+
+  @Test
+  public void testSegmentLargerThanCacheIsNotKept() {
+    LruQueryResultCache cache = new LruQueryResultCache(1);
+    cache.put(key("best_bid_1m", "VOD", 0), List.of("a", "b"));
+
+    assertThat(cache.get(key("best_bid_1m", "VOD", 0))).isEmpty();
+    assertThat(cache.getPoints()).isZero();
+  }
+
+  @Test
+  public void testInvalidateForgetsOnlyThatMeasurementOfThatInstrument() {
+    LruQueryResultCache cache = new LruQueryResultCache(10);
+    cache.put(key("best_bid_1m", "VOD", 0), List.of("a"));
+    cache.put(key("best_bid_1m", "VOD", 1), List.of("b"));
+    cache.put(key("best_bid_1m", "BARC", 0), List.of("c"));
+    cache.put(key("best_ask_1m", "VOD", 0), List.of("d"));
+
+    cache.invalidate("best_bid_1m", "XLON", "VOD");
+
+    assertThat(cache.get(key("best_bid_1m", "VOD", 0))).isEmpty();
+    assertThat(cache.get(key("best_bid_1m", "VOD", 1))).isEmpty();
+    assertThat(cache.get(key("best_bid_1m", "BARC", 0))).isPresent();
+    assertThat(cache.get(key("best_ask_1m", "VOD", 0))).isPresent();
+    assertThat(cache.getPoints()).isEqualTo(2);
+  }
+
+  private static QueryCacheKey key(String measurementName, String instrumentId, int segment) {
+    return QueryCacheKey.builder()
+        .bucket("prices")
+        .measurementName(measurementName)
+        .measurementClazz(String.class)
+        .exchangeId("XLON")
+        .instrumentId(instrumentId)
+        .segmentStart(START.plusSeconds(60L * segment))
+        .segmentEnd(START.plusSeconds(60L * (segment + 1)))
+        .build();
+  }
+}
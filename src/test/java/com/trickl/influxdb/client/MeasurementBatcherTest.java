@@ -0,0 +1,52 @@
+package com.trickl.influxdb.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class MeasurementBatcherTest {
+
+  private final List<Integer> measurements =
+      IntStream.range(0, 10).boxed().collect(Collectors.toList());
+
+  @Test
+  public void testSplitByPointCount() {
+    List<List<Integer>> batches = MeasurementBatcher.split(measurements, 4, 1000, value -> 1);
+    assertThat(batches)
+        .containsExactly(List.of(0, 1, 2, 3), List.of(4, 5, 6, 7), List.of(8, 9));
+  }
+
+  @Test
+  public void testSplitByPayloadSize() {
+    List<List<Integer>> batches = MeasurementBatcher.split(measurements, 100, 25, value -> 10);
+    assertThat(batches).hasSize(5);
+    assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSize(2));
+  }
+
+  @Test
+  public void testOversizedPointIsWrittenAlone() {
+    List<List<Integer>> batches =
+        MeasurementBatcher.split(List.of(1, 2, 3), 100, 10, value -> value == 2 ? 50 : 1);
+    assertThat(batches).containsExactly(List.of(1), List.of(2), List.of(3));
+  }
+
+  @Test
+  public void testEmpty() {
+    assertThat(MeasurementBatcher.split(List.<Integer>of(), 10, 10, value -> 1)).isEmpty();
+  }
+
+  @Test
+  public void testSortKeepsSeriesTogetherAtEachTime() {
+    List<String> points = new ArrayList<>(List.of("b@2", "a@1", "b@1", "a@2", "c@1"));
+    MeasurementBatcher.sort(
+        points,
+        point -> Instant.ofEpochSecond(Long.parseLong(point.substring(2))),
+        point -> point.substring(0, 1));
+    assertThat(points).containsExactly("a@1", "b@1", "c@1", "a@2", "b@2");
+  }
+}
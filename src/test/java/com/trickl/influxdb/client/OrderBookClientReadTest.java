@@ -0,0 +1,108 @@
+package com.trickl.influxdb.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.trickl.model.pricing.primitives.Order;
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+public class OrderBookClientReadTest {
+
+  private static final Instant FIRST = Instant.ofEpochSecond(1);
+
+  private static final Instant SECOND = Instant.ofEpochSecond(2);
+
+  private static final Instant THIRD = Instant.ofEpochSecond(3);
+
+  private final PriceSource priceSource =
+      PriceSource.builder().exchangeId("XLON").instrumentId("VOD").build();
+
+  private final OrderClient orderClient = mock(OrderClient.class);
+
+  private final OrderBookClient orderBookClient =
+      new OrderBookClient(
+          orderClient, null, OrderBookOptions.builder().readSchema(OrderBookSchema.BOTH).build());
+
+  @Test
+  public void testBothSchemasAreMergedInTimeOrder() {
+    givenStored(false);
+    List<OrderBook> orderBooks =
+        orderBookClient.findBetween(priceSource, query(false, null)).collectList().block();
+    assertThat(orderBooks).extracting(OrderBook::getTime).containsExactly(FIRST, SECOND, THIRD);
+    assertThat(bestBid(orderBooks.get(0))).isEqualTo(wideBid());
+    assertThat(bestBid(orderBooks.get(1))).isEqualTo(levelsBid());
+  }
+
+  @Test
+  public void testBothSchemasAreMergedMostRecentFirst() {
+    givenStored(true);
+    List<OrderBook> orderBooks =
+        orderBookClient.findBetween(priceSource, query(true, 2L)).collectList().block();
+    assertThat(orderBooks).extracting(OrderBook::getTime).containsExactly(THIRD, SECOND);
+  }
+
+  @Test
+  public void testWideBookIsPreferredAtTheSameTime() {
+    givenStored(true);
+    List<OrderBook> orderBooks =
+        orderBookClient.findBetween(priceSource, query(true, null)).collectList().block();
+    assertThat(orderBooks).extracting(OrderBook::getTime).containsExactly(THIRD, SECOND, FIRST);
+    assertThat(bestBid(orderBooks.get(2))).isEqualTo(wideBid());
+  }
+
+  private void givenStored(boolean mostRecentFirst) {
+    List<OrderBook> wideBooks = List.of(wideBook(FIRST), wideBook(THIRD));
+    List<Order> levels = List.of(level(FIRST), level(SECOND));
+    when(orderClient.findBooksBetween(any(PriceSource.class), any(QueryBetween.class)))
+        .thenReturn(Flux.fromIterable(mostRecentFirst ? reverse(wideBooks) : wideBooks));
+    when(orderClient.findBetween(any(PriceSource.class), any(QueryBetween.class)))
+        .thenReturn(Flux.fromIterable(mostRecentFirst ? reverse(levels) : levels));
+  }
+
+  private QueryBetween query(boolean mostRecentFirst, Long limit) {
+    return QueryBetween.builder()
+        .start(FIRST)
+        .end(THIRD)
+        .endIncl(true)
+        .mostRecentFirst(mostRecentFirst)
+        .limit(limit)
+        .build();
+  }
+
+  private OrderBook wideBook(Instant time) {
+    return OrderBook.builder().bids(List.of(quote(wideBid()))).asks(List.of()).time(time).build();
+  }
+
+  private Order level(Instant time) {
+    return Order.builder().quote(quote(levelsBid())).isBid(true).time(time).depth(0).build();
+  }
+
+  private Quote quote(BigDecimal price) {
+    return Quote.builder().price(price).volume(1L).source(priceSource).build();
+  }
+
+  private static BigDecimal wideBid() {
+    return BigDecimal.valueOf(100);
+  }
+
+  private static BigDecimal levelsBid() {
+    return BigDecimal.valueOf(90);
+  }
+
+  private static BigDecimal bestBid(OrderBook orderBook) {
+    return orderBook.getBids().get(0).getPrice();
+  }
+
+  private static <T> List<T> reverse(List<T> values) {
+    return List.of(values.get(1), values.get(0));
+  }
+}
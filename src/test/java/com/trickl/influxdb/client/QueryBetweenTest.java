@@ -0,0 +1,61 @@
+package com.trickl.influxdb.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class QueryBetweenTest {
+
+  private final Instant start = Instant.parse("2020-01-01T00:00:00Z");
+
+  @Test
+  public void testUnchunkedQueryIsNotSplit() {
+    QueryBetween query = QueryBetween.builder().start(start).end(start.plusSeconds(600)).build();
+    assertThat(query.splitIntoChunks()).containsExactly(query);
+  }
+
+  @Test
+  public void testSplitIntoContiguousChunks() {
+    QueryBetween query =
+        QueryBetween.builder()
+            .startIncl(false)
+            .start(start)
+            .endIncl(true)
+            .end(start.plusSeconds(250))
+            .chunkSize(100)
+            .build();
+    List<QueryBetween> chunks = query.splitIntoChunks();
+    assertThat(chunks).extracting(QueryBetween::getStart)
+        .containsExactly(start, start.plusSeconds(100), start.plusSeconds(200));
+    assertThat(chunks).extracting(QueryBetween::getEnd)
+        .containsExactly(start.plusSeconds(100), start.plusSeconds(200), start.plusSeconds(250));
+    assertThat(chunks).extracting(QueryBetween::isStartIncl).containsExactly(false, true, true);
+    assertThat(chunks).extracting(QueryBetween::isEndIncl).containsExactly(false, false, true);
+  }
+
+  @Test
+  public void testMostRecentChunkFirst() {
+    QueryBetween query =
+        QueryBetween.builder()
+            .start(start)
+            .end(start.plusSeconds(200))
+            .mostRecentFirst(true)
+            .chunkSize(100)
+            .build();
+    assertThat(query.splitIntoChunks()).extracting(QueryBetween::getStart)
+        .containsExactly(start.plusSeconds(100), start);
+  }
+
+  @Test
+  public void testSplitIntoPartitions() {
+    QueryBetween query =
+        QueryBetween.builder().start(start).end(start.plusSeconds(10)).partitions(4).build();
+    List<QueryBetween> chunks = query.splitIntoChunks();
+    assertThat(chunks).extracting(QueryBetween::getStart)
+        .containsExactly(start, start.plusSeconds(3), start.plusSeconds(6), start.plusSeconds(9));
+    assertThat(chunks.get(3).getEnd()).isEqualTo(start.plusSeconds(10));
+    assertThat(query.getChunkConcurrency()).isEqualTo(4);
+  }
+}
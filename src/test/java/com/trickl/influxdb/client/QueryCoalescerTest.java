@@ -0,0 +1,86 @@
+package com.trickl.influxdb.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+public class QueryCoalescerTest {
+
+  private final QueryCoalescer coalescer = new QueryCoalescer();
+
+  private final Sinks.Many<Integer> results = Sinks.many().multicast().onBackpressureBuffer();
+
+  private final AtomicInteger runs = new AtomicInteger();
+
+  private final Supplier<Flux<Integer>> query =
+      () -> {
+        runs.incrementAndGet();
+        return results.asFlux();
+      };
+
+  @Test
+  public void testIdenticalQueriesInFlightRunOnce() {
+    CompletableFuture<List<Integer>> first = coalesce("query");
+    CompletableFuture<List<Integer>> second = coalesce("query");
+    assertThat(coalescer.getInFlightCount()).isEqualTo(1);
+
+    results.tryEmitNext(1);
+    results.tryEmitNext(2);
+    results.tryEmitComplete();
+
+    assertThat(first.join()).containsExactly(1, 2);
+    assertThat(second.join()).containsExactly(1, 2);
+    assertThat(runs.get()).isEqualTo(1);
+    assertThat(coalescer.getInFlightCount()).isZero();
+  }
+
+  @Test
+  public void testDifferentQueriesRunSeparately() {
+    coalesce("query");
+    coalesce("other query");
+
+    assertThat(runs.get()).isEqualTo(2);
+    assertThat(coalescer.getInFlightCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testQueryThatHasReturnedResultsIsNotJoined() {
+    coalesce("query");
+    results.tryEmitNext(1);
+    assertThat(coalescer.getInFlightCount()).isZero();
+
+    coalesce("query");
+    assertThat(runs.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testFailedQueryIsRemoved() {
+    CompletableFuture<List<Integer>> failed = coalesce("query");
+    results.tryEmitError(new IllegalStateException("Query failed"));
+
+    assertThat(failed).isCompletedExceptionally();
+    assertThat(coalescer.getInFlightCount()).isZero();
+  }
+
+  @Test
+  public void testCancelledQueryIsRemoved() {
+    Disposable first = coalescer.coalesce("query", query).subscribe();
+    Disposable second = coalescer.coalesce("query", query).subscribe();
+    first.dispose();
+    assertThat(coalescer.getInFlightCount()).isEqualTo(1);
+
+    second.dispose();
+    assertThat(coalescer.getInFlightCount()).isZero();
+  }
+
+  private CompletableFuture<List<Integer>> coalesce(String key) {
+    return coalescer.coalesce(key, query).collectList().toFuture();
+  }
+}
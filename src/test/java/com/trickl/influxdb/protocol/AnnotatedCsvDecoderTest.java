@@ -0,0 +1,62 @@
+package com.trickl.influxdb.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.influxdb.exceptions.InfluxException;
+import com.trickl.influxdb.persistence.OhlcvBarEntity;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+public class AnnotatedCsvDecoderTest {
+
+  private static final List<String> RESPONSE =
+      List.of(
+          "#datatype,string,long,dateTime:RFC3339,string,string,double,double,double,double,long",
+          "#group,false,false,false,false,false,false,false,false,false,false",
+          "#default,_result,,,,,,,,,",
+          ",result,table,_time,exchangeId,instrumentId,close,high,low,open,volume",
+          ",,0,2020-01-01T00:00:00Z,XLON,VOD,1.5,2,1,1.25,100",
+          ",,0,2020-01-01T00:01:00.25Z,XLON,VOD,1.75,2,1.5,1.5,",
+          "");
+
+  @Test
+  public void testDecodeRows() {
+    List<OhlcvBarEntity> bars =
+        AnnotatedCsvDecoder.decode(Flux.fromIterable(RESPONSE), new OhlcvBarEntityRowMapper())
+            .collectList()
+            .block();
+    assertThat(bars).hasSize(2);
+    assertThat(bars.get(0).getTime()).isEqualTo(Instant.parse("2020-01-01T00:00:00Z"));
+    assertThat(bars.get(0).getExchangeId()).isEqualTo("XLON");
+    assertThat(bars.get(0).getOpen()).isEqualTo(1.25);
+    assertThat(bars.get(0).getVolume()).isEqualTo(100L);
+    assertThat(bars.get(1).getTime()).isEqualTo(Instant.parse("2020-01-01T00:01:00.25Z"));
+    assertThat(bars.get(1).getClose()).isEqualTo(1.75);
+    assertThat(bars.get(1).getVolume()).isNull();
+  }
+
+  @Test
+  public void testQuotedValues() {
+    AnnotatedCsvRow row = new AnnotatedCsvRow().read(",\"a,\"\"b\"\"\",,c");
+    assertThat(row.size()).isEqualTo(4);
+    assertThat(row.getString(1)).isEqualTo("a,\"b\"");
+    assertThat(row.isEmpty(2)).isTrue();
+    assertThat(row.getString(3)).isEqualTo("c");
+  }
+
+  @Test
+  public void testErrorTable() {
+    Flux<String> response =
+        Flux.just("#datatype,string,string", ",error,reference", ",query failed,");
+    assertThatThrownBy(
+            () ->
+                AnnotatedCsvDecoder.decode(response, new OhlcvBarEntityRowMapper())
+                    .collectList()
+                    .block())
+        .isInstanceOf(InfluxException.class)
+        .hasMessage("query failed");
+  }
+}
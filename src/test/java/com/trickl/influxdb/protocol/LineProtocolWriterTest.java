@@ -0,0 +1,79 @@
+package com.trickl.influxdb.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+public class LineProtocolWriterTest {
+
+  private final LineProtocolWriter writer = new LineProtocolWriter();
+
+  @Test
+  public void testEscaping() {
+    writer
+        .measurement("my measurement")
+        .tag("tag key", "a,b=c")
+        .tag("empty", "")
+        .stringField("text", "say \"hi\"")
+        .longField("count", 3L);
+    assertThat(writer.timestamp(Instant.ofEpochMilli(1000))).isTrue();
+    assertThat(writer.toString())
+        .isEqualTo("my\\ measurement,tag\\ key=a\\,b\\=c text=\"say \\\"hi\\\"\",count=3i 1000");
+  }
+
+  @Test
+  public void testLineBreaksInNamesAndTagsAreReplaced() {
+    writer.measurement("my\nmeasurement").tag("tag\nkey", "a\r\nb").longField("count", 1L);
+    writer.timestamp(Instant.EPOCH);
+    assertThat(writer.toString())
+        .isEqualTo("my\\ measurement,tag\\ key=a\\ \\ b count=1i 0")
+        .doesNotContain("\n");
+  }
+
+  @Test
+  public void testLineBreaksInStringFieldsAreKept() {
+    writer.measurement("m").stringField("text", "x\ny");
+    writer.timestamp(Instant.EPOCH);
+    assertThat(writer.toString()).isEqualTo("m text=\"x\ny\" 0");
+  }
+
+  @Test
+  public void testSameAsClientLibraryPoint() {
+    String text = "say \"hi\" \\ to\nboth";
+    writer
+        .measurement("my measurement")
+        .tag("tag key", "a,b=c")
+        .longField("count", 3L)
+        .booleanField("ok", true)
+        .stringField("text", text);
+    writer.timestamp(Instant.ofEpochMilli(1000));
+
+    Point point =
+        Point.measurement("my measurement")
+            .addTag("tag key", "a,b=c")
+            .addField("count", 3L)
+            .addField("ok", true)
+            .addField("text", text)
+            .time(Instant.ofEpochMilli(1000), WritePrecision.MS);
+    assertThat(writer.toString()).isEqualTo(point.toLineProtocol());
+  }
+
+  @Test
+  public void testFloatsAreNotScientific() {
+    writer.measurement("m").doubleField("small", 0.00001).doubleField("nan", Double.NaN);
+    writer.timestamp(Instant.EPOCH);
+    assertThat(writer.toString()).isEqualTo("m small=0.000010 0");
+  }
+
+  @Test
+  public void testPointWithoutFieldsIsRemoved() {
+    writer.measurement("m").doubleField("value", 1.0);
+    writer.timestamp(Instant.EPOCH);
+    writer.measurement("m").tag("key", "value");
+    assertThat(writer.timestamp(Instant.EPOCH)).isFalse();
+    assertThat(writer.toString()).isEqualTo("m value=1.0 0");
+  }
+}
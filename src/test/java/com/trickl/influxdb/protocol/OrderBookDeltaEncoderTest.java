@@ -0,0 +1,53 @@
+package com.trickl.influxdb.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class OrderBookDeltaEncoderTest {
+
+  private final PriceSource priceSource =
+      PriceSource.builder().exchangeId("xlon").instrumentId("vod").build();
+
+  private final OrderBookDeltaEncoder encoder = new OrderBookDeltaEncoder(priceSource);
+
+  private final LineProtocolWriter writer = new LineProtocolWriter();
+
+  @Test
+  public void testEncodeChangedLevelsOnly() {
+    OrderBook previous = book(1000, quote("100", 10), quote("99", 20));
+    OrderBook current = book(2000, quote("100", 10), quote("99", 15));
+    assertThat(encoder.encode(new OrderBookDelta(previous, current), writer)).isEqualTo(1);
+    assertThat(writer.toString())
+        .isEqualTo(
+            "order_delta,bidOrAsk=B,depth=1,exchangeId=XLON,instrumentId=VOD"
+                + " price=99.0,volume=15i 2000");
+  }
+
+  @Test
+  public void testUnchangedBookIsMarked() {
+    OrderBook previous = book(1000, quote("100", 10));
+    OrderBook current = book(2000, quote("100", 10));
+    assertThat(encoder.encode(new OrderBookDelta(previous, current), writer)).isEqualTo(1);
+    assertThat(writer.toString())
+        .isEqualTo("order_delta,exchangeId=XLON,instrumentId=VOD unchanged=true 2000");
+  }
+
+  private OrderBook book(long time, Quote... bids) {
+    return OrderBook.builder()
+        .bids(List.of(bids))
+        .asks(List.of())
+        .time(Instant.ofEpochMilli(time))
+        .build();
+  }
+
+  private Quote quote(String price, long volume) {
+    return Quote.builder().price(new BigDecimal(price)).volume(volume).source(priceSource).build();
+  }
+}
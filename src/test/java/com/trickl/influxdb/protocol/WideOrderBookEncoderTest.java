@@ -0,0 +1,47 @@
+package com.trickl.influxdb.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.trickl.model.pricing.primitives.OrderBook;
+import com.trickl.model.pricing.primitives.PriceSource;
+import com.trickl.model.pricing.primitives.Quote;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class WideOrderBookEncoderTest {
+
+  private final PriceSource priceSource =
+      PriceSource.builder().exchangeId("xlon").instrumentId("vod").build();
+
+  private final WideOrderBookEncoder encoder = new WideOrderBookEncoder(priceSource);
+
+  private final LineProtocolWriter writer = new LineProtocolWriter();
+
+  @Test
+  public void testEncodeEveryLevelAsFields() {
+    OrderBook orderBook =
+        OrderBook.builder()
+            .bids(List.of(quote("100.5", 10), quote("100", 20)))
+            .asks(List.of(quote("101", 5)))
+            .time(Instant.ofEpochMilli(1000))
+            .build();
+    assertThat(encoder.encode(orderBook, writer)).isEqualTo(1);
+    assertThat(writer.toString())
+        .isEqualTo(
+            "order_book,exchangeId=XLON,instrumentId=VOD"
+                + " a0p=101.0,a0v=5i,b0p=100.5,b0v=10i,b1p=100.0,b1v=20i 1000");
+  }
+
+  @Test
+  public void testEmptyBookIsNotWritten() {
+    OrderBook orderBook = OrderBook.builder().time(Instant.ofEpochMilli(1000)).build();
+    assertThat(encoder.encode(orderBook, writer)).isEqualTo(0);
+    assertThat(writer.length()).isEqualTo(0);
+  }
+
+  private Quote quote(String price, long volume) {
+    return Quote.builder().price(new BigDecimal(price)).volume(volume).source(priceSource).build();
+  }
+}